@@ -0,0 +1,53 @@
+package com.magumboi.webcameraapp.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs the benchmarks once per configured thread count, with the GC profiler attached so every
+ * result carries its allocation rate (gc.alloc.rate.norm is bytes per operation). Each run writes
+ * a JSON report to the result directory. Settings come from the system properties the
+ * {@code benchmark} Maven profile passes in.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String include = System.getProperty("jmh.include", ".*Benchmark.*");
+        String threadCounts = System.getProperty("jmh.threads", "1,4");
+        int forks = Integer.getInteger("jmh.forks", 1);
+        int warmupIterations = Integer.getInteger("jmh.warmup-iterations", 3);
+        int iterations = Integer.getInteger("jmh.iterations", 5);
+        Path resultDir = Paths.get(System.getProperty("jmh.result-dir", "target/jmh"));
+        Files.createDirectories(resultDir);
+
+        for (String value : threadCounts.split(",")) {
+            int threads = Integer.parseInt(value.trim());
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .forks(forks)
+                    .warmupIterations(warmupIterations)
+                    .warmupTime(TimeValue.seconds(1))
+                    .measurementIterations(iterations)
+                    .measurementTime(TimeValue.seconds(1))
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultDir.resolve("threads-" + threads + ".json").toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
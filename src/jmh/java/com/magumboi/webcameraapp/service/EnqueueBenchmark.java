@@ -0,0 +1,57 @@
+package com.magumboi.webcameraapp.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enqueue path of an upload: copying the request body onto the heap, naming the photo,
+ * allocating its task and job, and the offer/poll pair on the shared laned queue. The queue
+ * is shared by all benchmark threads, like it is by request threads and the dispatcher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EnqueueBenchmark {
+
+    @Param({"16384", "262144", "2097152"})
+    public int payloadBytes;
+
+    private byte[] photo;
+    private PriorityUploadQueue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        photo = new byte[payloadBytes];
+        new Random(42).nextBytes(photo);
+        queue = new PriorityUploadQueue(
+                Map.of(UploadPriority.INTERACTIVE, 8, UploadPriority.NORMAL, 3, UploadPriority.BULK, 1),
+                Map.of(), 30_000);
+    }
+
+    @Benchmark
+    public UploadTask enqueueHeapPayload() {
+        // MultipartFile.getBytes() hands the service its own copy of the body
+        PhotoPayload payload = new ByteArrayPhotoPayload(photo.clone());
+        UploadTask task = WebhookService.createTask(payload, new UploadJob(), UploadPriority.NORMAL);
+        queue.offer(task);
+        return queue.poll();
+    }
+
+    @Benchmark
+    public UploadTask enqueueWithoutCopy() {
+        UploadTask task = WebhookService.createTask(new ByteArrayPhotoPayload(photo), new UploadJob(), UploadPriority.NORMAL);
+        queue.offer(task);
+        return queue.poll();
+    }
+}
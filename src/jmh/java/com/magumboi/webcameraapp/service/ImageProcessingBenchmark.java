@@ -0,0 +1,75 @@
+package com.magumboi.webcameraapp.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Image stages on camera-sized JPEGs: the optimization pass (downscale to 1920px and
+ * re-encode under 2 MB) and the perceptual hash used for duplicate detection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ImageProcessingBenchmark {
+
+    @Param({"640x480", "1920x1080", "4032x3024"})
+    public String resolution;
+
+    private PhotoPayload photo;
+    private ImageProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] size = resolution.split("x");
+        photo = new ByteArrayPhotoPayload(cameraJpeg(Integer.parseInt(size[0]), Integer.parseInt(size[1])));
+        processor = new ImageProcessor(1920, 2 * 1024 * 1024, 0.5f, true, 1, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        processor.shutdown();
+    }
+
+    @Benchmark
+    public PhotoPayload optimize() {
+        return processor.process(photo);
+    }
+
+    @Benchmark
+    public long differenceHash() throws IOException {
+        return PhotoDeduplicator.differenceHash(photo);
+    }
+
+    // Gradient with sensor-like noise, so the JPEG compresses like a real frame rather than a flat image
+    private static byte[] cameraJpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(24);
+                int r = Math.min(255, x * 200 / width + noise);
+                int g = Math.min(255, y * 200 / height + noise);
+                int b = Math.min(255, (x + y) * 100 / (width + height) + noise);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", output);
+        return output.toByteArray();
+    }
+}
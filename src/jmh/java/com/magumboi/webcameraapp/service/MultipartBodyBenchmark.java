@@ -0,0 +1,71 @@
+package com.magumboi.webcameraapp.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpEntity;
+import org.springframework.util.MultiValueMap;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the multipart body of a webhook request and drains the photo parts the way the
+ * encoder does, so the cost of wrapping payloads in DataBuffers is included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MultipartBodyBenchmark {
+
+    @Param({"16384", "262144", "2097152"})
+    public int payloadBytes;
+
+    @Param({"1", "10"})
+    public int batchSize;
+
+    private List<UploadTask> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] photo = new byte[payloadBytes];
+        new Random(42).nextBytes(photo);
+        batch = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(WebhookService.createTask(new ByteArrayPhotoPayload(photo), new UploadJob(), UploadPriority.NORMAL));
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void buildAndDrainBody(Blackhole blackhole) {
+        MultiValueMap<String, HttpEntity<?>> body = WebhookService.buildMultipartBody(batch);
+        for (List<HttpEntity<?>> parts : body.values()) {
+            for (HttpEntity<?> part : parts) {
+                if (part.getBody() instanceof Publisher<?> publisher) {
+                    Flux.from((Publisher<DataBuffer>) publisher)
+                            .doOnNext(buffer -> {
+                                blackhole.consume(buffer.readableByteCount());
+                                DataBufferUtils.release(buffer);
+                            })
+                            .blockLast();
+                } else {
+                    blackhole.consume(part.getBody());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.magumboi.webcameraapp.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpHeaders;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate-limit checks on one shared limiter. The limit is high enough that every call is
+ * granted, so the numbers show the cost of the check and of contention on the limiter lock
+ * rather than time spent waiting for permits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RateLimiterBenchmark {
+
+    private DiscordRateLimiter limiter;
+    private HttpHeaders headers;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        limiter = new DiscordRateLimiter(Integer.MAX_VALUE);
+        headers = new HttpHeaders();
+        headers.set(DiscordRateLimiter.HEADER_BUCKET, "abcd1234");
+        headers.set(DiscordRateLimiter.HEADER_LIMIT, "5");
+        headers.set(DiscordRateLimiter.HEADER_REMAINING, "4");
+        headers.set(DiscordRateLimiter.HEADER_RESET_AFTER, "1.5");
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return limiter.tryAcquire();
+    }
+
+    @Benchmark
+    public long peekDelay() {
+        return limiter.peekDelayNanos();
+    }
+
+    @Benchmark
+    public long onResponse() {
+        limiter.onResponse(headers);
+        return limiter.getRemaining();
+    }
+}
@@ -0,0 +1,87 @@
+package com.magumboi.webcameraapp.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magumboi.webcameraapp.service.FrameIngestService;
+import com.magumboi.webcameraapp.service.UploadJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * WebSocket endpoint at /ws/frames for cameras that stream JPEG frames over one connection.
+ * Each binary message is one frame; frames with motion are queued as photos and answered with
+ * a text message carrying the job ID, all others are dropped silently.
+ */
+@Component
+public class FrameIngestHandler extends BinaryWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(FrameIngestHandler.class);
+
+    private static final String CAMERA_ID = "cameraId";
+
+    @Autowired
+    private FrameIngestService frameIngestService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        String cameraId = session.getUri() != null
+                ? UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst(CAMERA_ID)
+                : null;
+        // Photos of a camera without an ID are still filtered per connection
+        session.getAttributes().put(CAMERA_ID, cameraId != null && !cameraId.isBlank() ? cameraId : session.getId());
+        frameIngestService.open(session.getId());
+        logger.info("Camera {} connected for frame streaming", session.getAttributes().get(CAMERA_ID));
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+        ByteBuffer payload = message.getPayload();
+        byte[] frame;
+        int offset;
+        if (payload.hasArray()) {
+            frame = payload.array();
+            offset = payload.arrayOffset() + payload.position();
+        } else {
+            frame = new byte[payload.remaining()];
+            payload.duplicate().get(frame);
+            offset = 0;
+        }
+
+        Map<String, String> response = new HashMap<>();
+        try {
+            UploadJob job = frameIngestService.ingest(session.getId(), (String) session.getAttributes().get(CAMERA_ID),
+                    frame, offset, payload.remaining());
+            if (job == null) {
+                return;
+            }
+            response.put("jobId", job.getId());
+            response.put("status", job.getStatus().name());
+        } catch (IOException e) {
+            response.put("error", "Frame is not a readable image");
+        } catch (RuntimeException e) {
+            response.put("error", "Failed to upload frame: " + e.getMessage());
+        }
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        frameIngestService.close(session.getId());
+        logger.info("Camera {} disconnected: {}", session.getAttributes().get(CAMERA_ID), status);
+    }
+}
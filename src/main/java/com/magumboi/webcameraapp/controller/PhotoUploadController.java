@@ -1,12 +1,30 @@
 package com.magumboi.webcameraapp.controller;
 
+import com.magumboi.webcameraapp.service.ClientQuotaExceededException;
+import com.magumboi.webcameraapp.service.UploadJob;
+import com.magumboi.webcameraapp.service.UploadOptions;
+import com.magumboi.webcameraapp.service.UploadPriority;
+import com.magumboi.webcameraapp.service.UploadRejectedException;
 import com.magumboi.webcameraapp.service.WebhookService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import jakarta.servlet.http.HttpServletRequest;
+import java.net.URI;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -17,12 +35,18 @@ public class PhotoUploadController {
     private WebhookService webhookService;
 
     @PostMapping("/upload-photo")
-    public ResponseEntity<Map<String, String>> uploadPhoto(@RequestParam(value = "file", required = false) MultipartFile file) {
+    public Mono<ResponseEntity<Map<String, String>>> uploadPhoto(
+            @RequestParam(value = "file", required = false) MultipartFile file,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "priority", required = false) String priority,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = "X-Camera-Id", required = false) String cameraId,
+            @RequestAttribute(value = UploadTimingFilter.STARTED_AT, required = false) Long receiveStartedAt) {
         // Validate file
         if (file == null || file.isEmpty()) {
             Map<String, String> response = new HashMap<>();
             response.put("error", "No file provided");
-            return ResponseEntity.badRequest().body(response);
+            return Mono.just(ResponseEntity.badRequest().body(response));
         }
 
         // Check if it's an image
@@ -30,38 +54,297 @@ public class PhotoUploadController {
         if (contentType == null || !contentType.startsWith("image/")) {
             Map<String, String> response = new HashMap<>();
             response.put("error", "File must be an image");
-            return ResponseEntity.badRequest().body(response);
+            return Mono.just(ResponseEntity.badRequest().body(response));
         }
 
-        // Upload to webhook (blocking call)
+        UploadOptions options;
         try {
-            webhookService.uploadPhotoToWebhook(file).block();
+            options = UploadOptions.defaults()
+                    .withIdempotencyKey(idempotencyKey)
+                    .withPriority(UploadPriority.parse(priority))
+                    .withCameraId(cameraId)
+                    .withReceiveStartedAt(receiveStartedAt);
+        } catch (IllegalArgumentException e) {
             Map<String, String> response = new HashMap<>();
-            response.put("message", "Photo uploaded successfully");
-            return ResponseEntity.ok(response);
-        } catch (Exception error) {
+            response.put("error", "Priority must be one of interactive, normal or bulk");
+            return Mono.just(ResponseEntity.badRequest().body(response));
+        }
+
+        // Async mode: answer as soon as the photo is queued
+        if (async) {
+            try {
+                return Mono.just(acceptedResponse(webhookService.submitPhoto(file, options)));
+            } catch (Exception error) {
+                return Mono.just(errorResponse(error));
+            }
+        }
+
+        // Upload to webhook; the request thread is released while the upload waits in the queue
+        return webhookService.uploadPhotoToWebhook(file, options)
+                .map(result -> uploadedResponse())
+                .onErrorResume(error -> Mono.just(errorResponse(error)));
+    }
+
+    // Raw JPEG body, chunked or not, read straight into the spool; metadata travels in headers
+    @PostMapping("/photos")
+    public Mono<ResponseEntity<Map<String, String>>> uploadRawPhoto(
+            HttpServletRequest request,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "priority", required = false) String priority,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = "X-Capture-Time", required = false) String captureTime,
+            @RequestHeader(value = "X-Camera-Id", required = false) String cameraId,
+            @RequestAttribute(value = UploadTimingFilter.STARTED_AT, required = false) Long receiveStartedAt) {
+        if (!isJpeg(request.getContentType())) {
             Map<String, String> response = new HashMap<>();
-            
-            // Check if it's a webhook configuration error
-            if (error instanceof IllegalStateException && 
-                error.getMessage().contains("Webhook URL is not configured")) {
-                response.put("error", "Webhook no configurado. La URL del webhook no está configurada en el servidor.");
-                return ResponseEntity.badRequest().body(response);
+            response.put("error", "Body must be an image/jpeg photo");
+            return Mono.just(ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(response));
+        }
+        if (request.getContentLengthLong() == 0) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", "No file provided");
+            return Mono.just(ResponseEntity.badRequest().body(response));
+        }
+
+        UploadOptions options;
+        try {
+            options = UploadOptions.defaults()
+                    .withIdempotencyKey(idempotencyKey)
+                    .withPriority(UploadPriority.parse(priority))
+                    .withCameraId(cameraId)
+                    .withReceiveStartedAt(receiveStartedAt);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", "Priority must be one of interactive, normal or bulk");
+            return Mono.just(ResponseEntity.badRequest().body(response));
+        }
+        if (captureTime != null && !captureTime.isBlank()) {
+            try {
+                options = options.withCaptureTime(Instant.parse(captureTime.trim()));
+            } catch (DateTimeParseException e) {
+                Map<String, String> response = new HashMap<>();
+                response.put("error", "X-Capture-Time must be an ISO-8601 instant");
+                return Mono.just(ResponseEntity.badRequest().body(response));
+            }
+        }
+
+        // The body is consumed on the request thread; only the wait for the webhook is asynchronous
+        try {
+            UploadJob job = webhookService.submitPhotoStream(request.getInputStream(), options);
+            if (async) {
+                return Mono.just(acceptedResponse(job));
+            }
+            return Mono.fromFuture(job.getFuture(), true)
+                    .map(result -> uploadedResponse())
+                    .onErrorResume(error -> Mono.just(errorResponse(error)));
+        } catch (Exception error) {
+            return Mono.just(errorResponse(error));
+        }
+    }
+
+    // Many photos in one multipart request, e.g. a gallery backlog; always answers once they are queued
+    @PostMapping("/photos/bulk")
+    public ResponseEntity<Map<String, Object>> uploadPhotos(
+            @RequestParam(value = "files", required = false) List<MultipartFile> files,
+            @RequestParam(value = "captureTime", required = false) List<String> captureTimes,
+            @RequestParam(value = "priority", defaultValue = "bulk") String priority,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = "X-Camera-Id", required = false) String cameraId,
+            @RequestAttribute(value = UploadTimingFilter.STARTED_AT, required = false) Long receiveStartedAt) {
+        if (files == null || files.isEmpty()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "No file provided");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        // Capture times line up with the files by position; each photo gets its own key derived from the request's
+        List<UploadOptions> options = new ArrayList<>(files.size());
+        try {
+            UploadPriority lane = UploadPriority.parse(priority);
+            for (int i = 0; i < files.size(); i++) {
+                UploadOptions photoOptions = UploadOptions.defaults()
+                        .withPriority(lane)
+                        .withCameraId(cameraId)
+                        .withReceiveStartedAt(receiveStartedAt)
+                        .withIdempotencyKey(idempotencyKey != null && !idempotencyKey.isBlank() ? idempotencyKey.trim() + "/" + i : null);
+                String captureTime = captureTimes != null && i < captureTimes.size() ? captureTimes.get(i) : null;
+                if (captureTime != null && !captureTime.isBlank()) {
+                    photoOptions = photoOptions.withCaptureTime(Instant.parse(captureTime.trim()));
+                }
+                options.add(photoOptions);
+            }
+        } catch (DateTimeParseException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "captureTime must be an ISO-8601 instant");
+            return ResponseEntity.badRequest().body(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "Priority must be one of interactive, normal or bulk");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        List<UploadJob> jobs;
+        try {
+            jobs = webhookService.submitPhotos(files, options);
+        } catch (Exception error) {
+            ResponseEntity<Map<String, String>> failure = errorResponse(error);
+            return ResponseEntity.status(failure.getStatusCode()).body(new HashMap<String, Object>(failure.getBody()));
+        }
+
+        List<Map<String, String>> photos = new ArrayList<>(jobs.size());
+        boolean anyQueued = false;
+        for (UploadJob job : jobs) {
+            Map<String, String> photo = new HashMap<>();
+            photo.put("status", job.getStatus().name());
+            if (job.getStatus() == UploadJob.Status.FAILED) {
+                photo.put("error", job.getError());
+            } else {
+                photo.put("jobId", job.getId());
+                photo.put("statusUrl", "/api/jobs/" + job.getId());
+                anyQueued = true;
             }
-            
-            response.put("error", "Failed to upload photo: " + error.getMessage());
-            return ResponseEntity.internalServerError().body(response);
+            photos.add(photo);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("photos", photos);
+        if (!anyQueued) {
+            response.put("error", "None of the photos could be queued");
+            return ResponseEntity.badRequest().body(response);
+        }
+        return ResponseEntity.accepted().body(response);
+    }
+
+    private static boolean isJpeg(String contentType) {
+        try {
+            return contentType != null && MediaType.IMAGE_JPEG.equalsTypeAndSubtype(MediaType.parseMediaType(contentType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
         }
     }
 
+    private ResponseEntity<Map<String, String>> uploadedResponse() {
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Photo uploaded successfully");
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<Map<String, String>> acceptedResponse(UploadJob job) {
+        Map<String, String> response = new HashMap<>();
+        response.put("jobId", job.getId());
+        response.put("status", job.getStatus().name());
+        response.put("statusUrl", "/api/jobs/" + job.getId());
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/jobs/" + job.getId()))
+                .body(response);
+    }
+
+    private ResponseEntity<Map<String, String>> errorResponse(Throwable error) {
+        Map<String, String> response = new HashMap<>();
+
+        // Check if it's a webhook configuration error
+        if (error instanceof IllegalStateException &&
+            error.getMessage().contains("Webhook URL is not configured")) {
+            response.put("error", "Webhook no configurado. La URL del webhook no está configurada en el servidor.");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        // Rejected request bodies: empty or over the size limit
+        if (error instanceof IllegalArgumentException) {
+            response.put("error", error.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        // This camera holds its share of the queue; the others can still upload
+        if (error instanceof ClientQuotaExceededException rejected) {
+            response.put("error", rejected.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(rejected.getRetryAfterSeconds()))
+                    .body(response);
+        }
+
+        // Overload: the client should come back once the backlog has drained
+        if (error instanceof UploadRejectedException rejected) {
+            response.put("error", rejected.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(rejected.getRetryAfterSeconds()))
+                    .body(response);
+        }
+
+        response.put("error", "Failed to upload photo: " + error.getMessage());
+        return ResponseEntity.internalServerError().body(response);
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> getJobStatus(@PathVariable("id") String id) {
+        return webhookService.getJob(id)
+                .map(job -> {
+                    Map<String, Object> status = new HashMap<>();
+                    status.put("jobId", job.getId());
+                    status.put("status", job.getStatus().name());
+                    status.put("attempts", job.getAttempts());
+                    status.put("createdAt", job.getCreatedAt().toString());
+                    status.put("updatedAt", job.getUpdatedAt().toString());
+                    if (job.getError() != null) {
+                        status.put("error", job.getError());
+                    }
+                    return ResponseEntity.ok(status);
+                })
+                .orElseGet(() -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("error", "Job not found");
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+                });
+    }
+
+    // Where the job's time went: each stage with its start and duration, and the total per stage
+    @GetMapping("/jobs/{id}/timeline")
+    public ResponseEntity<Map<String, Object>> getJobTimeline(@PathVariable("id") String id) {
+        return webhookService.getJobTimeline(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("error", "Job not found");
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+                });
+    }
+
+    // Photos that failed for good and were kept for a later replay
+    @GetMapping("/dead-letters")
+    public ResponseEntity<List<Map<String, Object>>> getDeadLetters() {
+        return ResponseEntity.ok(webhookService.getDeadLetters());
+    }
+
+    @PostMapping("/dead-letters/{id}/replay")
+    public ResponseEntity<Map<String, String>> replayDeadLetter(@PathVariable("id") String id) {
+        try {
+            return webhookService.replayDeadLetter(id)
+                    .map(this::acceptedResponse)
+                    .orElseGet(() -> {
+                        Map<String, String> response = new HashMap<>();
+                        response.put("error", "Dead letter not found");
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+                    });
+        } catch (RuntimeException error) {
+            return errorResponse(error);
+        }
+    }
+
+    @DeleteMapping("/dead-letters/{id}")
+    public ResponseEntity<Void> deleteDeadLetter(@PathVariable("id") String id) {
+        return webhookService.deleteDeadLetter(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
     @GetMapping("/queue-status")
     public ResponseEntity<Map<String, Object>> getQueueStatus() {
-        Map<String, Object> status = new HashMap<>();
-        status.put("queueSize", webhookService.getQueueSize());
-        status.put("currentRequestCount", webhookService.getCurrentRequestCount());
-        status.put("requestsPerMinute", webhookService.getRequestsPerMinute());
-        status.put("isRateLimited", webhookService.isRateLimited());
-        
-        return ResponseEntity.ok(status);
+        return ResponseEntity.ok(webhookService.getQueueStatus());
+    }
+
+    // Live queue snapshots ("queue" events) and job status changes ("jobs" events) instead of polling
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamEvents() {
+        return webhookService.streamEvents()
+                .map(event -> ServerSentEvent.builder(event.getData()).event(event.getType()).build());
     }
 }
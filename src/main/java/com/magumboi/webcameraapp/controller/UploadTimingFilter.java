@@ -0,0 +1,36 @@
+package com.magumboi.webcameraapp.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Notes when an upload request started arriving. Spring parses a multipart request before the
+ * controller runs, so the upload's receive stage starts from this time to include the parsing.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class UploadTimingFilter extends OncePerRequestFilter {
+
+    // Request attribute holding the System.nanoTime() reading taken when the request reached the filter chain
+    public static final String STARTED_AT = UploadTimingFilter.class.getName() + ".startedAt";
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        request.setAttribute(STARTED_AT, System.nanoTime());
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,200 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Budget for the photos the service holds at once, whether queued, being processed, in flight
+ * or waiting for a retry. A photo reserves its bytes when it is admitted and gives them back
+ * when it is finished, so concurrent uploads can't overshoot the budget between a check and
+ * the enqueue. Interactive photos only count against the byte budget; the photo limit leaves
+ * them headroom, like the interactive lane does. Each client (camera) may also hold no more than
+ * its quota of photos, whatever their priority, so one camera can't use up the whole budget.
+ *
+ * Delivered photos feed a one-minute drain rate, from which rejections get a Retry-After.
+ */
+class AdmissionControl {
+
+    private static final int WINDOW_SECONDS = 60;
+    private static final long MIN_RETRY_AFTER_SECONDS = 1;
+    private static final long MAX_RETRY_AFTER_SECONDS = 300;
+    // Marks a drain bucket nothing was recorded in
+    private static final long EMPTY_BUCKET = Long.MIN_VALUE;
+
+    private final long maxBytes;
+    private final int maxPhotos;
+    private final int maxPhotosPerClient;
+    private final LongSupplier nanoClock;
+
+    private long bytes;
+    private int photos;
+    private final Map<String, Integer> clientPhotos = new HashMap<>();
+
+    // Per-second buckets of delivered photos and bytes, indexed by second modulo the window. Seconds
+    // count from construction because nanoTime may be negative
+    private final long[] drainedSecond = new long[WINDOW_SECONDS];
+    private final long[] drainedPhotos = new long[WINDOW_SECONDS];
+    private final long[] drainedBytes = new long[WINDOW_SECONDS];
+    private final long startedNanos;
+
+    AdmissionControl(long maxBytes, int maxPhotos) {
+        this(maxBytes, maxPhotos, 0, System::nanoTime);
+    }
+
+    AdmissionControl(long maxBytes, int maxPhotos, LongSupplier nanoClock) {
+        this(maxBytes, maxPhotos, 0, nanoClock);
+    }
+
+    // 0 leaves a limit unbounded
+    AdmissionControl(long maxBytes, int maxPhotos, int maxPhotosPerClient, LongSupplier nanoClock) {
+        this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        this.maxPhotos = maxPhotos > 0 ? maxPhotos : Integer.MAX_VALUE;
+        this.maxPhotosPerClient = maxPhotosPerClient > 0 ? maxPhotosPerClient : Integer.MAX_VALUE;
+        this.nanoClock = nanoClock;
+        this.startedNanos = nanoClock.getAsLong();
+        Arrays.fill(drainedSecond, EMPTY_BUCKET);
+    }
+
+    /**
+     * Reserves room for a task, or returns false when it doesn't fit. A photo larger than the
+     * whole byte budget is still admitted when nothing else is held, so it can't be refused forever.
+     */
+    synchronized boolean tryAdmit(UploadTask task) {
+        long size = task.getSize();
+        if (bytes > 0 && bytes + size > maxBytes) {
+            return false;
+        }
+        if (task.getPriority() != UploadPriority.INTERACTIVE && photos >= maxPhotos) {
+            return false;
+        }
+        if (isOverClientQuota(task.getClientId())) {
+            return false;
+        }
+        reserve(task, size);
+        return true;
+    }
+
+    // Whether the client already holds its quota of photos; shedding other clients' photos won't help then
+    synchronized boolean isOverClientQuota(String client) {
+        return clientPhotos.getOrDefault(client, 0) >= maxPhotosPerClient;
+    }
+
+    // Tasks recovered from the journal were admitted in an earlier run and are taken over as they are
+    synchronized void admitRecovered(UploadTask task) {
+        reserve(task, task.getSize());
+    }
+
+    // Quick check before reading a photo; the reservation itself happens in tryAdmit
+    synchronized boolean hasRoom(UploadPriority priority, long size) {
+        return (bytes == 0 || bytes + Math.max(0, size) <= maxBytes)
+                && (priority == UploadPriority.INTERACTIVE || photos < maxPhotos);
+    }
+
+    private void reserve(UploadTask task, long size) {
+        task.markAdmitted(size);
+        bytes += size;
+        if (task.getPriority() != UploadPriority.INTERACTIVE) {
+            photos++;
+        }
+        clientPhotos.merge(task.getClientId(), 1, Integer::sum);
+    }
+
+    // Gives back the reservation of a finished task; tasks that were never admitted are ignored
+    synchronized void release(UploadTask task) {
+        long size = task.clearAdmitted();
+        if (size < 0) {
+            return;
+        }
+        bytes -= size;
+        if (task.getPriority() != UploadPriority.INTERACTIVE) {
+            photos--;
+        }
+        // Clients without photos are forgotten, so camera IDs seen once don't pile up
+        clientPhotos.computeIfPresent(task.getClientId(), (client, count) -> count > 1 ? count - 1 : null);
+    }
+
+    synchronized void recordDrained(long size) {
+        long second = currentSecond();
+        int bucket = (int) Math.floorMod(second, (long) WINDOW_SECONDS);
+        if (drainedSecond[bucket] != second) {
+            drainedSecond[bucket] = second;
+            drainedPhotos[bucket] = 0;
+            drainedBytes[bucket] = 0;
+        }
+        drainedPhotos[bucket]++;
+        drainedBytes[bucket] += size;
+    }
+
+    /**
+     * Seconds until enough of the held photos should have drained for a task of this size and
+     * priority to fit, at the delivery rate of the last minute. Before anything was delivered,
+     * fallbackPhotosPerSecond (what the rate limits allow) stands in for the measured rate.
+     */
+    synchronized long retryAfterSeconds(long size, UploadPriority priority, double fallbackPhotosPerSecond) {
+        long now = currentSecond();
+        long windowPhotos = 0;
+        long windowBytes = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            if (drainedSecond[i] != EMPTY_BUCKET && now - drainedSecond[i] < WINDOW_SECONDS) {
+                windowPhotos += drainedPhotos[i];
+                windowBytes += drainedBytes[i];
+            }
+        }
+        double photoRate = photoRate(windowPhotos, now, fallbackPhotosPerSecond);
+        double averageBytes = windowPhotos > 0 ? (double) windowBytes / windowPhotos
+                : photos > 0 ? (double) bytes / photos : Math.max(1, size);
+        double byteRate = photoRate * Math.max(1, averageBytes);
+
+        double seconds = 0;
+        long excessBytes = bytes + size - maxBytes;
+        if (maxBytes != Long.MAX_VALUE && excessBytes > 0) {
+            seconds = excessBytes / byteRate;
+        }
+        long excessPhotos = (long) photos + 1 - maxPhotos;
+        if (priority != UploadPriority.INTERACTIVE && maxPhotos != Integer.MAX_VALUE && excessPhotos > 0) {
+            seconds = Math.max(seconds, excessPhotos / photoRate);
+        }
+        return Math.max(MIN_RETRY_AFTER_SECONDS, Math.min(MAX_RETRY_AFTER_SECONDS, (long) Math.ceil(seconds)));
+    }
+
+    /**
+     * Seconds until a client at its quota should have a photo delivered. Fair queuing gives each
+     * client holding photos an equal turn, so that is one photo at its share of the drain rate.
+     */
+    synchronized long clientRetryAfterSeconds(double fallbackPhotosPerSecond) {
+        long now = currentSecond();
+        long windowPhotos = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            if (drainedSecond[i] != EMPTY_BUCKET && now - drainedSecond[i] < WINDOW_SECONDS) {
+                windowPhotos += drainedPhotos[i];
+            }
+        }
+        double seconds = Math.max(1, clientPhotos.size()) / photoRate(windowPhotos, now, fallbackPhotosPerSecond);
+        return Math.max(MIN_RETRY_AFTER_SECONDS, Math.min(MAX_RETRY_AFTER_SECONDS, (long) Math.ceil(seconds)));
+    }
+
+    private double photoRate(long windowPhotos, long now, double fallbackPhotosPerSecond) {
+        double elapsed = Math.max(1, Math.min(WINDOW_SECONDS, now + 1));
+        return windowPhotos > 0 ? windowPhotos / elapsed : Math.max(fallbackPhotosPerSecond, 1e-3);
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    synchronized int getPhotos() {
+        return photos;
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    // Whole seconds since construction
+    private long currentSecond() {
+        return Math.floorDiv(nanoClock.getAsLong() - startedNanos, TimeUnit.SECONDS.toNanos(1));
+    }
+}
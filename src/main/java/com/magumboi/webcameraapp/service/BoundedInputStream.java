@@ -0,0 +1,55 @@
+package com.magumboi.webcameraapp.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Request body that fails once more than maxBytes have been read, so an oversized upload is cut off early
+class BoundedInputStream extends FilterInputStream {
+
+    private final long maxBytes;
+    private long read;
+
+    BoundedInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = super.read(buffer, offset, length);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    private void count(long n) throws TooLargeException {
+        read += n;
+        if (read > maxBytes) {
+            throw new TooLargeException(maxBytes);
+        }
+    }
+
+    static class TooLargeException extends IOException {
+        TooLargeException(long maxBytes) {
+            super("Photo is larger than " + maxBytes + " bytes");
+        }
+    }
+}
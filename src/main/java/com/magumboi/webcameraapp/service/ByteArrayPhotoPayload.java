@@ -0,0 +1,30 @@
+package com.magumboi.webcameraapp.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+
+// Payload held on the heap, as received from the upload request
+class ByteArrayPhotoPayload implements PhotoPayload {
+
+    private final byte[] data;
+
+    ByteArrayPhotoPayload(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public long size() {
+        return data.length;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return data;
+    }
+
+    @Override
+    public Flux<DataBuffer> content(DataBufferFactory bufferFactory) {
+        return Flux.defer(() -> Flux.just(bufferFactory.wrap(data)));
+    }
+}
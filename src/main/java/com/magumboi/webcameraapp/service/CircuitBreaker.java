@@ -0,0 +1,108 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops requests to a webhook that keeps failing. After failureThreshold consecutive server or
+ * connection errors it opens and nothing is sent; queued photos stay queued. Once the open time
+ * has passed a single probe request goes out (half-open): success closes the breaker, failure
+ * opens it again for twice as long, up to the maximum.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long maxOpenNanos;
+    private final LongSupplier nanoClock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int consecutiveTrips;
+    private long openUntil;
+    private boolean probeInFlight;
+
+    // failureThreshold 0 disables the breaker
+    CircuitBreaker(int failureThreshold, long openNanos, long maxOpenNanos, LongSupplier nanoClock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = Math.max(0, openNanos);
+        this.maxOpenNanos = Math.max(this.openNanos, maxOpenNanos);
+        this.nanoClock = nanoClock;
+    }
+
+    static CircuitBreaker disabled() {
+        return new CircuitBreaker(0, 0, 0, System::nanoTime);
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Nanoseconds before a request may be sent: 0 when closed or when a probe is due,
+     * Long.MAX_VALUE while a probe is in flight (its completion wakes the dispatcher).
+     */
+    synchronized long waitNanos() {
+        switch (state) {
+            case OPEN:
+                return Math.max(0, openUntil - nanoClock.getAsLong());
+            case HALF_OPEN:
+                return probeInFlight ? Long.MAX_VALUE : 0;
+            default:
+                return 0;
+        }
+    }
+
+    // Called for every request sent; the first one after the open time is the probe
+    synchronized void onRequestStarted() {
+        if (state == State.OPEN && openUntil - nanoClock.getAsLong() <= 0) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            probeInFlight = true;
+        }
+    }
+
+    // A probe that ended without an outcome frees the slot for the next one
+    synchronized void onRequestFinished() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            consecutiveTrips = 0;
+            probeInFlight = false;
+        }
+    }
+
+    synchronized void onFailure() {
+        if (failureThreshold <= 0) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            open();
+        }
+    }
+
+    private void open() {
+        long duration = Math.min(maxOpenNanos, openNanos << Math.min(consecutiveTrips, 16));
+        consecutiveTrips++;
+        state = State.OPEN;
+        openUntil = nanoClock.getAsLong() + duration;
+        probeInFlight = false;
+    }
+}
@@ -0,0 +1,12 @@
+package com.magumboi.webcameraapp.service;
+
+/**
+ * Thrown when one client (camera) already holds its quota of photos, while the service may still
+ * have room for the others. Carries how long the client should wait before trying again.
+ */
+public class ClientQuotaExceededException extends UploadRejectedException {
+
+    public ClientQuotaExceededException(String message, long retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+}
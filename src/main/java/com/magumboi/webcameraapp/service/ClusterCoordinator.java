@@ -0,0 +1,69 @@
+package com.magumboi.webcameraapp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Coordination between service instances that post to the same webhooks. Each webhook's rate
+ * limit is a token bucket shared by every instance, so together they stay within its budget
+ * however many instances run; once Discord reports the webhook's bucket, the window it reported
+ * is shared instead. Every queued photo is leased to the instance holding it; an
+ * instance that stops renewing its leases, because it crashed or shut down, leaves its photos
+ * to be claimed by the others.
+ */
+interface ClusterCoordinator {
+
+    String getInstanceId();
+
+    /**
+     * Takes a permit from the bucket shared by all instances.
+     *
+     * @return 0 when the permit was taken, otherwise the number of nanoseconds to wait before trying again
+     */
+    long tryAcquire(String bucket, int requestsPerMinute);
+
+    // Gives back a permit from tryAcquire that no request was sent with
+    void refund(String bucket, int requestsPerMinute);
+
+    // Holds the shared bucket for delayNanos after a 429, so the other instances don't run into the same limit;
+    // a bucket created by the block starts with requestsPerMinute tokens like any other
+    void block(String bucket, int requestsPerMinute, long delayNanos);
+
+    // Publishes the window Discord reported to one instance; until it resets, its remaining permits replace requestsPerMinute
+    void report(String bucket, int requestsPerMinute, int remaining, long resetAfterNanos);
+
+    // Makes a queued task claimable by the other instances should this one stop renewing its lease
+    void register(UploadTask task);
+
+    // Extends the leases of the tasks this instance still holds
+    void renew(Collection<String> taskIds);
+
+    // Lets the other instances claim the tasks right away, e.g. on shutdown
+    void abandon(Collection<String> taskIds);
+
+    // Tasks whose owner stopped renewing their lease, now leased to this instance; at most maxTasks
+    List<UploadTask> claimExpired(int maxTasks);
+
+    // The task was delivered or failed for good; ignored unless this instance holds the lease
+    void release(String taskId);
+
+    // Whether tasks outlive this process, so pending ones can be left to the other instances
+    boolean isShared();
+
+    default void close() {
+    }
+
+    // Bucket name of a webhook; the URL itself contains the webhook token and isn't written anywhere
+    static String bucketKey(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.function.LongSupplier;
+
+/**
+ * How many requests one webhook may have in flight, adjusted AIMD style from what it answers.
+ * Each success while the limit is in use adds about one slot per limit's worth of requests; a
+ * 429, a server or connection error halves it, and a response much slower than the recent
+ * fastest trims it by a tenth. Only one cut is made per round trip: a request sent before the
+ * last cut says nothing about the limit that cut set.
+ */
+class ConcurrencyLimit {
+
+    private static final double OVERLOAD_BACKOFF = 0.5;
+    private static final double LATENCY_BACKOFF = 0.9;
+    // Slower than this multiple of the baseline counts as queueing at the webhook
+    private static final double LATENCY_TOLERANCE = 2.0;
+    // Samples after which the baseline is re-measured, so it follows a webhook that got slower for good
+    private static final int BASELINE_SAMPLES = 100;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final LongSupplier nanoClock;
+    private double limit;
+    private long lastDecreaseAt;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+
+    ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, LongSupplier nanoClock) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.nanoClock = nanoClock;
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.lastDecreaseAt = nanoClock.getAsLong();
+    }
+
+    // A limit that never moves
+    static ConcurrencyLimit fixed(int limit) {
+        return new ConcurrencyLimit(limit, limit, limit, System::nanoTime);
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    // inFlight: requests in flight when this one finished, itself included
+    synchronized void onSuccess(long sentAt, long latencyNanos, int inFlight) {
+        updateBaseline(latencyNanos);
+        if (latencyNanos > baselineNanos * LATENCY_TOLERANCE) {
+            decrease(sentAt, LATENCY_BACKOFF);
+        } else if (inFlight >= (int) limit) {
+            // Only a limit that is actually reached has shown it can grow
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    synchronized void onOverload(long sentAt) {
+        decrease(sentAt, OVERLOAD_BACKOFF);
+    }
+
+    private void decrease(long sentAt, double ratio) {
+        if (sentAt - lastDecreaseAt < 0) {
+            return;
+        }
+        limit = Math.max(minLimit, limit * ratio);
+        lastDecreaseAt = nanoClock.getAsLong();
+    }
+
+    private void updateBaseline(long latencyNanos) {
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+        baselineNanos = Math.min(baselineNanos, latencyNanos);
+        if (++windowSamples >= BASELINE_SAMPLES) {
+            baselineNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.magumboi.webcameraapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Photos that failed for good, kept on disk so they can be inspected and replayed. Each entry is
+ * the photo (id.jpg) plus its metadata (id.properties); both are written to a temporary file and
+ * moved into place, the metadata last, so an entry without it was interrupted and is ignored.
+ * Writes run on their own thread because failures are reported on HTTP client threads. The oldest
+ * entries are dropped beyond maxEntries, tracked in an index read from disk once.
+ */
+class DeadLetterStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterStore.class);
+
+    // Entry IDs are job IDs; anything else is refused so an ID can't point outside the directory
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+
+    private final Path directory;
+    private final int maxEntries;
+    private final ExecutorService writer;
+    // IDs of the entries on disk, oldest first; loaded on the first write
+    private ArrayDeque<String> index;
+
+    DeadLetterStore(Path directory, int maxEntries) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dead-letter-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Completes once the photo is on disk (or could not be written); the task's payload must stay valid until then
+    CompletableFuture<Void> add(UploadTask task, String error) {
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    write(task, error);
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Could not keep failed job {} as a dead letter: {}", task.getJob().getId(), e.getMessage());
+                }
+            }, writer);
+        } catch (RejectedExecutionException e) {
+            // Closed during shutdown; the photo is lost like any other unsent one
+            logger.warn("Dead-letter store closed, dropping failed job {}", task.getJob().getId());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    synchronized List<Entry> list() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Entry> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".properties"))
+                    .forEach(file -> readEntry(file).ifPresent(entries::add));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list dead letters in " + directory, e);
+        }
+        entries.sort(Comparator.comparing(Entry::getFailedAt));
+        return entries;
+    }
+
+    synchronized Optional<Entry> find(String id) {
+        if (!VALID_ID.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        return readEntry(directory.resolve(id + ".properties"));
+    }
+
+    synchronized boolean remove(String id) {
+        if (!VALID_ID.matcher(id).matches()) {
+            return false;
+        }
+        try {
+            boolean removed = Files.deleteIfExists(directory.resolve(id + ".properties"));
+            Files.deleteIfExists(directory.resolve(id + ".jpg"));
+            if (index != null) {
+                index.remove(id);
+            }
+            return removed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove dead letter " + id, e);
+        }
+    }
+
+    void close() {
+        writer.shutdown();
+    }
+
+    private synchronized void write(UploadTask task, String error) throws IOException {
+        Files.createDirectories(directory);
+        ArrayDeque<String> ids = index();
+        String id = task.getJob().getId();
+        Path photo = directory.resolve(id + ".jpg");
+        Path temp = Files.createTempFile(directory, id, ".tmp");
+        try {
+            try (InputStream in = task.getPayload().openStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, photo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        Properties meta = new Properties();
+        meta.setProperty("filename", task.getFilename());
+        meta.setProperty("content", task.getContent());
+        meta.setProperty("priority", task.getPriority().name());
+        if (task.getCameraId() != null) {
+            meta.setProperty("cameraId", task.getCameraId());
+        }
+        meta.setProperty("attempts", String.valueOf(task.getAttempts()));
+        meta.setProperty("error", error != null ? error : "");
+        meta.setProperty("createdAt", task.getJob().getCreatedAt().toString());
+        meta.setProperty("failedAt", Instant.now().toString());
+        meta.setProperty("size", String.valueOf(Files.size(photo)));
+        temp = Files.createTempFile(directory, id, ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                meta.store(out, null);
+            }
+            Files.move(temp, directory.resolve(id + ".properties"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        logger.info("Kept failed job {} as a dead letter", id);
+
+        ids.remove(id);
+        ids.addLast(id);
+        while (maxEntries > 0 && ids.size() > maxEntries) {
+            remove(ids.peekFirst());
+        }
+    }
+
+    private ArrayDeque<String> index() {
+        if (index == null) {
+            index = new ArrayDeque<>();
+            list().forEach(entry -> index.addLast(entry.getId()));
+        }
+        return index;
+    }
+
+    private Optional<Entry> readEntry(Path metaFile) {
+        String name = metaFile.getFileName().toString();
+        String id = name.substring(0, name.length() - ".properties".length());
+        Path photo = directory.resolve(id + ".jpg");
+        if (!Files.exists(metaFile) || !Files.exists(photo)) {
+            return Optional.empty();
+        }
+        Properties meta = new Properties();
+        try (Reader in = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+            meta.load(in);
+            return Optional.of(new Entry(id, photo, meta));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Skipping unreadable dead letter {}: {}", id, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    static final class Entry {
+        private final String id;
+        private final Path photo;
+        private final String filename;
+        private final String content;
+        private final UploadPriority priority;
+        private final String cameraId;
+        private final int attempts;
+        private final String error;
+        private final Instant createdAt;
+        private final Instant failedAt;
+        private final long size;
+
+        Entry(String id, Path photo, Properties meta) {
+            this.id = id;
+            this.photo = photo;
+            this.filename = meta.getProperty("filename");
+            this.content = meta.getProperty("content", "");
+            this.priority = UploadPriority.valueOf(meta.getProperty("priority", UploadPriority.NORMAL.name()));
+            this.cameraId = meta.getProperty("cameraId");
+            this.attempts = Integer.parseInt(meta.getProperty("attempts", "0"));
+            this.error = meta.getProperty("error");
+            this.createdAt = Instant.parse(meta.getProperty("createdAt"));
+            this.failedAt = Instant.parse(meta.getProperty("failedAt"));
+            this.size = Long.parseLong(meta.getProperty("size", "0"));
+        }
+
+        String getId() { return id; }
+        Path getPhoto() { return photo; }
+        String getFilename() { return filename; }
+        String getContent() { return content; }
+        UploadPriority getPriority() { return priority; }
+        String getCameraId() { return cameraId; }
+        Instant getFailedAt() { return failedAt; }
+        long getSize() { return size; }
+
+        // Monitoring view; the photo itself is left out
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("filename", filename);
+            map.put("priority", priority.name().toLowerCase());
+            if (cameraId != null) {
+                map.put("cameraId", cameraId);
+            }
+            map.put("attempts", attempts);
+            map.put("error", error);
+            map.put("size", size);
+            map.put("createdAt", createdAt.toString());
+            map.put("failedAt", failedAt.toString());
+            return map;
+        }
+    }
+}
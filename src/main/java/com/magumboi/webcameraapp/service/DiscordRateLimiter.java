@@ -0,0 +1,290 @@
+package com.magumboi.webcameraapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter that mirrors Discord's bucket state from the X-RateLimit-* response headers
+ * and 429 bodies. While Discord has reported the current window, its remaining permits are the
+ * only limit. A local token bucket sized from requests-per-minute is the fallback: it applies
+ * before the first headers and after a reported window has passed without new ones, and only
+ * counts the requests sent meanwhile.
+ */
+class DiscordRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiscordRateLimiter.class);
+
+    static final String HEADER_BUCKET = "X-RateLimit-Bucket";
+    static final String HEADER_LIMIT = "X-RateLimit-Limit";
+    static final String HEADER_REMAINING = "X-RateLimit-Remaining";
+    static final String HEADER_RESET_AFTER = "X-RateLimit-Reset-After";
+    static final String HEADER_GLOBAL = "X-RateLimit-Global";
+
+    // How long to wait before re-checking a drained bucket whose reset time we don't know yet
+    private static final long UNKNOWN_RESET_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    // Responses whose reset time is within this tolerance belong to the same bucket window
+    private static final long SAME_WINDOW_TOLERANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final LongSupplier nanoClock;
+
+    // Local token bucket (fallback)
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    // Discord bucket state, -1 means unknown
+    private String bucket;
+    private int limit = -1;
+    private int remaining = -1;
+    private long resetAtNanos;
+    private boolean resetKnown;
+    // Whether remaining and resetAtNanos come from Discord rather than an assumed refill
+    private boolean windowReported;
+    // Length of the last window Discord reported, assumed for windows it hasn't told us about
+    private long windowNanos;
+
+    // Set by 429 responses, blocks every request until it passes
+    private long blockedUntilNanos;
+
+    DiscordRateLimiter(int requestsPerMinute) {
+        this(requestsPerMinute, System::nanoTime);
+    }
+
+    DiscordRateLimiter(int requestsPerMinute, LongSupplier nanoClock) {
+        if (requestsPerMinute <= 0) {
+            throw new IllegalArgumentException("requestsPerMinute must be positive");
+        }
+        this.nanoClock = nanoClock;
+        this.capacity = requestsPerMinute;
+        this.refillPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes a permit if one is available.
+     *
+     * @return 0 when the permit was taken, otherwise the number of nanoseconds to wait before trying again
+     */
+    synchronized long tryAcquire() {
+        long now = nanoClock.getAsLong();
+        long wait = delayNanos(now);
+        if (wait > 0) {
+            return wait;
+        }
+
+        if (!windowReported) {
+            tokens -= 1;
+        }
+        if (remaining >= 0) {
+            remaining--;
+        }
+        return 0;
+    }
+
+    // Gives back a permit from tryAcquire that no request was sent with
+    synchronized void release() {
+        if (!windowReported) {
+            tokens = Math.min(capacity, tokens + 1);
+        }
+        if (remaining >= 0 && (limit <= 0 || remaining < limit)) {
+            remaining++;
+        }
+    }
+
+    /**
+     * Returns how long a caller would have to wait for a permit, without taking one.
+     */
+    synchronized long peekDelayNanos() {
+        return delayNanos(nanoClock.getAsLong());
+    }
+
+    private long delayNanos(long now) {
+        refill(now);
+
+        if (now - blockedUntilNanos < 0) {
+            return blockedUntilNanos - now;
+        }
+
+        if (remaining >= 0) {
+            if (resetKnown && now - resetAtNanos >= 0) {
+                // The bucket window rolled over; assume a full bucket of the same length until headers
+                // say otherwise, so a drained bucket still refills when responses carry no headers
+                remaining = limit > 0 ? limit : -1;
+                resetAtNanos = now + windowNanos;
+                resetKnown = windowNanos > 0;
+                windowReported = false;
+            }
+            if (remaining == 0) {
+                return resetKnown ? resetAtNanos - now : UNKNOWN_RESET_POLL_NANOS;
+            }
+        }
+
+        if (!windowReported && tokens < 1) {
+            return (long) Math.ceil((1 - tokens) / refillPerNano);
+        }
+        return 0;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * refillPerNano);
+            lastRefillNanos = now;
+        }
+    }
+
+    /**
+     * Updates the bucket state from the rate-limit headers of any webhook response.
+     */
+    synchronized void onResponse(HttpHeaders headers) {
+        if (headers == null) {
+            return;
+        }
+        Integer headerRemaining = parseInt(headers.getFirst(HEADER_REMAINING));
+        Double resetAfter = parseDouble(headers.getFirst(HEADER_RESET_AFTER));
+        if (headerRemaining == null || resetAfter == null) {
+            return;
+        }
+
+        long now = nanoClock.getAsLong();
+        long newResetAt = now + secondsToNanos(resetAfter);
+        String headerBucket = headers.getFirst(HEADER_BUCKET);
+        Integer headerLimit = parseInt(headers.getFirst(HEADER_LIMIT));
+
+        boolean bucketChanged = headerBucket != null && !headerBucket.equals(bucket);
+        boolean newWindow = !resetKnown || newResetAt - resetAtNanos > SAME_WINDOW_TOLERANCE_NANOS;
+
+        if (bucketChanged || newWindow || remaining < 0) {
+            remaining = headerRemaining;
+        } else {
+            // Responses can arrive out of order; never give back permits already handed out
+            remaining = Math.min(remaining, headerRemaining);
+        }
+        if (bucketChanged || newWindow) {
+            windowNanos = secondsToNanos(resetAfter);
+        }
+        if (bucketChanged || newWindow || newResetAt - resetAtNanos > 0) {
+            resetAtNanos = newResetAt;
+        }
+        resetKnown = true;
+        windowReported = true;
+        if (headerBucket != null) {
+            bucket = headerBucket;
+        }
+        if (headerLimit != null) {
+            limit = headerLimit;
+        }
+    }
+
+    /**
+     * Records a 429 response. The retry_after value from the body wins over the headers,
+     * and a global rate limit blocks every request until it expires.
+     */
+    synchronized void onRateLimited(HttpHeaders headers, String body) {
+        onResponse(headers);
+
+        double retryAfter = -1;
+        boolean global = headers != null && "true".equalsIgnoreCase(headers.getFirst(HEADER_GLOBAL));
+
+        if (body != null && !body.isBlank()) {
+            try {
+                JsonNode json = objectMapper.readTree(body);
+                if (json.hasNonNull("retry_after")) {
+                    retryAfter = json.get("retry_after").asDouble();
+                }
+                global = global || json.path("global").asBoolean(false);
+            } catch (Exception e) {
+                logger.debug("Could not parse rate limit body: {}", e.getMessage());
+            }
+        }
+        if (retryAfter < 0 && headers != null) {
+            Double headerRetryAfter = parseDouble(headers.getFirst(HttpHeaders.RETRY_AFTER));
+            if (headerRetryAfter == null) {
+                headerRetryAfter = parseDouble(headers.getFirst(HEADER_RESET_AFTER));
+            }
+            retryAfter = headerRetryAfter != null ? headerRetryAfter : 1.0;
+        }
+
+        long now = nanoClock.getAsLong();
+        long until = now + secondsToNanos(retryAfter);
+        if (until - blockedUntilNanos > 0) {
+            blockedUntilNanos = until;
+        }
+        if (!global) {
+            remaining = 0;
+            resetAtNanos = until;
+            resetKnown = true;
+            windowReported = true;
+            windowNanos = Math.max(windowNanos, until - now);
+        }
+        logger.warn("Webhook rate limited ({}), retrying after {}s", global ? "global" : "bucket " + bucket, retryAfter);
+    }
+
+    // Utility methods for monitoring; requests counted against whichever limit currently applies
+    synchronized int getRequestsInWindow() {
+        long now = nanoClock.getAsLong();
+        delayNanos(now);
+        if (windowReported && limit > 0 && remaining >= 0) {
+            return Math.max(0, limit - remaining);
+        }
+        return (int) (capacity - Math.floor(tokens));
+    }
+
+    // Whether getRemaining and getResetAfterMillis currently come from Discord's headers
+    synchronized boolean isWindowReported() {
+        delayNanos(nanoClock.getAsLong());
+        return windowReported;
+    }
+
+    synchronized String getBucket() {
+        return bucket;
+    }
+
+    synchronized int getRemaining() {
+        return remaining;
+    }
+
+    synchronized long getResetAfterMillis() {
+        if (!resetKnown) {
+            return -1;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(resetAtNanos - nanoClock.getAsLong()));
+    }
+
+    private static long secondsToNanos(double seconds) {
+        return (long) (Math.max(0, seconds) * 1_000_000_000L);
+    }
+
+    private static Integer parseInt(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Double parseDouble(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
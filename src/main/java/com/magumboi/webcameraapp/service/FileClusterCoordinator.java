@@ -0,0 +1,423 @@
+package com.magumboi.webcameraapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Coordinator backed by a directory that every instance can reach, e.g. a shared volume.
+ * Buckets are small files updated under an exclusive file lock. Permits are taken from them in
+ * blocks of up to a second's worth and handed out locally, and a bucket that has none left isn't
+ * asked again until its wait is over, so most dispatch attempts don't touch the file. Each leased task is a photo
+ * (id.jpg), its metadata (id.properties, written last) and a lease (id.lease: owner and expiry);
+ * leases are read and changed under one lock file, so a task is claimed by one instance at a time.
+ * A claimed task is sent straight from the shared photo file.
+ */
+class FileClusterCoordinator implements ClusterCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileClusterCoordinator.class);
+
+    // File locks are held per process, so threads of this JVM queue up on a monitor per lock file first
+    private static final Map<Path, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    // Unused permits of a block go back to the bucket once it is this old; if this instance goes quiet
+    // before then, they are only lost until the bucket refills them
+    private static final long GRANT_MILLIS = 1000;
+    private static final int MAX_GRANT_PERMITS = 10;
+
+    private final String instanceId;
+    private final Path bucketDir;
+    private final Path taskDir;
+    private final Path taskLock;
+    private final long leaseMillis;
+    private final LongSupplier clockMillis;
+    private final Map<String, Grant> grants = new ConcurrentHashMap<>();
+
+    // Permits this instance took from a bucket and hasn't handed out yet; guarded by itself
+    private static class Grant {
+        private final int requestsPerMinute;
+        private int permits;
+        private long expiresAtMillis;
+        private long retryAtMillis;
+
+        Grant(int requestsPerMinute) {
+            this.requestsPerMinute = requestsPerMinute;
+        }
+    }
+
+    private interface LockedAction<T> {
+        T run(FileChannel channel) throws IOException;
+    }
+
+    FileClusterCoordinator(String instanceId, Path directory, long leaseMillis) throws IOException {
+        this(instanceId, directory, leaseMillis, System::currentTimeMillis);
+    }
+
+    FileClusterCoordinator(String instanceId, Path directory, long leaseMillis, LongSupplier clockMillis) throws IOException {
+        this.instanceId = instanceId;
+        this.bucketDir = Files.createDirectories(directory.resolve("buckets"));
+        this.taskDir = Files.createDirectories(directory.resolve("tasks"));
+        this.taskLock = directory.resolve("tasks.lock");
+        this.leaseMillis = leaseMillis;
+        this.clockMillis = clockMillis;
+        releaseStaleLeases();
+    }
+
+    @Override
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @Override
+    public long tryAcquire(String bucket, int requestsPerMinute) {
+        Grant grant = grant(bucket, requestsPerMinute);
+        synchronized (grant) {
+            long now = clockMillis.getAsLong();
+            if (grant.permits > 0 && grant.expiresAtMillis > now) {
+                grant.permits--;
+                return 0;
+            }
+            if (grant.retryAtMillis > now) {
+                return TimeUnit.MILLISECONDS.toNanos(grant.retryAtMillis - now);
+            }
+
+            // Whatever is left of an expired block goes back in the same update
+            int unused = grant.permits;
+            int blockSize = Math.max(1, Math.min(MAX_GRANT_PERMITS, requestsPerMinute / 60));
+            int[] taken = new int[1];
+            long wait = updateBucket(bucket, requestsPerMinute, tokens -> {
+                tokens.refund(now, unused);
+                taken[0] = tokens.take(now, blockSize);
+                return taken[0] > 0 ? 0 : tokens.waitNanos(now);
+            });
+            grant.permits = Math.max(0, taken[0] - 1);
+            grant.expiresAtMillis = now + GRANT_MILLIS;
+            grant.retryAtMillis = now + TimeUnit.NANOSECONDS.toMillis(wait);
+            return wait;
+        }
+    }
+
+    @Override
+    public void refund(String bucket, int requestsPerMinute) {
+        Grant grant = grant(bucket, requestsPerMinute);
+        synchronized (grant) {
+            long now = clockMillis.getAsLong();
+            if (grant.expiresAtMillis > now) {
+                grant.permits++;
+                return;
+            }
+            updateBucket(bucket, requestsPerMinute, tokens -> {
+                tokens.refund(now);
+                return 0L;
+            });
+        }
+    }
+
+    @Override
+    public void block(String bucket, int requestsPerMinute, long delayNanos) {
+        Grant grant = grant(bucket, requestsPerMinute);
+        synchronized (grant) {
+            long now = clockMillis.getAsLong();
+            long until = now + TimeUnit.NANOSECONDS.toMillis(delayNanos);
+            int unused = grant.permits;
+            updateBucket(bucket, requestsPerMinute, tokens -> {
+                tokens.refund(now, unused);
+                tokens.block(until);
+                return 0L;
+            });
+            grant.permits = 0;
+            grant.retryAtMillis = Math.max(grant.retryAtMillis, until);
+        }
+    }
+
+    // Permits still held were taken from the bucket already, so they stay valid under the reported window
+    @Override
+    public void report(String bucket, int requestsPerMinute, int remaining, long resetAfterNanos) {
+        long resetAt = clockMillis.getAsLong() + TimeUnit.NANOSECONDS.toMillis(resetAfterNanos);
+        updateBucket(bucket, requestsPerMinute, tokens -> {
+            tokens.report(remaining, resetAt);
+            return 0L;
+        });
+    }
+
+    @Override
+    public void register(UploadTask task) {
+        String id = task.getJob().getId();
+        try {
+            Path temp = Files.createTempFile(taskDir, id, ".tmp");
+            try {
+                try (InputStream in = task.getPayload().openStream()) {
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temp, taskDir.resolve(id + ".jpg"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                Properties meta = new Properties();
+                meta.setProperty("filename", task.getFilename());
+                meta.setProperty("content", task.getContent());
+                meta.setProperty("priority", task.getPriority().name());
+                if (task.getCameraId() != null) {
+                    meta.setProperty("cameraId", task.getCameraId());
+                }
+                meta.setProperty("createdAt", String.valueOf(task.getJob().getCreatedAt().toEpochMilli()));
+                try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    meta.store(out, null);
+                }
+                Files.move(temp, taskDir.resolve(id + ".properties"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            // Only a task with a lease can be claimed, so the lease goes last
+            locked(taskLock, channel -> {
+                writeLease(id, instanceId, clockMillis.getAsLong() + leaseMillis);
+                return null;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to register task " + id + " in " + taskDir, e);
+        }
+    }
+
+    @Override
+    public void renew(Collection<String> taskIds) {
+        setExpiry(taskIds, clockMillis.getAsLong() + leaseMillis);
+    }
+
+    @Override
+    public void abandon(Collection<String> taskIds) {
+        setExpiry(taskIds, 0);
+    }
+
+    @Override
+    public List<UploadTask> claimExpired(int maxTasks) {
+        if (maxTasks <= 0) {
+            return List.of();
+        }
+        List<String> claimedIds;
+        try {
+            claimedIds = locked(taskLock, channel -> {
+                long now = clockMillis.getAsLong();
+                List<String> ids = new ArrayList<>();
+                for (Path file : leaseFiles()) {
+                    if (ids.size() >= maxTasks) {
+                        break;
+                    }
+                    String id = taskId(file);
+                    String[] lease = readLease(file);
+                    if (lease != null && !lease[0].equals(instanceId) && Long.parseLong(lease[1]) <= now) {
+                        writeLease(id, instanceId, now + leaseMillis);
+                        ids.add(id);
+                    }
+                }
+                return ids;
+            });
+        } catch (IOException e) {
+            logger.warn("Failed to claim expired tasks in {}: {}", taskDir, e.getMessage());
+            return List.of();
+        }
+
+        List<UploadTask> tasks = new ArrayList<>();
+        for (String id : claimedIds) {
+            try {
+                tasks.add(readTask(id));
+            } catch (IOException | RuntimeException e) {
+                // Nothing to send; drop the entry so nobody claims it again
+                logger.warn("Dropping unreadable shared task {}: {}", id, e.getMessage());
+                release(id);
+            }
+        }
+        return tasks;
+    }
+
+    @Override
+    public void release(String taskId) {
+        try {
+            boolean owned = locked(taskLock, channel -> {
+                String[] lease = readLease(taskDir.resolve(taskId + ".lease"));
+                if (lease != null && !lease[0].equals(instanceId)) {
+                    return false;
+                }
+                Files.deleteIfExists(taskDir.resolve(taskId + ".lease"));
+                return true;
+            });
+            if (owned) {
+                delete(taskId);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to release shared task {}: {}", taskId, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    // Leases under this instance's name are from an earlier run, so they are made claimable again, by this instance too
+    // Hands the permits still held back to their buckets, so the other instances can use them right away
+    @Override
+    public void close() {
+        long now = clockMillis.getAsLong();
+        grants.forEach((bucket, grant) -> {
+            synchronized (grant) {
+                if (grant.permits == 0) {
+                    return;
+                }
+                int unused = grant.permits;
+                try {
+                    updateBucket(bucket, grant.requestsPerMinute, tokens -> {
+                        tokens.refund(now, unused);
+                        return 0L;
+                    });
+                    grant.permits = 0;
+                } catch (UncheckedIOException e) {
+                    logger.warn("Failed to return unused permits of {}: {}", bucket, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void releaseStaleLeases() throws IOException {
+        locked(taskLock, channel -> {
+            for (Path file : leaseFiles()) {
+                String[] lease = readLease(file);
+                if (lease != null && lease[0].equals(instanceId)) {
+                    writeLease(taskId(file), "", 0);
+                }
+            }
+            return null;
+        });
+    }
+
+    private List<Path> leaseFiles() throws IOException {
+        try (Stream<Path> files = Files.list(taskDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".lease")).toList();
+        }
+    }
+
+    private static String taskId(Path leaseFile) {
+        String name = leaseFile.getFileName().toString();
+        return name.substring(0, name.length() - ".lease".length());
+    }
+
+    private Grant grant(String bucket, int requestsPerMinute) {
+        return grants.computeIfAbsent(bucket, key -> new Grant(requestsPerMinute));
+    }
+
+    private long updateBucket(String bucket, int requestsPerMinute, ToLongFunction<TokenBucket> action) {
+        try {
+            return locked(bucketDir.resolve(bucket + ".bucket"), channel -> {
+                ByteBuffer buffer = ByteBuffer.allocate(TokenBucket.BYTES);
+                TokenBucket tokens;
+                if (channel.size() >= TokenBucket.BYTES) {
+                    channel.read(buffer, 0);
+                    buffer.flip();
+                    tokens = TokenBucket.readFrom(buffer, requestsPerMinute);
+                } else {
+                    tokens = new TokenBucket(requestsPerMinute, clockMillis.getAsLong());
+                }
+                long result = action.applyAsLong(tokens);
+                buffer.clear();
+                tokens.writeTo(buffer);
+                buffer.flip();
+                channel.write(buffer, 0);
+                return result;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to update shared rate limit " + bucket, e);
+        }
+    }
+
+    private void setExpiry(Collection<String> taskIds, long expiresAt) {
+        if (taskIds.isEmpty()) {
+            return;
+        }
+        try {
+            locked(taskLock, channel -> {
+                for (String id : taskIds) {
+                    String[] lease = readLease(taskDir.resolve(id + ".lease"));
+                    if (lease != null && lease[0].equals(instanceId)) {
+                        writeLease(id, instanceId, expiresAt);
+                    }
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            logger.warn("Failed to update leases in {}: {}", taskDir, e.getMessage());
+        }
+    }
+
+    private UploadTask readTask(String id) throws IOException {
+        Properties meta = new Properties();
+        try (Reader in = Files.newBufferedReader(taskDir.resolve(id + ".properties"), StandardCharsets.UTF_8)) {
+            meta.load(in);
+        }
+        Path photo = taskDir.resolve(id + ".jpg");
+        UploadJob job = new UploadJob(id, Instant.ofEpochMilli(Long.parseLong(meta.getProperty("createdAt"))));
+        return new UploadTask(meta.getProperty("filename"), new FilePhotoPayload(photo, Files.size(photo)),
+                meta.getProperty("content", ""), job,
+                UploadPriority.valueOf(meta.getProperty("priority", UploadPriority.NORMAL.name())), meta.getProperty("cameraId"));
+    }
+
+    // Lease files are written whole and moved into place, so a reader never sees half of one
+    private void writeLease(String id, String owner, long expiresAt) throws IOException {
+        Path temp = Files.createTempFile(taskDir, id, ".tmp");
+        try {
+            Files.writeString(temp, owner + "\n" + expiresAt + "\n", StandardCharsets.UTF_8);
+            Files.move(temp, taskDir.resolve(id + ".lease"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // [owner, expiresAtMillis], or null when there is no lease
+    private static String[] readLease(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String[] lines = Files.readString(file, StandardCharsets.UTF_8).split("\n");
+        return lines.length >= 2 ? lines : null;
+    }
+
+    private void delete(String id) {
+        try {
+            Files.deleteIfExists(taskDir.resolve(id + ".properties"));
+            Files.deleteIfExists(taskDir.resolve(id + ".jpg"));
+        } catch (IOException e) {
+            logger.warn("Failed to delete shared task {}: {}", id, e.getMessage());
+        }
+    }
+
+    private static <T> T locked(Path lockFile, LockedAction<T> action) throws IOException {
+        Object monitor = JVM_LOCKS.computeIfAbsent(lockFile.toAbsolutePath().normalize(), path -> new Object());
+        synchronized (monitor) {
+            try (FileChannel channel = FileChannel.open(lockFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                return action.run(channel);
+            }
+        }
+    }
+}
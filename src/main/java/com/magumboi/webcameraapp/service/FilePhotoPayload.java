@@ -0,0 +1,87 @@
+package com.magumboi.webcameraapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Payload spooled to a local file, typically the multipart temp file moved out of the servlet container
+class FilePhotoPayload implements PhotoPayload {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilePhotoPayload.class);
+
+    private final Path path;
+    private final long size;
+
+    FilePhotoPayload(Path path, long size) {
+        this.path = path;
+        this.size = size;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read spooled photo " + path, e);
+        }
+    }
+
+    @Override
+    public Flux<DataBuffer> content(DataBufferFactory bufferFactory) {
+        // The mapping stays valid after the channel is closed, and the file is sent straight from the page cache
+        return Flux.defer(() -> {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return Flux.just(bufferFactory.wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)));
+            } catch (IOException e) {
+                return Flux.error(new UncheckedIOException("Failed to read spooled photo " + path, e));
+            }
+        });
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void copyTo(ByteBuffer target, int offset) {
+        ByteBuffer destination = target.duplicate();
+        destination.position(offset).limit(offset + (int) size);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (destination.hasRemaining() && channel.read(destination) >= 0) {
+                // keep reading until the photo is copied
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read spooled photo " + path, e);
+        }
+    }
+
+    @Override
+    public void release() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spooled photo {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.magumboi.webcameraapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Motion filter in front of the upload pipeline for cameras that stream frames over a
+ * persistent connection. Every connection gets its own detector; only frames that show enough
+ * change are queued as photos, so sensitivity is tuned here rather than in each client.
+ */
+@Service
+public class FrameIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FrameIngestService.class);
+
+    // Share of the scene that has to change for a frame to be uploaded
+    @Value("${webhook.motion.threshold:0.05}")
+    private double motionThreshold;
+
+    // Luma difference (0-255) above which a grid cell counts as changed
+    @Value("${webhook.motion.cell-threshold:20}")
+    private int cellThreshold;
+
+    // Minimum time between two uploads of the same connection while motion goes on
+    @Value("${webhook.motion.cooldown-seconds:5}")
+    private int cooldownSeconds;
+
+    @Autowired
+    private WebhookService webhookService;
+
+    private final Map<String, MotionDetector> detectors = new ConcurrentHashMap<>();
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong framesForwarded = new AtomicLong();
+
+    public void open(String connectionId) {
+        detectors.put(connectionId, new MotionDetector(cellThreshold, motionThreshold, TimeUnit.SECONDS.toMillis(cooldownSeconds)));
+    }
+
+    /**
+     * Scores a frame against the previous one of the same connection and queues it when it
+     * crossed the motion threshold. Returns the upload job, or null when the frame was filtered.
+     *
+     * @throws IOException when the frame is not a readable image
+     */
+    public UploadJob ingest(String connectionId, String cameraId, byte[] frame, int offset, int length) throws IOException {
+        MotionDetector detector = detectors.get(connectionId);
+        if (detector == null) {
+            throw new IllegalStateException("Frame connection " + connectionId + " is not open");
+        }
+        framesReceived.incrementAndGet();
+        if (!detector.accept(frame, offset, length)) {
+            return null;
+        }
+
+        framesForwarded.incrementAndGet();
+        UploadOptions options = UploadOptions.defaults()
+                .withCameraId(cameraId)
+                .withCaptureTime(Instant.now());
+        UploadJob job = webhookService.submitPhotoStream(new ByteArrayInputStream(frame, offset, length), options);
+        logger.debug("Motion on camera {} queued as job {}", cameraId, job.getId());
+        return job;
+    }
+
+    public void close(String connectionId) {
+        MotionDetector detector = detectors.remove(connectionId);
+        if (detector != null) {
+            detector.close();
+        }
+    }
+
+    public int getOpenConnections() {
+        return detectors.size();
+    }
+
+    public long getFramesReceived() {
+        return framesReceived.get();
+    }
+
+    public long getFramesForwarded() {
+        return framesForwarded.get();
+    }
+}
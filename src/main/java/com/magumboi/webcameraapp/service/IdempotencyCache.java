@@ -0,0 +1,82 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Maps idempotency keys to the job created for them, so a client retrying an upload gets the
+ * original job back instead of queueing the photo again. Bounded as an LRU; finished jobs are
+ * forgotten once the TTL has passed, unfinished ones are kept as long as they fit.
+ */
+class IdempotencyCache {
+
+    private static class Entry {
+        final UploadJob job;
+        final long storedAt;
+
+        Entry(UploadJob job, long storedAt) {
+            this.job = job;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<String, Entry> entries;
+
+    IdempotencyCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::nanoTime);
+    }
+
+    IdempotencyCache(int maxEntries, long ttlMillis, LongSupplier nanoClock) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.nanoClock = nanoClock;
+        int capacity = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the live job stored under key, or stores job under it and returns null. Failed
+     * and expired jobs don't count, so a client can retry an upload that failed for good.
+     */
+    synchronized UploadJob claim(String key, UploadJob job) {
+        long now = nanoClock.getAsLong();
+        Entry entry = entries.get(key);
+        if (entry != null && !isStale(entry, now)) {
+            return entry.job;
+        }
+        entries.put(key, new Entry(job, now));
+        return null;
+    }
+
+    // Points key at a different job, e.g. when the photo was merged into an earlier upload
+    synchronized void put(String key, UploadJob job) {
+        entries.put(key, new Entry(job, nanoClock.getAsLong()));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void evictExpired() {
+        long now = nanoClock.getAsLong();
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            if (isStale(iterator.next(), now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private boolean isStale(Entry entry, long now) {
+        UploadJob.Status status = entry.job.getStatus();
+        return status == UploadJob.Status.FAILED || (status.isFinished() && now - entry.storedAt > ttlNanos);
+    }
+}
@@ -0,0 +1,330 @@
+package com.magumboi.webcameraapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optional stage between upload and dispatch that downscales photos to a maximum resolution,
+ * re-encodes them to fit a target size and strips metadata. Work runs on its own bounded pool
+ * so JPEG encoding never competes with the dispatcher or the HTTP client threads. Photos are read
+ * as streams, so a spooled photo is never copied onto the heap, and with a spool directory the new
+ * version is written there too.
+ */
+class ImageProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageProcessor.class);
+
+    private static final float START_QUALITY = 0.9f;
+    private static final float QUALITY_STEP = 0.1f;
+
+    private final int maxDimension;
+    private final long targetBytes;
+    private final float minQuality;
+    private final boolean stripMetadata;
+    private final Path spoolDirectory;
+    private final ThreadPoolExecutor executor;
+
+    ImageProcessor(int maxDimension, long targetBytes, float minQuality, boolean stripMetadata,
+                   int workerThreads, int queueCapacity) {
+        this(maxDimension, targetBytes, minQuality, stripMetadata, workerThreads, queueCapacity, null);
+    }
+
+    // Processed photos are written to spoolDirectory, or kept on the heap when it is null
+    ImageProcessor(int maxDimension, long targetBytes, float minQuality, boolean stripMetadata,
+                   int workerThreads, int queueCapacity, Path spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+        this.maxDimension = maxDimension;
+        this.targetBytes = targetBytes;
+        this.minQuality = minQuality;
+        this.stripMetadata = stripMetadata;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, workerThreads);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs {@link #process} on the worker pool.
+     *
+     * @throws RejectedExecutionException when the pool's queue is full
+     */
+    CompletableFuture<PhotoPayload> submit(PhotoPayload payload) {
+        return CompletableFuture.supplyAsync(() -> process(payload), executor);
+    }
+
+    /**
+     * Returns a payload that respects the configured limits, or the input itself when it
+     * already does or can't be decoded.
+     */
+    PhotoPayload process(PhotoPayload payload) {
+        long originalSize = payload.size();
+        try {
+            int[] dimensions = readDimensions(payload);
+            if (dimensions == null) {
+                return payload; // Not an image ImageIO understands; send it unchanged
+            }
+            int longestSide = Math.max(dimensions[0], dimensions[1]);
+            boolean tooLarge = maxDimension > 0 && longestSide > maxDimension;
+            boolean tooHeavy = targetBytes > 0 && originalSize > targetBytes;
+
+            if (!tooLarge && !tooHeavy) {
+                return stripMetadata ? strip(payload) : payload;
+            }
+
+            BufferedImage image = decode(payload, longestSide);
+            if (tooLarge) {
+                image = scale(image, maxDimension);
+            }
+            // Re-encoding writes no metadata, so stripping comes for free here
+            byte[] encoded = encodeToTarget(image);
+            logger.debug("Processed photo {}x{} {} bytes -> {}x{} {} bytes", dimensions[0], dimensions[1],
+                    originalSize, image.getWidth(), image.getHeight(), encoded.length);
+            return encoded.length < originalSize || tooLarge ? store(encoded) : payload;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Image processing failed, sending the original photo: {}", e.getMessage());
+            return payload;
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Spooled photos are read straight from their file; ImageIO would otherwise cache the stream in a temp file
+    private static ImageInputStream openImage(PhotoPayload payload) throws IOException {
+        if (payload instanceof FilePhotoPayload file) {
+            return new FileImageInputStream(file.getPath().toFile());
+        }
+        return new MemoryCacheImageInputStream(payload.openStream());
+    }
+
+    private static int[] readDimensions(PhotoPayload payload) throws IOException {
+        try (ImageInputStream input = openImage(payload)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Decodes with source subsampling when the photo is far above the target size, which
+    // skips most of the pixels instead of decoding them only to throw them away
+    private BufferedImage decode(PhotoPayload payload, int longestSide) throws IOException {
+        try (ImageInputStream input = openImage(payload)) {
+            ImageReader reader = ImageIO.getImageReaders(input).next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = maxDimension > 0 ? longestSide / (2 * maxDimension) : 1;
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int maxDimension) {
+        int longestSide = Math.max(image.getWidth(), image.getHeight());
+        if (longestSide <= maxDimension) {
+            return image;
+        }
+        double factor = maxDimension / (double) longestSide;
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    // Lowers the JPEG quality step by step until the photo fits the target size or the minimum quality is reached
+    private byte[] encodeToTarget(BufferedImage image) throws IOException {
+        BufferedImage rgb = toRgb(image);
+        float quality = START_QUALITY;
+        byte[] encoded = encodeJpeg(rgb, quality);
+        while (targetBytes > 0 && encoded.length > targetBytes && quality - QUALITY_STEP >= minQuality - 1e-6) {
+            quality -= QUALITY_STEP;
+            encoded = encodeJpeg(rgb, quality);
+        }
+        return encoded;
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    // The re-encoded photo, spooled when there is a spool directory
+    private PhotoPayload store(byte[] encoded) throws IOException {
+        if (spoolDirectory == null) {
+            return new ByteArrayPhotoPayload(encoded);
+        }
+        Path file = createSpoolFile();
+        try {
+            Files.write(file, encoded);
+            return new FilePhotoPayload(file, encoded.length);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    // The photo without its metadata, or the photo itself when it isn't a JPEG or has nothing to strip
+    private PhotoPayload strip(PhotoPayload payload) throws IOException {
+        if (spoolDirectory == null) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream((int) Math.min(payload.size(), Integer.MAX_VALUE - 8));
+            try (InputStream input = payload.openStream()) {
+                if (!stripJpegMetadata(input, output) || output.size() >= payload.size()) {
+                    return payload;
+                }
+            }
+            return new ByteArrayPhotoPayload(output.toByteArray());
+        }
+        Path file = createSpoolFile();
+        boolean keep = false;
+        try {
+            try (InputStream input = payload.openStream();
+                 OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+                keep = stripJpegMetadata(input, output);
+            }
+            long size = Files.size(file);
+            keep = keep && size < payload.size();
+            return keep ? new FilePhotoPayload(file, size) : payload;
+        } finally {
+            if (!keep) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private Path createSpoolFile() throws IOException {
+        Files.createDirectories(spoolDirectory);
+        return Files.createTempFile(spoolDirectory, "processed-", ".jpg");
+    }
+
+    /**
+     * Copies a JPEG without its EXIF/XMP (APP1), other vendor APP segments and comments, and
+     * without re-encoding it. JFIF (APP0), ICC profiles (APP2) and Adobe (APP14) are kept because
+     * they affect how the image is decoded. Returns false, with part of the photo written, when the
+     * input is not a JPEG laid out as expected; the output must then be discarded.
+     */
+    static boolean stripJpegMetadata(InputStream input, OutputStream output) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.read() != 0xFF || in.read() != 0xD8) {
+            return false;
+        }
+        output.write(0xFF);
+        output.write(0xD8); // SOI
+
+        byte[] segment = new byte[0xFFFF];
+        while (true) {
+            int prefix = in.read();
+            if (prefix < 0) {
+                return true;
+            }
+            int marker = in.read();
+            if (prefix != 0xFF || marker < 0) {
+                return false; // Not a marker where we expected one; leave the file alone
+            }
+            if (marker == 0xDA) {
+                // Start of scan: the rest is image data
+                output.write(prefix);
+                output.write(marker);
+                in.transferTo(output);
+                return true;
+            }
+            int length = in.readUnsignedShort();
+            if (length < 2) {
+                return false;
+            }
+            in.readFully(segment, 0, length - 2);
+            boolean metadata = (marker >= 0xE1 && marker <= 0xEF && marker != 0xE2 && marker != 0xEE) || marker == 0xFE;
+            if (!metadata) {
+                output.write(prefix);
+                output.write(marker);
+                output.write(length >> 8);
+                output.write(length & 0xFF);
+                output.write(segment, 0, length - 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Coordinator for instances in one JVM, the default for a single instance. Coordinators built
+ * on the same {@link Store} share their buckets and leases; tasks are kept by reference, so a
+ * claimed task carries on with the job of the instance that gave it up. The service only uses its
+ * buckets: it isn't shared, so queued photos are not leased through it.
+ */
+class InMemoryClusterCoordinator implements ClusterCoordinator {
+
+    // State shared by the coordinators of one JVM
+    static final class Store {
+        private final Map<String, TokenBucket> buckets = new HashMap<>();
+        private final Map<String, Lease> leases = new LinkedHashMap<>();
+    }
+
+    private static final class Lease {
+        final UploadTask task;
+        String owner;
+        long expiresAt;
+
+        Lease(UploadTask task, String owner, long expiresAt) {
+            this.task = task;
+            this.owner = owner;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final String instanceId;
+    private final Store store;
+    private final long leaseNanos;
+    private final LongSupplier nanoClock;
+
+    InMemoryClusterCoordinator(String instanceId, long leaseMillis) {
+        this(instanceId, new Store(), leaseMillis, System::nanoTime);
+    }
+
+    InMemoryClusterCoordinator(String instanceId, Store store, long leaseMillis, LongSupplier nanoClock) {
+        this.instanceId = instanceId;
+        this.store = store;
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @Override
+    public long tryAcquire(String bucket, int requestsPerMinute) {
+        synchronized (store) {
+            return bucket(bucket, requestsPerMinute).tryAcquire(TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong()));
+        }
+    }
+
+    @Override
+    public void refund(String bucket, int requestsPerMinute) {
+        synchronized (store) {
+            bucket(bucket, requestsPerMinute).refund(TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong()));
+        }
+    }
+
+    @Override
+    public void block(String bucket, int requestsPerMinute, long delayNanos) {
+        synchronized (store) {
+            bucket(bucket, requestsPerMinute).block(TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong() + delayNanos));
+        }
+    }
+
+    @Override
+    public void report(String bucket, int requestsPerMinute, int remaining, long resetAfterNanos) {
+        synchronized (store) {
+            bucket(bucket, requestsPerMinute).report(remaining, TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong() + resetAfterNanos));
+        }
+    }
+
+    @Override
+    public void register(UploadTask task) {
+        synchronized (store) {
+            store.leases.put(task.getJob().getId(), new Lease(task, instanceId, nanoClock.getAsLong() + leaseNanos));
+        }
+    }
+
+    @Override
+    public void renew(Collection<String> taskIds) {
+        setExpiry(taskIds, nanoClock.getAsLong() + leaseNanos);
+    }
+
+    @Override
+    public void abandon(Collection<String> taskIds) {
+        setExpiry(taskIds, nanoClock.getAsLong());
+    }
+
+    @Override
+    public List<UploadTask> claimExpired(int maxTasks) {
+        long now = nanoClock.getAsLong();
+        List<UploadTask> claimed = new ArrayList<>();
+        synchronized (store) {
+            for (Iterator<Lease> it = store.leases.values().iterator(); it.hasNext() && claimed.size() < maxTasks; ) {
+                Lease lease = it.next();
+                if (lease.expiresAt - now <= 0 && !lease.owner.equals(instanceId)) {
+                    lease.owner = instanceId;
+                    lease.expiresAt = now + leaseNanos;
+                    claimed.add(lease.task);
+                }
+            }
+        }
+        return claimed;
+    }
+
+    @Override
+    public void release(String taskId) {
+        synchronized (store) {
+            Lease lease = store.leases.get(taskId);
+            if (lease != null && lease.owner.equals(instanceId)) {
+                store.leases.remove(taskId);
+            }
+        }
+    }
+
+    // Nothing here survives the JVM
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    private void setExpiry(Collection<String> taskIds, long expiresAt) {
+        synchronized (store) {
+            for (String id : taskIds) {
+                Lease lease = store.leases.get(id);
+                if (lease != null && lease.owner.equals(instanceId)) {
+                    lease.expiresAt = expiresAt;
+                }
+            }
+        }
+    }
+
+    private TokenBucket bucket(String bucket, int requestsPerMinute) {
+        return store.buckets.computeIfAbsent(bucket,
+                key -> new TokenBucket(requestsPerMinute, TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong())));
+    }
+}
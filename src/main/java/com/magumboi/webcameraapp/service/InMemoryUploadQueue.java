@@ -0,0 +1,72 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Heap-only FIFO queue; queued photos are lost on restart
+class InMemoryUploadQueue implements UploadQueue {
+
+    private final BlockingQueue<UploadTask> tasks = new LinkedBlockingQueue<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+    @Override
+    public boolean offer(UploadTask task) {
+        if (!tasks.offer(task)) {
+            return false;
+        }
+        bytes.addAndGet(task.getSize());
+        return true;
+    }
+
+    @Override
+    public boolean requeue(UploadTask task) {
+        return offer(task);
+    }
+
+    @Override
+    public UploadTask peek() {
+        return tasks.peek();
+    }
+
+    @Override
+    public UploadTask poll() {
+        UploadTask task = tasks.poll();
+        if (task != null) {
+            bytes.addAndGet(-task.getSize());
+        }
+        return task;
+    }
+
+    @Override
+    public int size() {
+        return tasks.size();
+    }
+
+    @Override
+    public long sizeBytes() {
+        return bytes.get();
+    }
+
+    // Counted on demand; this queue only holds photos submitted before the dispatcher starts
+    @Override
+    public Map<String, Integer> clientSizes() {
+        Map<String, Integer> sizes = new HashMap<>();
+        tasks.forEach(task -> sizes.merge(task.getClientId(), 1, Integer::sum));
+        return sizes;
+    }
+
+    @Override
+    public List<UploadTask> drain() {
+        List<UploadTask> drained = new ArrayList<>();
+        UploadTask task;
+        while ((task = poll()) != null) {
+            drained.add(task);
+        }
+        return drained;
+    }
+}
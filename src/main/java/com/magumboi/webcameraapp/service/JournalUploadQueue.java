@@ -0,0 +1,465 @@
+package com.magumboi.webcameraapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Upload queue whose photos live in an append-only, memory-mapped journal on local disk.
+ * Only task metadata stays on the heap; photo bytes are read back from the mapped segment
+ * when the task is dispatched. Ordering is left to the wrapped in-memory queue.
+ *
+ * <p>On startup the journal is replayed and every photo that was never acknowledged is queued
+ * again. Segments are deleted oldest first once all of their photos have been acknowledged,
+ * which guarantees that an acknowledgement is never lost while its photo is still on disk.
+ *
+ * <p>Every record is forced to disk before {@link #offer} or {@link #acknowledge} returns, so an
+ * accepted photo survives a crash of the machine, not only of the process. An enqueue record is
+ * forced before its type word is written and then forced again, so a crash never leaves a
+ * committed record with a partially written photo.
+ */
+class JournalUploadQueue implements UploadQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalUploadQueue.class);
+
+    // Record layout: [int type][long sequence] followed, for enqueue records, by
+    // [int metaLength][meta][int dataLength][data]. The type is written last so a torn
+    // record reads as the end of the journal.
+    private static final int RECORD_END = 0;
+    private static final int RECORD_ENQUEUE = 0x454E5155; // "ENQU"
+    private static final int RECORD_ACK = 0x41434B44;     // "ACKD"
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    // Torn leftovers are cleared in chunks of this size, skipping the ones already zero
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    private final Path directory;
+    private final int segmentSize;
+    private final UploadQueue delegate;
+
+    // Oldest first; the last segment is the one being appended to
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    // Sequence number -> segment holding the photo, for every photo not yet acknowledged
+    private final Map<Long, Segment> liveRecords = new HashMap<>();
+    private final List<UploadTask> recovered = new ArrayList<>();
+    private long nextSequence;
+    private long nextSegmentId;
+    private boolean closed;
+
+    private static class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int liveRecords;
+
+        Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        int remaining() {
+            return buffer.capacity() - writePosition;
+        }
+    }
+
+    // Photo bytes read lazily from a mapped segment
+    private static class JournalPhotoPayload implements PhotoPayload {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        JournalPhotoPayload(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public long size() {
+            return length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            byte[] data = new byte[length];
+            buffer.get(offset, data);
+            return data;
+        }
+
+        @Override
+        public Flux<DataBuffer> content(DataBufferFactory bufferFactory) {
+            return Flux.defer(() -> Flux.just(bufferFactory.wrap(buffer.slice(offset, length))));
+        }
+    }
+
+    private JournalUploadQueue(Path directory, int segmentSize, UploadQueue delegate) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.delegate = delegate;
+    }
+
+    static JournalUploadQueue open(Path directory, long segmentSize, UploadQueue delegate) throws IOException {
+        Files.createDirectories(directory);
+        int size = (int) Math.min(Integer.MAX_VALUE, Math.max(4096, segmentSize));
+        JournalUploadQueue queue = new JournalUploadQueue(directory, size, delegate);
+        queue.replay();
+        return queue;
+    }
+
+    private synchronized void replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        // Pending enqueue records in sequence order
+        Map<Long, UploadTask> pending = new LinkedHashMap<>();
+        Map<Long, Segment> pendingSegments = new HashMap<>();
+
+        for (Path file : files) {
+            Segment segment = mapSegment(parseSegmentId(file), file, Files.size(file));
+            segments.addLast(segment);
+            nextSegmentId = Math.max(nextSegmentId, segment.id + 1);
+
+            ByteBuffer buffer = segment.buffer;
+            int position = 0;
+            while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+                int type = buffer.getInt(position);
+                if (type == RECORD_END) {
+                    break;
+                }
+                long sequence = buffer.getLong(position + Integer.BYTES);
+                nextSequence = Math.max(nextSequence, sequence + 1);
+
+                if (type == RECORD_ACK) {
+                    pending.remove(sequence);
+                    pendingSegments.remove(sequence);
+                    position += RECORD_HEADER_SIZE;
+                } else if (type == RECORD_ENQUEUE) {
+                    UploadTask task = readEnqueueRecord(buffer, position);
+                    if (task == null) {
+                        logger.warn("Corrupt journal record in {} at offset {}, ignoring the rest of the segment", file, position);
+                        break;
+                    }
+                    task.moveToJournal(sequence, task.getPayload());
+                    pending.put(sequence, task);
+                    pendingSegments.put(sequence, segment);
+                    position = ((JournalPhotoPayload) task.getPayload()).offset + (int) task.getSize();
+                } else {
+                    logger.warn("Unknown journal record type in {} at offset {}, ignoring the rest of the segment", file, position);
+                    break;
+                }
+            }
+            segment.writePosition = position;
+        }
+
+        // Leftovers of a torn write would otherwise be misread after new records are appended
+        if (!segments.isEmpty()) {
+            clearTail(segments.peekLast());
+        }
+
+        for (Map.Entry<Long, UploadTask> entry : pending.entrySet()) {
+            Segment segment = pendingSegments.get(entry.getKey());
+            segment.liveRecords++;
+            liveRecords.put(entry.getKey(), segment);
+            delegate.requeue(entry.getValue());
+            recovered.add(entry.getValue());
+        }
+        compact();
+
+        if (!recovered.isEmpty()) {
+            logger.info("Recovered {} queued photos from journal {}", recovered.size(), directory);
+        }
+    }
+
+    private UploadTask readEnqueueRecord(ByteBuffer buffer, int position) {
+        try {
+            int metaOffset = position + RECORD_HEADER_SIZE;
+            int metaLength = buffer.getInt(metaOffset);
+            int dataLengthOffset = metaOffset + Integer.BYTES + metaLength;
+            if (metaLength < 0 || dataLengthOffset + Integer.BYTES > buffer.capacity()) {
+                return null;
+            }
+            int dataLength = buffer.getInt(dataLengthOffset);
+            int dataOffset = dataLengthOffset + Integer.BYTES;
+            if (dataLength < 0 || (long) dataOffset + dataLength > buffer.capacity()) {
+                return null;
+            }
+
+            ByteBuffer meta = buffer.slice(metaOffset + Integer.BYTES, metaLength);
+            String jobId = readString(meta);
+            long createdAt = meta.getLong();
+            String filename = readString(meta);
+            String content = readString(meta);
+            // Records written before priorities existed end here
+            UploadPriority priority = meta.hasRemaining() ? UploadPriority.valueOf(readString(meta)) : UploadPriority.NORMAL;
+            String cameraId = meta.hasRemaining() ? readString(meta) : "";
+
+            UploadJob job = new UploadJob(jobId, Instant.ofEpochMilli(createdAt));
+            return new UploadTask(filename, new JournalPhotoPayload(buffer, dataOffset, dataLength), content, job, priority,
+                    cameraId.isEmpty() ? null : cameraId);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized boolean offer(UploadTask task) {
+        if (closed) {
+            return false;
+        }
+        PhotoPayload source = task.getPayload();
+        int dataLength = (int) source.size();
+        byte[] meta = encodeMeta(task);
+        int recordSize = RECORD_HEADER_SIZE + Integer.BYTES + meta.length + Integer.BYTES + dataLength;
+
+        Segment segment = segmentWithRoom(recordSize);
+        MappedByteBuffer buffer = segment.buffer;
+        int position = segment.writePosition;
+        long sequence = nextSequence++;
+
+        int metaOffset = position + RECORD_HEADER_SIZE;
+        int dataOffset = metaOffset + Integer.BYTES + meta.length + Integer.BYTES;
+        buffer.putLong(position + Integer.BYTES, sequence);
+        buffer.putInt(metaOffset, meta.length);
+        buffer.put(metaOffset + Integer.BYTES, meta);
+        buffer.putInt(dataOffset - Integer.BYTES, dataLength);
+        source.copyTo(buffer, dataOffset);
+        buffer.force(position, recordSize);
+        buffer.putInt(position, RECORD_ENQUEUE);
+        buffer.force(position, Integer.BYTES);
+
+        segment.writePosition += recordSize;
+        segment.liveRecords++;
+        liveRecords.put(sequence, segment);
+
+        // From here on the original copy of the photo is no longer needed
+        task.moveToJournal(sequence, new JournalPhotoPayload(buffer, dataOffset, dataLength));
+        source.release();
+
+        if (!delegate.offer(task)) {
+            acknowledge(task);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean requeue(UploadTask task) {
+        return delegate.requeue(task);
+    }
+
+    @Override
+    public boolean retry(UploadTask task) {
+        return delegate.retry(task);
+    }
+
+    @Override
+    public UploadTask peek() {
+        return delegate.peek();
+    }
+
+    @Override
+    public UploadTask poll() {
+        return delegate.poll();
+    }
+
+    // The caller acknowledges the shed task, which drops it from the journal
+    @Override
+    public UploadTask shedOldest(UploadPriority priority) {
+        return delegate.shedOldest(priority);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int size(UploadPriority priority) {
+        return delegate.size(priority);
+    }
+
+    @Override
+    public long sizeBytes() {
+        return delegate.sizeBytes();
+    }
+
+    @Override
+    public Map<UploadPriority, Integer> laneSizes() {
+        return delegate.laneSizes();
+    }
+
+    @Override
+    public Map<String, Integer> clientSizes() {
+        return delegate.clientSizes();
+    }
+
+    @Override
+    public synchronized void acknowledge(UploadTask task) {
+        long sequence = task.getJournalSequence();
+        Segment segment = liveRecords.remove(sequence);
+        if (segment == null || closed) {
+            return;
+        }
+
+        Segment target = segmentWithRoom(RECORD_HEADER_SIZE);
+        target.buffer.putLong(target.writePosition + Integer.BYTES, sequence);
+        target.buffer.putInt(target.writePosition, RECORD_ACK);
+        target.buffer.force(target.writePosition, RECORD_HEADER_SIZE);
+        target.writePosition += RECORD_HEADER_SIZE;
+
+        segment.liveRecords--;
+        compact();
+    }
+
+    @Override
+    public List<UploadTask> recoveredTasks() {
+        return List.copyOf(recovered);
+    }
+
+    @Override
+    public List<UploadTask> drain() {
+        return delegate.drain();
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            try {
+                segment.buffer.force();
+                segment.channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close journal segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    // Zeroes everything after the last record, writing only the chunks that aren't zero already so an
+    // untouched segment isn't turned into dirty pages
+    private static void clearTail(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        ByteBuffer zeros = ByteBuffer.wrap(ZEROS);
+        boolean cleared = false;
+        for (int position = segment.writePosition; position < buffer.capacity(); position += ZEROS.length) {
+            int length = Math.min(ZEROS.length, buffer.capacity() - position);
+            if (buffer.slice(position, length).mismatch(zeros.slice(0, length)) != -1) {
+                buffer.put(position, ZEROS, 0, length);
+                cleared = true;
+            }
+        }
+        if (cleared) {
+            buffer.force(segment.writePosition, buffer.capacity() - segment.writePosition);
+        }
+    }
+
+    // Deletes fully acknowledged segments from the front, never the one being appended to
+    private void compact() {
+        while (segments.size() > 1 && segments.peekFirst().liveRecords == 0) {
+            Segment segment = segments.removeFirst();
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+                logger.debug("Deleted acknowledged journal segment {}", segment.path);
+            } catch (IOException e) {
+                logger.warn("Failed to delete journal segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    private Segment segmentWithRoom(int recordSize) {
+        Segment active = segments.peekLast();
+        if (active != null && active.remaining() >= recordSize) {
+            return active;
+        }
+        try {
+            long id = nextSegmentId++;
+            Path path = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+            Segment segment = mapSegment(id, path, Math.max(segmentSize, recordSize));
+            segments.addLast(segment);
+            compact();
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create journal segment in " + directory, e);
+        }
+    }
+
+    private static Segment mapSegment(long id, Path path, long size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new Segment(id, path, channel, buffer);
+    }
+
+    private static long parseSegmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static byte[] encodeMeta(UploadTask task) {
+        byte[] jobId = task.getJob().getId().getBytes(StandardCharsets.UTF_8);
+        byte[] filename = task.getFilename().getBytes(StandardCharsets.UTF_8);
+        byte[] content = task.getContent().getBytes(StandardCharsets.UTF_8);
+        byte[] priority = task.getPriority().name().getBytes(StandardCharsets.UTF_8);
+        byte[] cameraId = (task.getCameraId() != null ? task.getCameraId() : "").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer meta = ByteBuffer.allocate(5 * Integer.BYTES + Long.BYTES
+                + jobId.length + filename.length + content.length + priority.length + cameraId.length);
+        meta.putInt(jobId.length).put(jobId);
+        meta.putLong(task.getJob().getCreatedAt().toEpochMilli());
+        meta.putInt(filename.length).put(filename);
+        meta.putInt(content.length).put(content);
+        meta.putInt(priority.length).put(priority);
+        meta.putInt(cameraId.length).put(cameraId);
+        return meta.array();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
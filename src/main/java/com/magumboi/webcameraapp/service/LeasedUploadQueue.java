@@ -0,0 +1,216 @@
+package com.magumboi.webcameraapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload queue that leases every photo it holds through the cluster coordinator, from shortly
+ * after it is queued until it is acknowledged. Registering a photo copies it to the shared store,
+ * so that happens on a background thread rather than in the request; a photo acknowledged
+ * before its turn is never registered. Ordering is left to the wrapped queue. The
+ * service renews the leases while it runs and takes over photos whose leases other instances
+ * stopped renewing. The shared store is what makes the photos durable, so the wrapped queue is
+ * never a journal: photos replayed from one may have been taken over and sent meanwhile.
+ */
+class LeasedUploadQueue implements UploadQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeasedUploadQueue.class);
+
+    private final ClusterCoordinator coordinator;
+    private final UploadQueue delegate;
+    private final ExecutorService registrar;
+    private final Set<String> leased = ConcurrentHashMap.newKeySet();
+    // Queued but not registered yet
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    LeasedUploadQueue(ClusterCoordinator coordinator, UploadQueue delegate) {
+        this(coordinator, delegate, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "photo-lease");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    LeasedUploadQueue(ClusterCoordinator coordinator, UploadQueue delegate, ExecutorService registrar) {
+        this.coordinator = coordinator;
+        this.delegate = delegate;
+        this.registrar = registrar;
+    }
+
+    // Pending before it is offered, so an acknowledgement right after the offer cancels the registration
+    @Override
+    public boolean offer(UploadTask task) {
+        String id = task.getJob().getId();
+        pending.add(id);
+        if (!delegate.offer(task)) {
+            pending.remove(id);
+            return false;
+        }
+        try {
+            registrar.execute(() -> register(task));
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the photo is only kept by this instance
+            pending.remove(id);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean requeue(UploadTask task) {
+        return delegate.requeue(task);
+    }
+
+    @Override
+    public boolean retry(UploadTask task) {
+        return delegate.retry(task);
+    }
+
+    @Override
+    public UploadTask peek() {
+        return delegate.peek();
+    }
+
+    @Override
+    public UploadTask poll() {
+        return delegate.poll();
+    }
+
+    @Override
+    public UploadTask shedOldest(UploadPriority priority) {
+        return delegate.shedOldest(priority);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int size(UploadPriority priority) {
+        return delegate.size(priority);
+    }
+
+    @Override
+    public long sizeBytes() {
+        return delegate.sizeBytes();
+    }
+
+    @Override
+    public Map<UploadPriority, Integer> laneSizes() {
+        return delegate.laneSizes();
+    }
+
+    @Override
+    public Map<String, Integer> clientSizes() {
+        return delegate.clientSizes();
+    }
+
+    // Waits for a registration copying this photo, so the lease it writes is released too
+    @Override
+    public void acknowledge(UploadTask task) {
+        synchronized (task) {
+            pending.remove(task.getJob().getId());
+            release(task);
+        }
+        delegate.acknowledge(task);
+    }
+
+    @Override
+    public List<UploadTask> recoveredTasks() {
+        return delegate.recoveredTasks();
+    }
+
+    @Override
+    public List<UploadTask> drain() {
+        return delegate.drain();
+    }
+
+    // Photos in a shared store are taken over by the other instances after a shutdown
+    @Override
+    public boolean isDurable() {
+        return coordinator.isShared() || delegate.isDurable();
+    }
+
+    int getLeasedCount() {
+        return leased.size();
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    void renewLeases() {
+        if (!closed) {
+            coordinator.renew(List.copyOf(leased));
+        }
+    }
+
+    // Takes over up to maxTasks photos whose owner stopped renewing their leases; they join their lanes as retries would
+    List<UploadTask> claimExpired(int maxTasks) {
+        if (closed) {
+            return List.of();
+        }
+        List<UploadTask> claimed = coordinator.claimExpired(maxTasks);
+        for (UploadTask task : claimed) {
+            leased.add(task.getJob().getId());
+            delegate.requeue(task);
+        }
+        return claimed;
+    }
+
+    // Photos queued so far are registered first; shared leases are then given up at once, so the
+    // other instances don't wait for them to expire
+    @Override
+    public void close() {
+        registrar.shutdown();
+        try {
+            if (!registrar.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Gave up registering {} queued photos with the cluster", pending.size());
+                registrar.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            registrar.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        closed = true;
+        if (coordinator.isShared() && !leased.isEmpty()) {
+            coordinator.abandon(List.copyOf(leased));
+            logger.info("Left {} leased photos to the other instances", leased.size());
+        }
+        delegate.close();
+    }
+
+    private void register(UploadTask task) {
+        synchronized (task) {
+            if (pending.remove(task.getJob().getId())) {
+                lease(task);
+            }
+        }
+    }
+
+    private void lease(UploadTask task) {
+        try {
+            coordinator.register(task);
+            leased.add(task.getJob().getId());
+        } catch (RuntimeException e) {
+            // Still sent from here; only the takeover by another instance is lost
+            logger.warn("Could not lease photo {} to the cluster: {}", task.getJob().getId(), e.getMessage());
+        }
+    }
+
+    private void release(UploadTask task) {
+        if (leased.remove(task.getJob().getId())) {
+            coordinator.release(task.getJob().getId());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.magumboi.webcameraapp.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Motion scoring for the frames of one camera connection. Each frame is reduced to a coarse
+ * luma grid and compared with the grid of the previous frame; the score is the share of cells
+ * whose brightness changed noticeably. All buffers are primitive arrays reused across frames,
+ * so scoring allocates nothing per pixel.
+ */
+class MotionDetector {
+
+    static final int GRID_COLUMNS = 64;
+    static final int GRID_ROWS = 48;
+
+    // Decode at roughly this many pixels per grid cell side, like the dedup hash
+    private static final int SAMPLES_PER_CELL = 2;
+
+    private final int cellThreshold;
+    private final double scoreThreshold;
+    private final long cooldownNanos;
+    private final LongSupplier nanoClock;
+
+    private final long[] sums = new long[GRID_COLUMNS * GRID_ROWS];
+    private final int[] samples = new int[GRID_COLUMNS * GRID_ROWS];
+    private final int[] previous = new int[GRID_COLUMNS * GRID_ROWS];
+    private int[] row = new int[0];
+    private boolean hasPrevious;
+    private long lastTriggeredAt;
+    private boolean triggered;
+    private ImageReader reader;
+
+    MotionDetector(int cellThreshold, double scoreThreshold, long cooldownMillis) {
+        this(cellThreshold, scoreThreshold, cooldownMillis, System::nanoTime);
+    }
+
+    MotionDetector(int cellThreshold, double scoreThreshold, long cooldownMillis, LongSupplier nanoClock) {
+        this.cellThreshold = cellThreshold;
+        this.scoreThreshold = scoreThreshold;
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Scores a JPEG frame and returns true when it crossed the threshold and the cooldown since
+     * the last forwarded frame has passed. Throws when the frame can't be decoded.
+     */
+    synchronized boolean accept(byte[] frame, int offset, int length) throws IOException {
+        double score = score(decode(frame, offset, length));
+        if (score < scoreThreshold) {
+            return false;
+        }
+        long now = nanoClock.getAsLong();
+        if (triggered && now - lastTriggeredAt < cooldownNanos) {
+            return false;
+        }
+        triggered = true;
+        lastTriggeredAt = now;
+        return true;
+    }
+
+    // Share of grid cells whose luma moved by more than cellThreshold; the first frame scores 0
+    double score(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        int bands = raster.getNumBands();
+        if (row.length < width * bands) {
+            row = new int[width * bands];
+        }
+        Arrays.fill(sums, 0);
+        Arrays.fill(samples, 0);
+
+        // Area-average luma into the grid, one raster row at a time into the reused row buffer
+        for (int y = 0; y < height; y++) {
+            int rowOffset = (y * GRID_ROWS / height) * GRID_COLUMNS;
+            raster.getPixels(0, y, width, 1, row);
+            for (int x = 0; x < width; x++) {
+                int i = x * bands;
+                int luma = bands >= 3 ? (row[i] * 299 + row[i + 1] * 587 + row[i + 2] * 114) / 1000 : row[i];
+                int cell = rowOffset + x * GRID_COLUMNS / width;
+                sums[cell] += luma;
+                samples[cell]++;
+            }
+        }
+
+        int changed = 0;
+        for (int cell = 0; cell < previous.length; cell++) {
+            int luma = (int) (sums[cell] / Math.max(1, samples[cell]));
+            if (hasPrevious && Math.abs(luma - previous[cell]) > cellThreshold) {
+                changed++;
+            }
+            previous[cell] = luma;
+        }
+        boolean first = !hasPrevious;
+        hasPrevious = true;
+        return first ? 0 : (double) changed / previous.length;
+    }
+
+    // The reader is kept for the connection, so only the decoded image is allocated per frame
+    private BufferedImage decode(byte[] frame, int offset, int length) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(frame, offset, length))) {
+            if (reader == null) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+                if (!readers.hasNext()) {
+                    throw new IOException("Unsupported image format");
+                }
+                reader = readers.next();
+            }
+            reader.setInput(input, true, true);
+            int subsamplingX = Math.max(1, reader.getWidth(0) / (GRID_COLUMNS * SAMPLES_PER_CELL));
+            int subsamplingY = Math.max(1, reader.getHeight(0) / (GRID_ROWS * SAMPLES_PER_CELL));
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsamplingX, subsamplingY, 0, 0);
+            return reader.read(0, param);
+        }
+    }
+
+    synchronized void close() {
+        if (reader != null) {
+            reader.dispose();
+            reader = null;
+        }
+    }
+}
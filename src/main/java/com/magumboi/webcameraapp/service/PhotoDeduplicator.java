@@ -0,0 +1,148 @@
+package com.magumboi.webcameraapp.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Recognizes near-identical photos by their difference hash (dHash) and remembers the jobs of
+ * recently accepted photos, so a burst of frames of the same scene uses a single upload.
+ */
+class PhotoDeduplicator {
+
+    // dHash compares each cell with its right neighbour: 9x8 cells give 8x8 = 64 bits
+    private static final int HASH_COLUMNS = 9;
+    private static final int HASH_ROWS = 8;
+
+    // Decode at roughly this many pixels per hash cell side; enough to average out sensor and JPEG noise
+    private static final int SAMPLES_PER_CELL = 8;
+
+    // Luma difference below which neighbouring cells count as equal, so flat areas hash to stable zeros
+    private static final int FLAT_THRESHOLD = 4;
+
+    private final int maxDistance;
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+
+    // Ring buffer of recent hashes; primitive arrays keep lookups free of boxing
+    private final long[] hashes;
+    private final long[] recordedAt;
+    private final UploadJob[] jobs;
+    private int next;
+    private int count;
+
+    PhotoDeduplicator(int capacity, long windowMillis, int maxDistance) {
+        this(capacity, windowMillis, maxDistance, System::nanoTime);
+    }
+
+    PhotoDeduplicator(int capacity, long windowMillis, int maxDistance, LongSupplier nanoClock) {
+        int size = Math.max(1, capacity);
+        this.hashes = new long[size];
+        this.recordedAt = new long[size];
+        this.jobs = new UploadJob[size];
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxDistance = maxDistance;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns the job of a recent photo within the Hamming distance of hash, or records job
+     * under hash and returns null. Jobs that failed are never matched, so their photos can be
+     * sent again.
+     */
+    synchronized UploadJob findOrRecord(long hash, UploadJob job) {
+        long now = nanoClock.getAsLong();
+        UploadJob closest = null;
+        int closestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (now - recordedAt[i] > windowNanos || jobs[i].getStatus() == UploadJob.Status.FAILED) {
+                continue;
+            }
+            int distance = distance(hashes[i], hash);
+            if (distance <= maxDistance && distance < closestDistance) {
+                closest = jobs[i];
+                closestDistance = distance;
+            }
+        }
+        if (closest != null) {
+            return closest;
+        }
+
+        hashes[next] = hash;
+        recordedAt[next] = now;
+        jobs[next] = job;
+        next = (next + 1) % hashes.length;
+        count = Math.min(count + 1, hashes.length);
+        return null;
+    }
+
+    /**
+     * Computes the 64-bit dHash of a photo, or throws when it is not an image ImageIO can read.
+     * The photo is decoded with source subsampling to a few dozen pixels per side, which skips
+     * almost all of the pixel work of a full decode.
+     */
+    static long differenceHash(PhotoPayload payload) throws IOException {
+        try (InputStream stream = payload.openStream();
+             ImageInputStream input = new MemoryCacheImageInputStream(stream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int subsamplingX = Math.max(1, reader.getWidth(0) / (HASH_COLUMNS * SAMPLES_PER_CELL));
+                int subsamplingY = Math.max(1, reader.getHeight(0) / (HASH_ROWS * SAMPLES_PER_CELL));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsamplingX, subsamplingY, 0, 0);
+                return differenceHash(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    static long differenceHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long[] sums = new long[HASH_COLUMNS * HASH_ROWS];
+        int[] samples = new int[HASH_COLUMNS * HASH_ROWS];
+
+        // Area-average luma into the 9x8 grid straight from the decoded pixels
+        for (int y = 0; y < height; y++) {
+            int rowOffset = (y * HASH_ROWS / height) * HASH_COLUMNS;
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(x, y);
+                int luma = (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+                int cell = rowOffset + x * HASH_COLUMNS / width;
+                sums[cell] += luma;
+                samples[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int row = 0; row < HASH_ROWS; row++) {
+            for (int column = 0; column < HASH_COLUMNS - 1; column++) {
+                int cell = row * HASH_COLUMNS + column;
+                long left = Math.max(1, samples[cell]);
+                long right = Math.max(1, samples[cell + 1]);
+                // Compare averages without dividing: a/n - b/m > t  <=>  a*m - b*n > t*n*m
+                boolean brighter = sums[cell] * right - sums[cell + 1] * left > FLAT_THRESHOLD * left * right;
+                hash = (hash << 1) | (brighter ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+}
@@ -0,0 +1,39 @@
+package com.magumboi.webcameraapp.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Photo bytes of a queued upload. Implementations may keep the bytes off-heap and only
+ * materialize them when the photo is dispatched.
+ */
+interface PhotoPayload {
+
+    long size();
+
+    // Full heap copy; only for stages that need to look at the pixels
+    byte[] getBytes();
+
+    // Body for the outbound request; wraps the underlying storage instead of copying it
+    Flux<DataBuffer> content(DataBufferFactory bufferFactory);
+
+    // Sequential read of the photo for decoders, without a full heap copy where possible
+    default InputStream openStream() throws IOException {
+        return new ByteArrayInputStream(getBytes());
+    }
+
+    // Writes the photo into target starting at offset, without going through the heap where possible
+    default void copyTo(ByteBuffer target, int offset) {
+        target.put(offset, getBytes());
+    }
+
+    // Frees the underlying storage once the photo is no longer needed
+    default void release() {
+    }
+}
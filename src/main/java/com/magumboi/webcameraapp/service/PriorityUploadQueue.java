@@ -0,0 +1,304 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Heap queue with one FIFO lane per {@link UploadPriority}. Lanes are served by smooth weighted
+ * round robin, so with weights 8:3:1 interactive photos get eight of every twelve dispatches
+ * while they are waiting. A photo that has waited longer than the maximum wait is served next
+ * whatever its lane, which bounds the latency of background photos. Each lane has its own
+ * capacity (0 for unbounded), so bulk traffic can't take the room reserved for interactive captures.
+ *
+ * Within a lane every client (camera, or browser) has its own FIFO flow, and flows take turns by
+ * deficit round robin: a flow of weight w sends up to w photos per round. A camera firing
+ * constantly therefore only delays the others by its share of the round, however long its backlog.
+ */
+class PriorityUploadQueue implements UploadQueue {
+
+    private static class Flow {
+        final String client;
+        final ArrayDeque<UploadTask> tasks = new ArrayDeque<>();
+        int deficit;
+
+        Flow(String client) {
+            this.client = client;
+        }
+    }
+
+    private static class Lane {
+        // Flows with waiting tasks only, in the order they take their turns
+        final Map<String, Flow> flows = new HashMap<>();
+        final ArrayDeque<Flow> rotation = new ArrayDeque<>();
+        final int weight;
+        final int capacity;
+        int size;
+        long credit;
+
+        Lane(int weight, int capacity) {
+            this.weight = Math.max(1, weight);
+            this.capacity = capacity > 0 ? capacity : Integer.MAX_VALUE; // 0 leaves the lane unbounded
+        }
+
+        // Enqueue time of the task that has waited longest, whichever flow it is in
+        long oldestEnqueuedAt() {
+            long oldest = Long.MAX_VALUE;
+            for (Flow flow : rotation) {
+                oldest = Math.min(oldest, flow.tasks.peekFirst().getEnqueuedAt());
+            }
+            return oldest;
+        }
+    }
+
+    private final EnumMap<UploadPriority, Lane> lanes = new EnumMap<>(UploadPriority.class);
+    private final Map<String, Integer> clientWeights;
+    private final long maxWaitNanos;
+    private final LongSupplier nanoClock;
+    private long bytes;
+
+    // Lane and flow chosen by the last peek, so the following poll returns the same task
+    private Lane selected;
+    private Flow selectedFlow;
+
+    PriorityUploadQueue(Map<UploadPriority, Integer> weights, Map<UploadPriority, Integer> capacities, long maxWaitMillis) {
+        this(weights, capacities, maxWaitMillis, Map.of(), System::nanoTime);
+    }
+
+    PriorityUploadQueue(Map<UploadPriority, Integer> weights, Map<UploadPriority, Integer> capacities,
+                        long maxWaitMillis, LongSupplier nanoClock) {
+        this(weights, capacities, maxWaitMillis, Map.of(), nanoClock);
+    }
+
+    // Clients missing from clientWeights get a weight of 1
+    PriorityUploadQueue(Map<UploadPriority, Integer> weights, Map<UploadPriority, Integer> capacities,
+                        long maxWaitMillis, Map<String, Integer> clientWeights, LongSupplier nanoClock) {
+        for (UploadPriority priority : UploadPriority.values()) {
+            lanes.put(priority, new Lane(weights.getOrDefault(priority, 1), capacities.getOrDefault(priority, Integer.MAX_VALUE)));
+        }
+        this.clientWeights = Map.copyOf(clientWeights);
+        this.maxWaitNanos = maxWaitMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(maxWaitMillis) : Long.MAX_VALUE;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public synchronized boolean offer(UploadTask task) {
+        Lane lane = lanes.get(task.getPriority());
+        if (lane.size >= lane.capacity) {
+            return false;
+        }
+        add(lane, task);
+        return true;
+    }
+
+    // Retries were admitted once already, so they skip the capacity check
+    @Override
+    public synchronized boolean requeue(UploadTask task) {
+        add(lanes.get(task.getPriority()), task);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean retry(UploadTask task) {
+        Lane lane = lanes.get(task.getPriority());
+        task.markEnqueued(nanoClock.getAsLong());
+        flow(lane, task).tasks.addFirst(task);
+        lane.size++;
+        bytes += task.getSize();
+        return true;
+    }
+
+    private void add(Lane lane, UploadTask task) {
+        task.markEnqueued(nanoClock.getAsLong());
+        flow(lane, task).tasks.addLast(task);
+        lane.size++;
+        bytes += task.getSize();
+    }
+
+    // The client's flow in the lane; a flow that was idle joins the end of the rotation
+    private Flow flow(Lane lane, UploadTask task) {
+        Flow flow = lane.flows.get(task.getClientId());
+        if (flow == null) {
+            flow = new Flow(task.getClientId());
+            flow.deficit = weightOf(flow.client);
+            lane.flows.put(flow.client, flow);
+            lane.rotation.addLast(flow);
+        }
+        return flow;
+    }
+
+    private int weightOf(String client) {
+        return Math.max(1, clientWeights.getOrDefault(client, 1));
+    }
+
+    // Takes the task off its flow: a flow that used up its turn goes to the back, an empty one leaves the rotation
+    private UploadTask remove(Lane lane, Flow flow, boolean turn) {
+        UploadTask task = flow.tasks.pollFirst();
+        lane.size--;
+        bytes -= task.getSize();
+        if (flow.tasks.isEmpty()) {
+            lane.rotation.remove(flow);
+            lane.flows.remove(flow.client);
+        } else if (turn && --flow.deficit <= 0) {
+            lane.rotation.pollFirst();
+            flow.deficit = weightOf(flow.client);
+            lane.rotation.addLast(flow);
+        }
+        if (lane.size == 0) {
+            lane.credit = 0; // An idle lane starts fresh instead of carrying a debt into its next burst
+        }
+        return task;
+    }
+
+    @Override
+    public synchronized UploadTask peek() {
+        selected = select();
+        selectedFlow = selected != null ? nextFlow(selected) : null;
+        return selectedFlow != null ? selectedFlow.tasks.peekFirst() : null;
+    }
+
+    @Override
+    public synchronized UploadTask poll() {
+        Lane lane = selected;
+        Flow flow = selectedFlow;
+        selected = null;
+        selectedFlow = null;
+        if (lane == null || flow == null || flow.tasks.isEmpty()) {
+            lane = select();
+            if (lane == null) {
+                return null;
+            }
+            flow = nextFlow(lane);
+        }
+
+        // Smooth weighted round robin: every waiting lane earns its weight, the served one pays the total
+        long totalWeight = 0;
+        for (Lane waiting : lanes.values()) {
+            if (waiting.size > 0) {
+                waiting.credit += waiting.weight;
+                totalWeight += waiting.weight;
+            }
+        }
+        lane.credit -= totalWeight;
+
+        return remove(lane, flow, flow == lane.rotation.peekFirst());
+    }
+
+    // A starving lane sends its oldest task out of turn; otherwise the flow whose turn it is sends
+    private Flow nextFlow(Lane lane) {
+        if (nanoClock.getAsLong() - lane.oldestEnqueuedAt() > maxWaitNanos) {
+            return oldestFlow(lane);
+        }
+        return lane.rotation.peekFirst();
+    }
+
+    private Lane select() {
+        long now = nanoClock.getAsLong();
+        Lane starving = null;
+        long oldest = Long.MAX_VALUE;
+        Lane best = null;
+        for (Lane lane : lanes.values()) {
+            if (lane.size == 0) {
+                continue;
+            }
+            long enqueuedAt = lane.oldestEnqueuedAt();
+            if (now - enqueuedAt > maxWaitNanos && enqueuedAt < oldest) {
+                starving = lane;
+                oldest = enqueuedAt;
+            }
+            // Ties go to the higher priority lane, which comes first in the map
+            if (best == null || lane.credit + lane.weight > best.credit + best.weight) {
+                best = lane;
+            }
+        }
+        return starving != null ? starving : best;
+    }
+
+    private static Flow oldestFlow(Lane lane) {
+        Flow oldest = null;
+        for (Flow flow : lane.rotation) {
+            if (oldest == null || flow.tasks.peekFirst().getEnqueuedAt() < oldest.tasks.peekFirst().getEnqueuedAt()) {
+                oldest = flow;
+            }
+        }
+        return oldest;
+    }
+
+    // Lowest priority first; within a lane the oldest task of the client with the most queued, so
+    // the camera causing the overload is the one that loses photos
+    @Override
+    public synchronized UploadTask shedOldest(UploadPriority priority) {
+        UploadPriority[] priorities = UploadPriority.values();
+        for (int i = priorities.length - 1; i >= priority.ordinal(); i--) {
+            Lane lane = lanes.get(priorities[i]);
+            Flow busiest = null;
+            for (Flow flow : lane.rotation) {
+                if (busiest == null || flow.tasks.size() > busiest.tasks.size()) {
+                    busiest = flow;
+                }
+            }
+            if (busiest != null) {
+                selected = null;
+                selectedFlow = null;
+                return remove(lane, busiest, false);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized int size() {
+        int size = 0;
+        for (Lane lane : lanes.values()) {
+            size += lane.size;
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized int size(UploadPriority priority) {
+        return lanes.get(priority).size;
+    }
+
+    @Override
+    public synchronized Map<UploadPriority, Integer> laneSizes() {
+        Map<UploadPriority, Integer> sizes = new EnumMap<>(UploadPriority.class);
+        lanes.forEach((priority, lane) -> sizes.put(priority, lane.size));
+        return sizes;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> clientSizes() {
+        Map<String, Integer> sizes = new HashMap<>();
+        for (Lane lane : lanes.values()) {
+            lane.flows.forEach((client, flow) -> sizes.merge(client, flow.tasks.size(), Integer::sum));
+        }
+        return sizes;
+    }
+
+    @Override
+    public synchronized long sizeBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized List<UploadTask> drain() {
+        List<UploadTask> drained = new ArrayList<>();
+        for (Lane lane : lanes.values()) {
+            lane.rotation.forEach(flow -> drained.addAll(flow.tasks));
+            lane.flows.clear();
+            lane.rotation.clear();
+            lane.size = 0;
+            lane.credit = 0;
+        }
+        bytes = 0;
+        selected = null;
+        selectedFlow = null;
+        return drained;
+    }
+}
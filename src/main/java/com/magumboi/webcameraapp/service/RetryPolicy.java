@@ -0,0 +1,92 @@
+package com.magumboi.webcameraapp.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The one retry policy for webhook uploads. Every attempt, first or retried, is a separate
+ * dispatch that takes a rate-limit permit, so a retry is never sent behind the limiter's back.
+ * Retries wait for an exponential backoff with equal jitter (half fixed, half random, so tasks
+ * that failed together don't come back together), and never less than the server's retry_after.
+ */
+class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final DoubleSupplier random;
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, Math::random);
+    }
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, DoubleSupplier random) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, baseDelayMillis));
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(baseDelayMillis, maxDelayMillis));
+        this.random = random;
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // attempts: requests already made for the task
+    boolean shouldRetry(int attempts, Throwable error) {
+        return attempts < maxAttempts && isRetryable(error);
+    }
+
+    /**
+     * Delay before the next attempt. A failover to another healthy webhook goes again right away;
+     * otherwise the backoff doubles per attempt up to the maximum, and retryAfterNanos (what the
+     * webhook asked for, 0 when it didn't) is a lower bound.
+     */
+    long delayNanos(int attempts, long retryAfterNanos, boolean failover) {
+        if (failover) {
+            return 0;
+        }
+        long backoff = baseDelayNanos;
+        for (int i = 1; i < attempts && backoff < maxDelayNanos; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, maxDelayNanos);
+        long jittered = backoff / 2 + (long) (random.getAsDouble() * (backoff - backoff / 2));
+        return Math.max(jittered, retryAfterNanos);
+    }
+
+    // Delay asked for by the Retry-After header of an error response, e.g. a 503; 0 when there is none
+    static long retryAfterNanos(Throwable error) {
+        if (!(error instanceof WebClientResponseException)) {
+            return 0;
+        }
+        String retryAfter = ((WebClientResponseException) error).getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return (long) (Math.max(0, Double.parseDouble(retryAfter.trim())) * 1_000_000_000L);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static boolean isRateLimited(Throwable error) {
+        return error instanceof WebClientResponseException
+                && ((WebClientResponseException) error).getStatusCode().value() == 429;
+    }
+
+    // Rate limits, server errors, timeouts and connection failures; other client errors won't get better
+    static boolean isRetryable(Throwable error) {
+        if (error instanceof WebClientResponseException) {
+            int status = ((WebClientResponseException) error).getStatusCode().value();
+            return status == 429 || status == 408 || status >= 500;
+        }
+        String message = error.getMessage();
+        return error instanceof IOException || error.getCause() instanceof IOException
+                || (message != null && (message.contains("Connection") || message.contains("timeout")));
+    }
+}
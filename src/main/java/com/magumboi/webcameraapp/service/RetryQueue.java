@@ -0,0 +1,72 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Tasks waiting out their retry delay, ordered by when they are due. They are kept apart from
+ * the upload queue so a waiting retry neither blocks a lane nor loses its place: the dispatcher
+ * moves due retries to the front of their lane.
+ */
+class RetryQueue {
+
+    private final PriorityQueue<Entry> entries = new PriorityQueue<>(Comparator.comparingLong((Entry entry) -> entry.dueAt)
+            .thenComparingLong(entry -> entry.order));
+    private final LongSupplier nanoClock;
+    private long nextOrder;
+
+    RetryQueue() {
+        this(System::nanoTime);
+    }
+
+    RetryQueue(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    synchronized void schedule(UploadTask task, long delayNanos) {
+        entries.add(new Entry(task, nanoClock.getAsLong() + Math.max(0, delayNanos), nextOrder++));
+    }
+
+    // Removes and returns every task whose delay has passed, earliest first
+    synchronized List<UploadTask> pollDue() {
+        long now = nanoClock.getAsLong();
+        List<UploadTask> due = new ArrayList<>();
+        while (!entries.isEmpty() && entries.peek().dueAt - now <= 0) {
+            due.add(entries.poll().task);
+        }
+        return due;
+    }
+
+    // Nanoseconds until the next retry is due, Long.MAX_VALUE when none is waiting
+    synchronized long nanosUntilNextDue() {
+        Entry next = entries.peek();
+        return next == null ? Long.MAX_VALUE : Math.max(0, next.dueAt - nanoClock.getAsLong());
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized List<UploadTask> drain() {
+        List<UploadTask> tasks = new ArrayList<>(entries.size());
+        while (!entries.isEmpty()) {
+            tasks.add(entries.poll().task);
+        }
+        return tasks;
+    }
+
+    private static final class Entry {
+        final UploadTask task;
+        final long dueAt;
+        final long order;
+
+        Entry(UploadTask task, long dueAt, long order) {
+            this.task = task;
+            this.dueAt = dueAt;
+            this.order = order;
+        }
+    }
+}
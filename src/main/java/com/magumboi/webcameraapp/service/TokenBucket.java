@@ -0,0 +1,129 @@
+package com.magumboi.webcameraapp.service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket state shared between instances: a full minute's worth of requests, refilled
+ * continuously, plus a block set by 429s. While an instance has reported the window Discord
+ * announced in its X-RateLimit-* headers, that window's remaining permits are the only limit, as
+ * in {@link DiscordRateLimiter}. Times are wall-clock milliseconds because nanoTime can't be
+ * compared across processes. Not thread-safe; coordinators guard it.
+ */
+class TokenBucket {
+
+    // tokens, lastRefillMillis, blockedUntilMillis, windowRemaining, windowResetMillis
+    static final int BYTES = Double.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES;
+
+    // Reports whose reset times are within this tolerance belong to the same window
+    private static final long SAME_WINDOW_TOLERANCE_MILLIS = 250;
+
+    private final int requestsPerMinute;
+    private double tokens;
+    private long lastRefillMillis;
+    private long blockedUntilMillis;
+    // Discord's window as last reported; -1 while none has been
+    private int windowRemaining;
+    private long windowResetMillis;
+
+    TokenBucket(int requestsPerMinute, long nowMillis) {
+        this(requestsPerMinute, Math.max(1, requestsPerMinute), nowMillis, 0, -1, 0);
+    }
+
+    private TokenBucket(int requestsPerMinute, double tokens, long lastRefillMillis, long blockedUntilMillis,
+                        int windowRemaining, long windowResetMillis) {
+        this.requestsPerMinute = Math.max(1, requestsPerMinute);
+        this.tokens = tokens;
+        this.lastRefillMillis = lastRefillMillis;
+        this.blockedUntilMillis = blockedUntilMillis;
+        this.windowRemaining = windowRemaining;
+        this.windowResetMillis = windowResetMillis;
+    }
+
+    // @return 0 when a token was taken, otherwise the nanoseconds until one is available
+    long tryAcquire(long nowMillis) {
+        return take(nowMillis, 1) > 0 ? 0 : waitNanos(nowMillis);
+    }
+
+    // Takes as many of maxPermits tokens as are available right now, possibly none
+    int take(long nowMillis, int maxPermits) {
+        if (blockedUntilMillis > nowMillis) {
+            return 0;
+        }
+        if (isWindowReported(nowMillis)) {
+            int taken = Math.min(windowRemaining, maxPermits);
+            windowRemaining -= taken;
+            return taken;
+        }
+        refill(nowMillis);
+        int taken = (int) Math.min(maxPermits, Math.floor(tokens));
+        tokens -= taken;
+        return taken;
+    }
+
+    // Nanoseconds until take can return a token; 0 when one is available now
+    long waitNanos(long nowMillis) {
+        if (blockedUntilMillis > nowMillis) {
+            return TimeUnit.MILLISECONDS.toNanos(blockedUntilMillis - nowMillis);
+        }
+        if (isWindowReported(nowMillis)) {
+            return windowRemaining > 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(windowResetMillis - nowMillis);
+        }
+        refill(nowMillis);
+        if (tokens >= 1) {
+            return 0;
+        }
+        return TimeUnit.MILLISECONDS.toNanos((long) Math.ceil((1 - tokens) / refillPerMilli()));
+    }
+
+    // Gives back a token that no request was sent with
+    void refund(long nowMillis) {
+        refund(nowMillis, 1);
+    }
+
+    void refund(long nowMillis, int permits) {
+        if (isWindowReported(nowMillis)) {
+            windowRemaining += permits;
+        } else {
+            tokens = Math.min(requestsPerMinute, tokens + permits);
+        }
+    }
+
+    void block(long untilMillis) {
+        blockedUntilMillis = Math.max(blockedUntilMillis, untilMillis);
+    }
+
+    // Responses can arrive out of order, so within one window permits already handed out are never given back
+    void report(int remaining, long resetAtMillis) {
+        if (windowRemaining < 0 || resetAtMillis - windowResetMillis > SAME_WINDOW_TOLERANCE_MILLIS) {
+            windowRemaining = Math.max(0, remaining);
+        } else {
+            windowRemaining = Math.min(windowRemaining, Math.max(0, remaining));
+        }
+        windowResetMillis = Math.max(windowResetMillis, resetAtMillis);
+    }
+
+    private boolean isWindowReported(long nowMillis) {
+        return windowRemaining >= 0 && windowResetMillis > nowMillis;
+    }
+
+    private void refill(long nowMillis) {
+        // A clock that went backwards refills nothing
+        tokens = Math.min(requestsPerMinute, tokens + Math.max(0, nowMillis - lastRefillMillis) * refillPerMilli());
+        lastRefillMillis = Math.max(lastRefillMillis, nowMillis);
+    }
+
+    private double refillPerMilli() {
+        return requestsPerMinute / (double) TimeUnit.MINUTES.toMillis(1);
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putDouble(tokens).putLong(lastRefillMillis).putLong(blockedUntilMillis)
+                .putInt(windowRemaining).putLong(windowResetMillis);
+    }
+
+    static TokenBucket readFrom(ByteBuffer buffer, int requestsPerMinute) {
+        return new TokenBucket(requestsPerMinute, buffer.getDouble(), buffer.getLong(), buffer.getLong(),
+                buffer.getInt(), buffer.getLong());
+    }
+}
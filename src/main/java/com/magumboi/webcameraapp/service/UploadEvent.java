@@ -0,0 +1,29 @@
+package com.magumboi.webcameraapp.service;
+
+/**
+ * One message of the live status stream, already serialized to JSON. Every subscriber gets
+ * the same instance, so the data is built once no matter how many clients listen.
+ */
+public class UploadEvent {
+
+    // Snapshot of queue depth and rate-limit state
+    public static final String QUEUE = "queue";
+    // Status changes of upload jobs since the previous message
+    public static final String JOBS = "jobs";
+
+    private final String type;
+    private final String data;
+
+    public UploadEvent(String type, String data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getData() {
+        return data;
+    }
+}
@@ -0,0 +1,134 @@
+package com.magumboi.webcameraapp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Single fan-out for the live status stream. Job status changes are collected as they happen
+ * and published together on each tick, along with a queue snapshot when it changed, so the
+ * work per tick is one serialization and one emission however many clients are connected.
+ * Nothing is collected while nobody listens.
+ */
+class UploadEventHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadEventHub.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Upper bound on job changes held between two ticks; later ones wait for the next tick
+    private static final int MAX_JOBS_PER_EVENT = 500;
+    private static final int MAX_PENDING_JOBS = 10_000;
+    // Messages a slow client may fall behind by before it loses the oldest ones
+    private static final int SUBSCRIBER_BUFFER = 64;
+
+    private final Supplier<Map<String, Object>> queueStatus;
+    private final int heartbeatTicks;
+    private final Sinks.Many<UploadEvent> sink = Sinks.many().multicast().directBestEffort();
+    private final Queue<Map<String, Object>> pendingJobs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private volatile UploadEvent lastQueueEvent;
+    private int ticksSinceQueueEvent;
+
+    // heartbeatTicks: ticks after which an unchanged queue snapshot is sent again, keeping idle connections open
+    UploadEventHub(Supplier<Map<String, Object>> queueStatus, int heartbeatTicks) {
+        this.queueStatus = queueStatus;
+        this.heartbeatTicks = Math.max(1, heartbeatTicks);
+    }
+
+    // Starts with the latest queue snapshot, so a new client doesn't wait for the next change
+    Flux<UploadEvent> subscribe() {
+        return Flux.defer(() -> {
+            UploadEvent current = lastQueueEvent != null ? lastQueueEvent : queueEvent();
+            return sink.asFlux().startWith(current);
+        }).onBackpressureBuffer(SUBSCRIBER_BUFFER, dropped -> { }, BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    void jobChanged(UploadJob job) {
+        if (sink.currentSubscriberCount() == 0 || pendingCount.get() >= MAX_PENDING_JOBS) {
+            return;
+        }
+        Map<String, Object> change = new LinkedHashMap<>();
+        change.put("jobId", job.getId());
+        change.put("status", job.getStatus().name());
+        change.put("attempts", job.getAttempts());
+        change.put("updatedAt", job.getUpdatedAt().toString());
+        if (job.getError() != null) {
+            change.put("error", job.getError());
+        }
+        pendingJobs.add(change);
+        pendingCount.incrementAndGet();
+    }
+
+    // Called from a single scheduler thread; an exception would cancel the schedule, so none escapes
+    void publish() {
+        try {
+            publishPending();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to publish upload events: {}", e.getMessage());
+        }
+    }
+
+    private void publishPending() {
+        if (sink.currentSubscriberCount() == 0) {
+            lastQueueEvent = null;
+            pendingJobs.clear();
+            pendingCount.set(0);
+            return;
+        }
+        List<Map<String, Object>> jobs = new ArrayList<>();
+        Map<String, Object> change;
+        while (jobs.size() < MAX_JOBS_PER_EVENT && (change = pendingJobs.poll()) != null) {
+            pendingCount.decrementAndGet();
+            jobs.add(change);
+        }
+        if (!jobs.isEmpty()) {
+            emit(new UploadEvent(UploadEvent.JOBS, toJson(jobs)));
+        }
+
+        UploadEvent queue = queueEvent();
+        ticksSinceQueueEvent++;
+        UploadEvent last = lastQueueEvent;
+        if (last == null || !last.getData().equals(queue.getData()) || ticksSinceQueueEvent >= heartbeatTicks) {
+            lastQueueEvent = queue;
+            ticksSinceQueueEvent = 0;
+            emit(queue);
+        }
+    }
+
+    void close() {
+        sink.tryEmitComplete();
+    }
+
+    private UploadEvent queueEvent() {
+        return new UploadEvent(UploadEvent.QUEUE, toJson(queueStatus.get()));
+    }
+
+    private void emit(UploadEvent event) {
+        Sinks.EmitResult result = sink.tryEmitNext(event);
+        if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            logger.debug("Dropped {} event: {}", event.getType(), result);
+        }
+    }
+
+    private static String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize upload event", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.magumboi.webcameraapp.service;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Public view of a queued photo upload. The service moves a job through its statuses as the
+ * photo is dispatched, and completes the future with the webhook response.
+ */
+public class UploadJob {
+
+    public enum Status {
+        PROCESSING,
+        QUEUED,
+        DISPATCHING,
+        RETRYING,
+        DELIVERED,
+        FAILED;
+
+        public boolean isFinished() {
+            return this == DELIVERED || this == FAILED;
+        }
+    }
+
+    private final String id;
+    private final Instant createdAt;
+    private final CompletableFuture<String> future;
+    private volatile Status status;
+    private volatile Instant updatedAt;
+    private volatile int attempts;
+    private volatile String error;
+    private volatile Consumer<UploadJob> listener;
+    private final UploadTimeline timeline;
+
+    UploadJob() {
+        this(UUID.randomUUID().toString(), Instant.now());
+    }
+
+    // Used when a job is restored from the persistent queue
+    UploadJob(String id, Instant createdAt) {
+        this.id = id;
+        this.createdAt = createdAt;
+        this.updatedAt = createdAt;
+        this.future = new CompletableFuture<>();
+        this.status = Status.QUEUED;
+        this.timeline = new UploadTimeline(id);
+    }
+
+    public String getId() { return id; }
+    public Status getStatus() { return status; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public int getAttempts() { return attempts; }
+    public String getError() { return error; }
+    public CompletableFuture<String> getFuture() { return future; }
+
+    // Told about every status change from then on
+    void setListener(Consumer<UploadJob> listener) {
+        this.listener = listener;
+    }
+
+    UploadTimeline getTimeline() {
+        return timeline;
+    }
+
+    // Stages without a status of their own (receiving, waiting for a permit) are entered through here
+    void beginStage(UploadStage stage) {
+        timeline.begin(stage, attempts);
+    }
+
+    void beginStage(UploadStage stage, UploadTimeline.Start start) {
+        timeline.begin(stage, attempts, start);
+    }
+
+    void markProcessing() {
+        timeline.begin(UploadStage.PROCESS, attempts);
+        updateStatus(Status.PROCESSING);
+    }
+
+    void markQueued() {
+        timeline.begin(UploadStage.QUEUE, attempts);
+        updateStatus(Status.QUEUED);
+    }
+
+    void markDispatching(int attempt) {
+        this.attempts = attempt;
+        timeline.begin(UploadStage.REQUEST, attempt);
+        updateStatus(Status.DISPATCHING);
+    }
+
+    void markRetrying(String error) {
+        this.error = error;
+        timeline.end("error: " + error);
+        timeline.begin(UploadStage.RETRY_WAIT, attempts);
+        updateStatus(Status.RETRYING);
+    }
+
+    void complete(String result) {
+        this.error = null;
+        timeline.end("delivered");
+        updateStatus(Status.DELIVERED);
+        future.complete(result);
+    }
+
+    void fail(Throwable cause) {
+        this.error = cause.getMessage();
+        timeline.end("failed: " + cause.getMessage());
+        updateStatus(Status.FAILED);
+        future.completeExceptionally(cause);
+    }
+
+    private void updateStatus(Status status) {
+        this.status = status;
+        this.updatedAt = Instant.now();
+        Consumer<UploadJob> listener = this.listener;
+        if (listener != null) {
+            listener.accept(this);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.magumboi.webcameraapp.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps upload jobs addressable by ID. Finished jobs are retained for a while so clients can
+ * still read the outcome, and the oldest finished jobs are dropped once the registry is full.
+ */
+class UploadJobRegistry {
+
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+    private final Duration retention;
+    private final int maxRetained;
+
+    UploadJobRegistry(Duration retention, int maxRetained) {
+        this.retention = retention;
+        this.maxRetained = maxRetained;
+    }
+
+    UploadJob register(UploadJob job) {
+        jobs.put(job.getId(), job);
+        if (jobs.size() > maxRetained) {
+            evictOldestFinished(jobs.size() - maxRetained);
+        }
+        return job;
+    }
+
+    Optional<UploadJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    int size() {
+        return jobs.size();
+    }
+
+    // Removes finished jobs older than the retention period
+    void evictExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getUpdatedAt().isBefore(cutoff));
+    }
+
+    private void evictOldestFinished(int count) {
+        jobs.values().stream()
+                .filter(job -> job.getStatus().isFinished())
+                .sorted(Comparator.comparing(UploadJob::getUpdatedAt))
+                .limit(count)
+                .map(UploadJob::getId)
+                .toList()
+                .forEach(jobs::remove);
+    }
+}
@@ -0,0 +1,142 @@
+package com.magumboi.webcameraapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer instruments for the upload pipeline. Latencies are timers with percentile
+ * histograms, so Prometheus can aggregate quantiles across instances; queue depth and in-flight
+ * requests are gauges read from the service when the registry is scraped. Tagged meters are
+ * registered once per tag value and reused, so recording stays off the registry's lookup path.
+ */
+class UploadMetrics {
+
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_RATE_LIMITED = "rate_limited";
+    static final String OUTCOME_ERROR = "error";
+
+    static final String DROP_QUEUE_FULL = "queue_full";
+    static final String DROP_FAILED = "failed";
+    static final String DROP_SHUTDOWN = "shutdown";
+    static final String DROP_SHED = "shed";
+    static final String DROP_CLIENT_QUOTA = "client_quota";
+
+    private final MeterRegistry registry;
+    private final Timer queueWait;
+    private final Counter bytesSent;
+    private final Counter retries;
+    private final Counter rateLimited;
+    private final Map<String, Timer> dispatchTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> latencyTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> droppedCounters = new ConcurrentHashMap<>();
+
+    UploadMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.queueWait = Timer.builder("webhook.upload.queue.wait")
+                .description("Time photos spend queued before they are dispatched")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.bytesSent = Counter.builder("webhook.upload.sent")
+                .description("Photo bytes delivered to webhooks")
+                .baseUnit("bytes")
+                .register(registry);
+        this.retries = Counter.builder("webhook.upload.retries")
+                .description("Failed webhook requests that were retried")
+                .register(registry);
+        this.rateLimited = Counter.builder("webhook.upload.rate.limited")
+                .description("Webhook responses with status 429")
+                .register(registry);
+    }
+
+    // Gauges call back into the service on every scrape, so they are bound once the service has started
+    void bindService(WebhookService service) {
+        Gauge.builder("webhook.queue.size", service, WebhookService::getQueueSize)
+                .description("Photos waiting in the upload queue")
+                .register(registry);
+        for (UploadPriority priority : UploadPriority.values()) {
+            Gauge.builder("webhook.queue.lane.size", service, s -> s.getQueueSize(priority))
+                    .description("Photos waiting in each priority lane")
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        Gauge.builder("webhook.queue.retrying", service, WebhookService::getRetryingCount)
+                .description("Photos waiting out a retry delay")
+                .register(registry);
+        Gauge.builder("webhook.queue.bytes", service, WebhookService::getQueueSizeBytes)
+                .description("Bytes of the photos waiting in the upload queue")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("webhook.admission.bytes", service, WebhookService::getAdmittedBytes)
+                .description("Bytes reserved by photos held anywhere in the pipeline")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("webhook.requests.in.flight", service, WebhookService::getInFlightCount)
+                .description("Webhook requests currently in flight")
+                .register(registry);
+        Gauge.builder("webhook.concurrency.limit", service, WebhookService::getConcurrencyLimit)
+                .description("In-flight requests currently allowed, summed over webhooks")
+                .register(registry);
+        Gauge.builder("webhook.circuit.open", service, WebhookService::getOpenCircuitCount)
+                .description("Webhooks whose circuit breaker is open or half-open")
+                .register(registry);
+        FunctionCounter.builder("webhook.upload.duplicates.merged", service, WebhookService::getDuplicatesMerged)
+                .description("Near-duplicate photos merged into an earlier upload")
+                .register(registry);
+    }
+
+    void recordQueueWait(UploadTask task, long nowNanos) {
+        if (task.getEnqueuedAt() != 0) {
+            queueWait.record(nowNanos - task.getEnqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // One sample per webhook request
+    void recordDispatch(long durationNanos, String outcome) {
+        dispatchTimers.computeIfAbsent(outcome, tag -> Timer.builder("webhook.upload.dispatch")
+                        .description("Webhook request latency")
+                        .tag("outcome", tag)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Time from upload to delivery or failure, recorded just before the job finishes
+    void recordLatency(UploadJob job, String outcome) {
+        latencyTimers.computeIfAbsent(outcome, tag -> Timer.builder("webhook.upload.latency")
+                        .description("Time from upload to delivery or failure")
+                        .tag("outcome", tag)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(Duration.between(job.getCreatedAt(), Instant.now()));
+    }
+
+    void recordSent(long bytes) {
+        bytesSent.increment(bytes);
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    void recordDropped(String reason) {
+        droppedCounters.computeIfAbsent(reason, tag -> Counter.builder("webhook.upload.dropped")
+                        .description("Photos rejected or given up on, by reason")
+                        .tag("reason", tag)
+                        .register(registry))
+                .increment();
+    }
+}
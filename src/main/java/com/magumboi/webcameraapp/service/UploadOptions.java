@@ -0,0 +1,60 @@
+package com.magumboi.webcameraapp.service;
+
+import java.time.Instant;
+
+/**
+ * Per-request settings of a photo upload. Immutable; the with-methods return a copy.
+ */
+public class UploadOptions {
+
+    private static final UploadOptions DEFAULTS = new UploadOptions(null, UploadPriority.NORMAL, null, null, null);
+
+    private final String idempotencyKey;
+    private final UploadPriority priority;
+    private final Instant captureTime;
+    private final String cameraId;
+    private final Long receiveStartedAt;
+
+    private UploadOptions(String idempotencyKey, UploadPriority priority, Instant captureTime, String cameraId,
+                          Long receiveStartedAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.priority = priority;
+        this.captureTime = captureTime;
+        this.cameraId = cameraId;
+        this.receiveStartedAt = receiveStartedAt;
+    }
+
+    public static UploadOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public UploadPriority getPriority() { return priority; }
+    // When the photo was taken; null when the client didn't say, and the upload time is used instead
+    public Instant getCaptureTime() { return captureTime; }
+    public String getCameraId() { return cameraId; }
+    // System.nanoTime() when the request started arriving, so the receive stage covers parsing it; null to start on submit
+    public Long getReceiveStartedAt() { return receiveStartedAt; }
+
+    public UploadOptions withIdempotencyKey(String idempotencyKey) {
+        return new UploadOptions(idempotencyKey, priority, captureTime, cameraId, receiveStartedAt);
+    }
+
+    public UploadOptions withPriority(UploadPriority priority) {
+        return new UploadOptions(idempotencyKey, priority != null ? priority : UploadPriority.NORMAL, captureTime, cameraId,
+                receiveStartedAt);
+    }
+
+    public UploadOptions withCaptureTime(Instant captureTime) {
+        return new UploadOptions(idempotencyKey, priority, captureTime, cameraId, receiveStartedAt);
+    }
+
+    public UploadOptions withCameraId(String cameraId) {
+        return new UploadOptions(idempotencyKey, priority, captureTime,
+                cameraId != null && !cameraId.isBlank() ? cameraId.trim() : null, receiveStartedAt);
+    }
+
+    public UploadOptions withReceiveStartedAt(Long receiveStartedAt) {
+        return new UploadOptions(idempotencyKey, priority, captureTime, cameraId, receiveStartedAt);
+    }
+}
@@ -0,0 +1,20 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.Locale;
+
+/**
+ * Queue lane of an upload. Interactive captures are dispatched ahead of background traffic,
+ * which still gets a weighted share so it is never starved.
+ */
+public enum UploadPriority {
+    INTERACTIVE,
+    NORMAL,
+    BULK;
+
+    public static UploadPriority parse(String value) {
+        if (value == null || value.isBlank()) {
+            return NORMAL;
+        }
+        return UploadPriority.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
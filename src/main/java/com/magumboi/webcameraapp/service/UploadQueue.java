@@ -0,0 +1,81 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Backend holding photos waiting for dispatch. The dispatcher is the only consumer, so
+ * peek followed by poll always returns the same task.
+ */
+interface UploadQueue {
+
+    // Adds a newly submitted task; returns false when the queue refuses it
+    boolean offer(UploadTask task);
+
+    // Puts back a task that was already queued once, e.g. when moving between queues
+    boolean requeue(UploadTask task);
+
+    // Puts back a task whose retry delay has passed; laned queues serve it before untried tasks of its lane
+    default boolean retry(UploadTask task) {
+        return requeue(task);
+    }
+
+    UploadTask peek();
+
+    UploadTask poll();
+
+    int size();
+
+    long sizeBytes();
+
+    // Tasks waiting in the lane of priority; queues without lanes hold everything as NORMAL
+    default int size(UploadPriority priority) {
+        return priority == UploadPriority.NORMAL ? size() : 0;
+    }
+
+    // Every lane's size from one point in time, for status snapshots
+    default Map<UploadPriority, Integer> laneSizes() {
+        Map<UploadPriority, Integer> sizes = new EnumMap<>(UploadPriority.class);
+        for (UploadPriority priority : UploadPriority.values()) {
+            sizes.put(priority, size(priority));
+        }
+        return sizes;
+    }
+
+    // Tasks waiting per client (camera ID, or UploadTask.DEFAULT_CLIENT), for queues that keep track of them
+    default Map<String, Integer> clientSizes() {
+        return Map.of();
+    }
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Removes the oldest task of the lowest non-empty lane that is not above priority, taken from the
+    // client with the most tasks there, to make room under overload; null when there is nothing to
+    // give up. Queues without lanes never shed.
+    default UploadTask shedOldest(UploadPriority priority) {
+        return null;
+    }
+
+    // Called once a task is finished for good, delivered or failed
+    default void acknowledge(UploadTask task) {
+    }
+
+    // Tasks restored from durable storage when the queue was opened
+    default List<UploadTask> recoveredTasks() {
+        return List.of();
+    }
+
+    // Whether queued tasks survive a restart
+    default boolean isDurable() {
+        return false;
+    }
+
+    // Removes every queued task, used to fail pending work on shutdown
+    List<UploadTask> drain();
+
+    default void close() {
+    }
+}
@@ -0,0 +1,83 @@
+package com.magumboi.webcameraapp.service;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Continuous Flight Recorder recording with the bundled low-overhead profile (jfr/uploads.jfc):
+ * the upload stage events plus a few cheap JVM events to explain slow stages. It keeps the last
+ * maxAge of data and is written to a file in the given directory on shutdown.
+ */
+class UploadRecording implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadRecording.class);
+
+    static final String PROFILE = "/jfr/uploads.jfc";
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    private final Recording recording;
+    private final Path destination;
+
+    private UploadRecording(Recording recording, Path destination) {
+        this.recording = recording;
+        this.destination = destination;
+    }
+
+    static UploadRecording start(Path directory, Duration maxAge) throws IOException {
+        Files.createDirectories(directory);
+        Path destination = directory.resolve("uploads-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr");
+        Recording recording = new Recording(profile());
+        recording.setName("uploads");
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setDestination(destination);
+        // Also written when the JVM exits without a clean shutdown
+        recording.setDumpOnExit(true);
+        recording.start();
+        return new UploadRecording(recording, destination);
+    }
+
+    static Configuration profile() throws IOException {
+        InputStream in = UploadRecording.class.getResourceAsStream(PROFILE);
+        if (in == null) {
+            throw new IOException("Recording profile " + PROFILE + " not found");
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        } catch (ParseException e) {
+            throw new IOException("Invalid recording profile " + PROFILE + ": " + e.getMessage(), e);
+        }
+    }
+
+    Path getDestination() {
+        return destination;
+    }
+
+    // Stopping writes the recording to its destination
+    @Override
+    public void close() {
+        try {
+            recording.stop();
+            logger.info("Flight recording written to {}", destination);
+        } catch (IllegalStateException e) {
+            logger.debug("Flight recording was already stopped: {}", e.getMessage());
+        } finally {
+            recording.close();
+        }
+    }
+}
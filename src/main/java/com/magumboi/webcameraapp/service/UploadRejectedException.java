@@ -0,0 +1,19 @@
+package com.magumboi.webcameraapp.service;
+
+/**
+ * Thrown when the service has no room for another photo. Carries how long the client should
+ * wait before trying again, estimated from the current drain rate.
+ */
+public class UploadRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public UploadRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
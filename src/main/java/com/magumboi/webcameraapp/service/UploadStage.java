@@ -0,0 +1,23 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.Locale;
+
+// Stages of an upload job, in the order a photo normally passes through them
+enum UploadStage {
+    // Reading, spooling and hashing the photo from the request
+    RECEIVE,
+    // Downscaling and re-encoding on the image pool
+    PROCESS,
+    // Waiting in the queue behind other photos
+    QUEUE,
+    // At the head of the queue, waiting for a webhook with a rate-limit permit, a free in-flight slot and a closed breaker
+    THROTTLE,
+    // The webhook request, from dispatch to response
+    REQUEST,
+    // Waiting out the delay before a retry
+    RETRY_WAIT;
+
+    String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
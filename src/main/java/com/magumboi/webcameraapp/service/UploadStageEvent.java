@@ -0,0 +1,35 @@
+package com.magumboi.webcameraapp.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one stage of an upload job. Stages can begin on one thread and end on
+ * another, so the event thread is the one that ended the stage; the job ID ties them together.
+ */
+@Name(UploadStageEvent.NAME)
+@Label("Upload Stage")
+@Category({"Camera to Discord", "Uploads"})
+@Description("One stage of a photo upload, from receiving the photo to the webhook response")
+@StackTrace(false)
+class UploadStageEvent extends Event {
+
+    static final String NAME = "com.magumboi.webcameraapp.UploadStage";
+
+    @Label("Job ID")
+    String jobId;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Attempt")
+    int attempt;
+
+    @Label("Outcome")
+    @Description("Empty when the job simply moved on to its next stage")
+    String outcome;
+}
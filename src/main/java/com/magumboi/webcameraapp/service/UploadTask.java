@@ -0,0 +1,86 @@
+package com.magumboi.webcameraapp.service;
+
+// A queued photo together with the job that reports its progress
+class UploadTask {
+
+    // Client of photos sent without a camera ID; they share one fair-queuing flow and quota
+    static final String DEFAULT_CLIENT = "default";
+
+    private final String filename;
+    private final String content;
+    private final UploadJob job;
+    private final UploadPriority priority;
+    private final String cameraId;
+    private volatile PhotoPayload payload;
+    private volatile long journalSequence = -1;
+    private volatile long enqueuedAt;
+    private long admittedBytes = -1;
+    private int attempts;
+
+    UploadTask(String filename, PhotoPayload payload, String content, UploadJob job) {
+        this(filename, payload, content, job, UploadPriority.NORMAL);
+    }
+
+    UploadTask(String filename, PhotoPayload payload, String content, UploadJob job, UploadPriority priority) {
+        this(filename, payload, content, job, priority, null);
+    }
+
+    UploadTask(String filename, PhotoPayload payload, String content, UploadJob job, UploadPriority priority, String cameraId) {
+        this.filename = filename;
+        this.payload = payload;
+        this.content = content;
+        this.job = job;
+        this.priority = priority;
+        this.cameraId = cameraId;
+        this.attempts = 0;
+    }
+
+    public String getFilename() { return filename; }
+    public PhotoPayload getPayload() { return payload; }
+    public byte[] getPhotoData() { return payload.getBytes(); }
+    public long getSize() { return payload.size(); }
+    public String getContent() { return content; }
+    public UploadJob getJob() { return job; }
+    public UploadPriority getPriority() { return priority; }
+    public String getCameraId() { return cameraId; }
+    public int getAttempts() { return attempts; }
+    public void incrementAttempts() { attempts++; }
+
+    // Key for hash routing across webhooks: photos of one camera stick to one webhook, others spread by job
+    String getRoutingKey() { return cameraId != null ? cameraId : job.getId(); }
+
+    // Key for fair queuing and per-client quotas
+    String getClientId() { return cameraId != null ? cameraId : DEFAULT_CLIENT; }
+
+    // Set by processing stages that produce a new version of the photo
+    void replacePayload(PhotoPayload payload) {
+        this.payload = payload;
+    }
+
+    // Set by the journal once the photo has been persisted
+    void moveToJournal(long sequence, PhotoPayload journalPayload) {
+        this.journalSequence = sequence;
+        this.payload = journalPayload;
+    }
+
+    long getJournalSequence() { return journalSequence; }
+
+    // Set by laned queues each time the task enters a lane
+    void markEnqueued(long nanoTime) {
+        this.enqueuedAt = nanoTime;
+    }
+
+    long getEnqueuedAt() { return enqueuedAt; }
+
+    // Bytes reserved by admission control; only touched under its lock
+    void markAdmitted(long bytes) {
+        this.admittedBytes = bytes;
+    }
+
+    // Returns the reserved bytes once, -1 afterwards or when the task was never admitted
+    long clearAdmitted() {
+        long bytes = admittedBytes;
+        admittedBytes = -1;
+        return bytes;
+    }
+}
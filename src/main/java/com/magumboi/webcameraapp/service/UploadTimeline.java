@@ -0,0 +1,142 @@
+package com.magumboi.webcameraapp.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stages an upload job went through, with their timings. A job is in one stage at a time, so
+ * beginning a stage ends the previous one. Every finished stage is also emitted as an
+ * {@link UploadStageEvent}, which costs next to nothing unless a recording enables it.
+ */
+class UploadTimeline {
+
+    // A stage that has begun; created before the job exists when the photo is read first
+    static final class Start {
+        private final long nanos;
+        private final Instant at;
+        private final UploadStageEvent event = new UploadStageEvent();
+
+        private Start(long nanos, Instant at) {
+            this.nanos = nanos;
+            this.at = at;
+            event.begin();
+        }
+    }
+
+    private record Span(UploadStage stage, int attempt, Instant startedAt, long durationNanos, String outcome) {
+    }
+
+    private final String jobId;
+    private final LongSupplier nanoClock;
+    private final List<Span> spans = new ArrayList<>();
+    private UploadStage openStage;
+    private int openAttempt;
+    private Start openStart;
+
+    UploadTimeline(String jobId) {
+        this(jobId, System::nanoTime);
+    }
+
+    UploadTimeline(String jobId, LongSupplier nanoClock) {
+        this.jobId = jobId;
+        this.nanoClock = nanoClock;
+    }
+
+    static Start startNow() {
+        return new Start(System.nanoTime(), Instant.now());
+    }
+
+    // A stage that began at startedAt, a System.nanoTime() reading taken earlier on this JVM; null means now
+    static Start startedAt(Long startedAt) {
+        if (startedAt == null) {
+            return startNow();
+        }
+        long now = System.nanoTime();
+        return new Start(startedAt, Instant.now().minusNanos(Math.max(0, now - startedAt)));
+    }
+
+    void begin(UploadStage stage, int attempt) {
+        begin(stage, attempt, new Start(nanoClock.getAsLong(), Instant.now()));
+    }
+
+    synchronized void begin(UploadStage stage, int attempt, Start start) {
+        end("");
+        openStage = stage;
+        openAttempt = attempt;
+        openStart = start;
+    }
+
+    // Moves on from QUEUE to THROTTLE; ignored in any other stage, so it can be called on every dispatcher pass
+    synchronized void throttled() {
+        if (openStage == UploadStage.QUEUE) {
+            begin(UploadStage.THROTTLE, openAttempt);
+        }
+    }
+
+    // Ends the current stage, if any; outcome is empty when the job just moves on
+    synchronized void end(String outcome) {
+        if (openStage == null) {
+            return;
+        }
+        long duration = Math.max(0, nanoClock.getAsLong() - openStart.nanos);
+        spans.add(new Span(openStage, openAttempt, openStart.at, duration, outcome));
+
+        UploadStageEvent event = openStart.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.jobId = jobId;
+            event.stage = openStage.label();
+            event.attempt = openAttempt;
+            event.outcome = outcome;
+            event.commit();
+        }
+        openStage = null;
+        openStart = null;
+    }
+
+    /**
+     * The stages so far and the time spent in each stage summed over attempts. A stage still
+     * running is included up to now.
+     */
+    synchronized Map<String, Object> toMap() {
+        long now = nanoClock.getAsLong();
+        List<Map<String, Object>> stages = new ArrayList<>();
+        Map<String, Long> breakdown = new LinkedHashMap<>();
+        for (UploadStage stage : UploadStage.values()) {
+            breakdown.put(stage.label(), 0L);
+        }
+        long totalNanos = 0;
+        List<Span> all = new ArrayList<>(spans);
+        if (openStage != null) {
+            all.add(new Span(openStage, openAttempt, openStart.at, Math.max(0, now - openStart.nanos), null));
+        }
+        for (Span span : all) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("stage", span.stage().label());
+            entry.put("attempt", span.attempt());
+            entry.put("startedAt", span.startedAt().toString());
+            entry.put("durationMs", TimeUnit.NANOSECONDS.toMillis(span.durationNanos()));
+            if (span.outcome() == null) {
+                entry.put("running", true);
+            } else if (!span.outcome().isEmpty()) {
+                entry.put("outcome", span.outcome());
+            }
+            stages.add(entry);
+            breakdown.merge(span.stage().label(), span.durationNanos(), Long::sum);
+            totalNanos += span.durationNanos();
+        }
+        breakdown.replaceAll((stage, nanos) -> TimeUnit.NANOSECONDS.toMillis(nanos));
+
+        Map<String, Object> timeline = new LinkedHashMap<>();
+        timeline.put("jobId", jobId);
+        timeline.put("stages", stages);
+        timeline.put("breakdownMs", breakdown);
+        timeline.put("totalMs", TimeUnit.NANOSECONDS.toMillis(totalNanos));
+        return timeline;
+    }
+}
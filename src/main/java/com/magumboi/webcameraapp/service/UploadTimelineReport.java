@@ -0,0 +1,125 @@
+package com.magumboi.webcameraapp.service;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rebuilds upload timelines from a flight recording, e.g. one written with webhook.jfr.enabled
+ * or -XX:StartFlightRecording=settings=jfr/uploads.jfc. Prints the latency of every stage over
+ * all jobs and the slowest jobs, or with a job ID that job's stages:
+ * <pre>
+ * java -cp target/classes com.magumboi.webcameraapp.service.UploadTimelineReport uploads.jfr [jobId]
+ * </pre>
+ */
+public final class UploadTimelineReport {
+
+    // How many of the slowest jobs the summary lists
+    private static final int SLOWEST_JOBS = 10;
+
+    record Stage(String stage, int attempt, Instant startedAt, Duration duration, String outcome) {
+    }
+
+    private UploadTimelineReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: UploadTimelineReport <recording.jfr> [jobId]");
+            System.exit(2);
+        }
+        Map<String, List<Stage>> jobs = read(Paths.get(args[0]));
+        if (args.length == 2) {
+            List<Stage> stages = jobs.get(args[1]);
+            if (stages == null) {
+                System.err.println("No upload stages of job " + args[1] + " in " + args[0]);
+                System.exit(1);
+            }
+            printJob(args[1], stages, System.out);
+        } else {
+            printSummary(jobs, System.out);
+        }
+    }
+
+    // Stage events per job ID, each job's in the order the stages began
+    static Map<String, List<Stage>> read(Path recording) throws IOException {
+        Map<String, List<Stage>> jobs = new LinkedHashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(recording)) {
+            if (!event.getEventType().getName().equals(UploadStageEvent.NAME)) {
+                continue;
+            }
+            String outcome = event.getString("outcome");
+            jobs.computeIfAbsent(event.getString("jobId"), id -> new ArrayList<>())
+                    .add(new Stage(event.getString("stage"), event.getInt("attempt"), event.getStartTime(), event.getDuration(),
+                            outcome == null || outcome.isEmpty() ? null : outcome));
+        }
+        jobs.values().forEach(stages -> stages.sort(Comparator.comparing(Stage::startedAt)));
+        return jobs;
+    }
+
+    static void printJob(String jobId, List<Stage> stages, PrintStream out) {
+        out.println("Job " + jobId);
+        Instant first = stages.get(0).startedAt();
+        Map<UploadStage, Duration> breakdown = new EnumMap<>(UploadStage.class);
+        for (Stage stage : stages) {
+            out.printf("  +%6d ms  %-10s attempt %d  %6d ms%s%n", Duration.between(first, stage.startedAt()).toMillis(),
+                    stage.stage(), stage.attempt(), stage.duration().toMillis(),
+                    stage.outcome() != null ? "  " + stage.outcome() : "");
+            breakdown.merge(stageOf(stage), stage.duration(), Duration::plus);
+        }
+        out.println("  Time per stage:");
+        breakdown.forEach((stage, duration) -> out.printf("    %-10s %6d ms%n", stage.label(), duration.toMillis()));
+        out.printf("    %-10s %6d ms%n", "total", total(stages).toMillis());
+    }
+
+    // Percentiles of each stage over all jobs, then the jobs that took longest end to end
+    static void printSummary(Map<String, List<Stage>> jobs, PrintStream out) {
+        Map<UploadStage, List<Long>> byStage = new EnumMap<>(UploadStage.class);
+        for (List<Stage> stages : jobs.values()) {
+            for (Stage stage : stages) {
+                byStage.computeIfAbsent(stageOf(stage), key -> new ArrayList<>()).add(stage.duration().toMillis());
+            }
+        }
+        out.println(jobs.size() + " jobs");
+        out.printf("  %-10s %7s %8s %8s %8s%n", "stage", "count", "p50 ms", "p95 ms", "max ms");
+        byStage.forEach((stage, millis) -> {
+            millis.sort(null);
+            out.printf("  %-10s %7d %8d %8d %8d%n", stage.label(), millis.size(), percentile(millis, 50),
+                    percentile(millis, 95), millis.get(millis.size() - 1));
+        });
+
+        out.println("Slowest jobs:");
+        jobs.entrySet().stream()
+                .sorted(Comparator.comparing((Map.Entry<String, List<Stage>> job) -> total(job.getValue())).reversed())
+                .limit(SLOWEST_JOBS)
+                .forEach(job -> out.printf("  %s  %6d ms  %d stages%n", job.getKey(), total(job.getValue()).toMillis(),
+                        job.getValue().size()));
+    }
+
+    private static UploadStage stageOf(Stage stage) {
+        return UploadStage.valueOf(stage.stage().toUpperCase(Locale.ROOT));
+    }
+
+    private static Duration total(List<Stage> stages) {
+        return stages.stream().map(Stage::duration).reduce(Duration.ZERO, Duration::plus);
+    }
+
+    // Nearest-rank percentile of sorted values
+    private static long percentile(List<Long> sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+}
@@ -0,0 +1,149 @@
+package com.magumboi.webcameraapp.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * One webhook URL of the pool, with its own rate-limit state, in-flight count, concurrency
+ * limit and circuit breaker. A request also needs a permit from the bucket the webhook shares
+ * with the other instances, if any. Server and connection errors take it out of rotation for a
+ * cooldown that doubles on every consecutive failure, so traffic fails over to the other
+ * webhooks; the breaker stops traffic altogether once failures keep coming.
+ */
+class WebhookEndpoint {
+
+    private static final long BASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final int index;
+    private final String url;
+    private final DiscordRateLimiter rateLimiter;
+    private final LongSupplier nanoClock;
+    private final ConcurrencyLimit concurrencyLimit;
+    private final CircuitBreaker circuitBreaker;
+    private final SharedPermits sharedPermits;
+    private final String bucketKey;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private int consecutiveFailures;
+    private long unhealthyUntil;
+
+    // Permits from the bucket the webhook shares with the other instances
+    interface SharedPermits {
+        // 0 when a permit was taken, otherwise the number of nanoseconds to wait
+        long tryAcquire();
+
+        // Gives back a permit that no request was sent with
+        default void release() {
+        }
+    }
+
+    WebhookEndpoint(int index, String url, DiscordRateLimiter rateLimiter, LongSupplier nanoClock) {
+        this(index, url, rateLimiter, nanoClock, ConcurrencyLimit.fixed(Integer.MAX_VALUE), CircuitBreaker.disabled(),
+                () -> 0);
+    }
+
+    WebhookEndpoint(int index, String url, DiscordRateLimiter rateLimiter, LongSupplier nanoClock,
+                    ConcurrencyLimit concurrencyLimit, CircuitBreaker circuitBreaker, SharedPermits sharedPermits) {
+        this.index = index;
+        this.url = url;
+        this.rateLimiter = rateLimiter;
+        this.nanoClock = nanoClock;
+        this.concurrencyLimit = concurrencyLimit;
+        this.circuitBreaker = circuitBreaker;
+        this.sharedPermits = sharedPermits;
+        this.bucketKey = ClusterCoordinator.bucketKey(url);
+        this.unhealthyUntil = nanoClock.getAsLong();
+    }
+
+    int getIndex() { return index; }
+    String getUrl() { return url; }
+    DiscordRateLimiter getRateLimiter() { return rateLimiter; }
+    int getInFlight() { return inFlight.get(); }
+    long getDelivered() { return delivered.get(); }
+    int getConcurrencyLimit() { return concurrencyLimit.getLimit(); }
+    CircuitBreaker.State getCircuitState() { return circuitBreaker.getState(); }
+    String getBucketKey() { return bucketKey; }
+
+    /**
+     * Takes a permit from the local limiter and the shared bucket. The shared one is only asked
+     * once the local one has a permit ready, so it is never drained by a request that can't go.
+     *
+     * @return 0 when the request may go, otherwise the number of nanoseconds to wait
+     */
+    long tryAcquirePermit() {
+        long wait = rateLimiter.peekDelayNanos();
+        if (wait > 0) {
+            return wait;
+        }
+        wait = sharedPermits.tryAcquire();
+        if (wait > 0) {
+            return wait;
+        }
+        return rateLimiter.tryAcquire();
+    }
+
+    // Hands back the permits of tryAcquirePermit when no request is sent with them
+    void releasePermit() {
+        rateLimiter.release();
+        sharedPermits.release();
+    }
+
+    void requestStarted() {
+        inFlight.incrementAndGet();
+        circuitBreaker.onRequestStarted();
+    }
+
+    void requestFinished() {
+        inFlight.decrementAndGet();
+        circuitBreaker.onRequestFinished();
+    }
+
+    /**
+     * Feeds the outcome of a request sent at sentAt into the breaker and the concurrency limit;
+     * error is null for a success. 429s lower the limit but don't count against the breaker, since
+     * a rate-limited webhook is up; other client errors are the request's fault, not the webhook's.
+     * Must be called before {@link #requestFinished}, while the request still counts as in flight.
+     */
+    void recordOutcome(long sentAt, long latencyNanos, Throwable error) {
+        if (error == null) {
+            circuitBreaker.onSuccess();
+            concurrencyLimit.onSuccess(sentAt, latencyNanos, inFlight.get());
+        } else if (RetryPolicy.isRateLimited(error)) {
+            circuitBreaker.onSuccess();
+            concurrencyLimit.onOverload(sentAt);
+        } else if (RetryPolicy.isRetryable(error)) {
+            circuitBreaker.onFailure();
+            concurrencyLimit.onOverload(sentAt);
+        } else {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    // Nanoseconds before the breaker lets a request through; 0 when it does now
+    long circuitWaitNanos() {
+        return circuitBreaker.waitNanos();
+    }
+
+    synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        delivered.incrementAndGet();
+    }
+
+    synchronized void recordFailure() {
+        long cooldown = Math.min(MAX_COOLDOWN_NANOS, BASE_COOLDOWN_NANOS << Math.min(consecutiveFailures, 5));
+        consecutiveFailures++;
+        unhealthyUntil = nanoClock.getAsLong() + cooldown;
+    }
+
+    // Nanoseconds until the endpoint is back in rotation after a failure; 0 when healthy
+    synchronized long cooldownNanos() {
+        return Math.max(0, unhealthyUntil - nanoClock.getAsLong());
+    }
+
+    boolean isHealthy() {
+        return cooldownNanos() == 0 && circuitBreaker.getState() == CircuitBreaker.State.CLOSED;
+    }
+}
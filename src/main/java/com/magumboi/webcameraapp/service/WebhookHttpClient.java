@@ -0,0 +1,174 @@
+package com.magumboi.webcameraapp.service;
+
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP client for the webhooks with its own connection pool, sized for concurrent dispatch.
+ * Connections to the webhook hosts are opened at startup. Once uploads have been sent they can be
+ * kept alive through short pauses, so the next upload doesn't pay for DNS and a TLS handshake.
+ * After a long idle period they are left to expire, and warmed again when uploads resume.
+ * Settings of 0 leave Reactor Netty's defaults in place.
+ */
+class WebhookHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookHttpClient.class);
+
+    // Photos are streamed out as DataBuffers; only the small JSON responses are aggregated in memory
+    private static final int MAX_IN_MEMORY_SIZE = 256 * 1024;
+
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    private final List<URI> origins;
+    private final int warmConnections;
+    private final AtomicLong lastUsedNanos = new AtomicLong(System.nanoTime());
+    // Keep-alive only follows real traffic, so nothing is sent before the first upload
+    private volatile boolean used;
+    // Set once keep-alive has given up on an idle service; the next upload warms the connections again
+    private final AtomicBoolean cold = new AtomicBoolean();
+
+    WebhookHttpClient(List<String> webhookUrls, int maxConnections, int maxIdleSeconds, int maxLifeSeconds,
+                      int connectTimeoutMillis, int responseTimeoutSeconds, boolean http2, int warmConnections) {
+        ConnectionProvider.Builder pool = ConnectionProvider.builder("webhook")
+                // Reuse the most recently used connection, so spare ones go idle and get evicted
+                .lifo();
+        if (maxConnections > 0) {
+            pool.maxConnections(maxConnections)
+                    .pendingAcquireMaxCount(maxConnections * 4);
+        }
+        if (maxIdleSeconds > 0) {
+            pool.maxIdleTime(Duration.ofSeconds(maxIdleSeconds))
+                    .evictInBackground(Duration.ofSeconds(Math.max(1, maxIdleSeconds / 2)));
+        }
+        if (maxLifeSeconds > 0) {
+            pool.maxLifeTime(Duration.ofSeconds(maxLifeSeconds));
+        }
+        this.connectionProvider = pool.build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.TCP_NODELAY, true);
+        if (connectTimeoutMillis > 0) {
+            httpClient = httpClient.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis);
+        }
+        if (responseTimeoutSeconds > 0) {
+            httpClient = httpClient.responseTimeout(Duration.ofSeconds(responseTimeoutSeconds));
+        }
+        // Negotiated through ALPN on https webhooks; plain http ones stay on HTTP/1.1
+        if (http2) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(MAX_IN_MEMORY_SIZE))
+                .filter((request, next) -> {
+                    // Warm-up and keep-alive requests don't count as use
+                    if (request.method() != HttpMethod.HEAD) {
+                        lastUsedNanos.set(System.nanoTime());
+                        used = true;
+                        if (cold.compareAndSet(true, false)) {
+                            touchAll().subscribe(done -> { }, error -> logger.debug("Webhook connection warm-up failed: {}", error.getMessage()));
+                        }
+                    }
+                    return next.exchange(request);
+                })
+                .build();
+        this.origins = origins(webhookUrls);
+        this.warmConnections = Math.max(1, warmConnections);
+    }
+
+    WebClient webClient() {
+        return webClient;
+    }
+
+    /**
+     * Opens connections to every webhook host without waiting for them. Only the host root is
+     * requested, never the webhook itself, so nothing is posted; any response leaves a pooled
+     * connection behind, and failures are left for the first real upload to report.
+     */
+    void warmUp() {
+        long startedAt = System.nanoTime();
+        touchAll()
+                .subscribe(
+                        done -> { },
+                        error -> logger.debug("Webhook connection warm-up failed: {}", error.getMessage()),
+                        () -> logger.info("Warmed up connections to {} webhook host(s) in {} ms", origins.size(),
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)));
+    }
+
+    // Called periodically: keeps the warm connections from being closed by the pool or the server
+    // between uploads, until the service has been idle for maxIdleNanos (0 never gives up)
+    void keepAlive(long idleNanos, long maxIdleNanos) {
+        if (!used) {
+            return;
+        }
+        long idle = System.nanoTime() - lastUsedNanos.get();
+        if (idle < idleNanos) {
+            return;
+        }
+        if (maxIdleNanos > 0 && idle >= maxIdleNanos) {
+            if (cold.compareAndSet(false, true)) {
+                logger.debug("No uploads for {} s, letting webhook connections expire", TimeUnit.NANOSECONDS.toSeconds(idle));
+            }
+            return;
+        }
+        touchAll().subscribe(done -> { }, error -> logger.debug("Webhook keep-alive failed: {}", error.getMessage()));
+    }
+
+    void close() {
+        connectionProvider.disposeLater().subscribe();
+    }
+
+    // Concurrent requests per host, so each one holds its own HTTP/1.1 connection
+    private Mono<Void> touchAll() {
+        return Flux.fromIterable(origins)
+                .flatMap(origin -> Flux.range(0, warmConnections).flatMap(i -> touch(origin)))
+                .then();
+    }
+
+    private Mono<Void> touch(URI origin) {
+        return webClient.head()
+                .uri(origin)
+                .exchangeToMono(ClientResponse::releaseBody)
+                .onErrorResume(error -> {
+                    logger.debug("Could not reach webhook host {}: {}", origin, error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    static List<URI> origins(List<String> webhookUrls) {
+        Set<URI> origins = new LinkedHashSet<>();
+        for (String url : webhookUrls) {
+            try {
+                URI uri = URI.create(url.trim());
+                if (uri.getScheme() != null && uri.getHost() != null) {
+                    origins.add(new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), "/", null, null));
+                }
+            } catch (Exception e) {
+                logger.warn("Not warming up connections for invalid webhook URL: {}", e.getMessage());
+            }
+        }
+        return new ArrayList<>(origins);
+    }
+}
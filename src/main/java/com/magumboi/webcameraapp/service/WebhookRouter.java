@@ -0,0 +1,151 @@
+package com.magumboi.webcameraapp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Chooses which webhook of the pool takes the next request. Only the dispatcher thread calls
+ * {@link #acquire}, so the router keeps its round-robin cursor and last wait without locking.
+ */
+class WebhookRouter {
+
+    enum Strategy {
+        LEAST_LOADED,
+        ROUND_ROBIN,
+        HASH;
+
+        static Strategy parse(String value) {
+            if (value == null || value.isBlank()) {
+                return LEAST_LOADED;
+            }
+            return Strategy.valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private final List<WebhookEndpoint> endpoints;
+    private final Strategy strategy;
+    private final int maxInFlightPerEndpoint;
+    private int cursor;
+    private long waitNanos;
+
+    WebhookRouter(List<WebhookEndpoint> endpoints, Strategy strategy, int maxInFlightPerEndpoint) {
+        this.endpoints = List.copyOf(endpoints);
+        this.strategy = strategy;
+        this.maxInFlightPerEndpoint = Math.max(1, maxInFlightPerEndpoint);
+    }
+
+    List<WebhookEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Returns an endpoint that has a free in-flight slot and has granted a rate-limit permit, or
+     * null when none can take a request now; {@link #getWaitNanos} then tells how long the
+     * earliest rate-limited candidate needs. Endpoints cooling down after a failure are skipped
+     * while any healthy endpoint is left, and endpoints with an open circuit breaker always are.
+     */
+    WebhookEndpoint acquire(String routingKey) {
+        waitNanos = Long.MAX_VALUE;
+        List<WebhookEndpoint> candidates = candidates(routingKey);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        // With HASH routing a key sticks to its endpoint until that endpoint fails, so only the first candidate counts
+        int limit = strategy == Strategy.HASH ? 1 : candidates.size();
+        for (int i = 0; i < limit; i++) {
+            WebhookEndpoint endpoint = candidates.get(i);
+            if (endpoint.getInFlight() >= Math.min(maxInFlightPerEndpoint, endpoint.getConcurrencyLimit())) {
+                continue; // A completing request signals the dispatcher
+            }
+            long wait = endpoint.tryAcquirePermit();
+            if (wait == 0) {
+                cursor = (endpoint.getIndex() + 1) % endpoints.size();
+                return endpoint;
+            }
+            waitNanos = Math.min(waitNanos, wait);
+        }
+        return null;
+    }
+
+    long getWaitNanos() {
+        return waitNanos;
+    }
+
+    // True when a request that failed on endpoint can be retried right away on another one
+    boolean hasHealthyAlternative(WebhookEndpoint endpoint) {
+        for (WebhookEndpoint other : endpoints) {
+            if (other != endpoint && other.isHealthy()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<WebhookEndpoint> candidates(String routingKey) {
+        List<WebhookEndpoint> available = new ArrayList<>(endpoints.size());
+        List<WebhookEndpoint> healthy = new ArrayList<>(endpoints.size());
+        for (WebhookEndpoint endpoint : endpoints) {
+            long circuitWait = endpoint.circuitWaitNanos();
+            if (circuitWait > 0) {
+                waitNanos = Math.min(waitNanos, circuitWait);
+                continue;
+            }
+            available.add(endpoint);
+            // A breaker with a probe due counts too, or it would never be probed while others are healthy
+            if (endpoint.cooldownNanos() == 0) {
+                healthy.add(endpoint);
+            }
+        }
+        // Nowhere to fail over to: let the rate limiters alone decide when to try again
+        List<WebhookEndpoint> candidates = healthy.isEmpty() ? available : healthy;
+
+        switch (strategy) {
+            case ROUND_ROBIN:
+                candidates.sort(Comparator.comparingInt(this::distanceFromCursor));
+                break;
+            case HASH:
+                long keyHash = hash(routingKey);
+                candidates.sort(Comparator.comparingLong((WebhookEndpoint endpoint) -> score(keyHash, endpoint)).reversed());
+                break;
+            default:
+                // Least in-flight first, then the emptiest rate-limit window; ties rotate from the cursor
+                candidates.sort(Comparator.comparingInt(WebhookEndpoint::getInFlight)
+                        .thenComparingInt(endpoint -> endpoint.getRateLimiter().getRequestsInWindow())
+                        .thenComparingInt(this::distanceFromCursor));
+                break;
+        }
+        return candidates;
+    }
+
+    private int distanceFromCursor(WebhookEndpoint endpoint) {
+        return Math.floorMod(endpoint.getIndex() - cursor, endpoints.size());
+    }
+
+    // Rendezvous hashing: each key ranks the endpoints the same way every time, and losing an
+    // endpoint only moves the keys that ranked it first
+    private static long score(long keyHash, WebhookEndpoint endpoint) {
+        return mix(keyHash ^ hash(endpoint.getUrl()));
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L; // FNV-1a
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -1,33 +1,64 @@
 package com.magumboi.webcameraapp.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.HttpStatusCode;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.retry.Retry;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 @Service
 public class WebhookService {
@@ -37,72 +68,466 @@ public class WebhookService {
     @Value("${webhook.url:}")
     private String webhookUrl;
 
+    // Additional webhooks, comma separated; each one gets its own rate limit
+    @Value("${webhook.urls:}")
+    private String webhookUrls;
+
+    @Value("${webhook.routing.strategy:least-loaded}")
+    private String routingStrategy;
+
     @Value("${webhook.rate-limit.requests-per-minute:30}")
     private int requestsPerMinute;
 
     @Value("${webhook.rate-limit.max-queue-size:100}")
     private int maxQueueSize;
 
-    @Value("${webhook.retry.max-attempts:3}")
+    // Bytes of all photos held at once (queued, processing, in flight or awaiting a retry); 0 for no limit
+    @Value("${webhook.admission.max-bytes:268435456}")
+    private long admissionMaxBytes;
+
+    // "reject" refuses new photos when the budget is used up, "shed-oldest" drops the oldest queued ones instead
+    @Value("${webhook.admission.policy:reject}")
+    private String admissionPolicy;
+
+    // Requests made for one photo in total, first attempt included
+    @Value("${webhook.retry.max-attempts:5}")
     private int maxRetryAttempts;
 
-    @Value("${webhook.retry.delay-seconds:5}")
+    // Backoff before the first retry; it doubles with every further attempt, up to max-delay-seconds
+    @Value("${webhook.retry.delay-seconds:2}")
     private int retryDelaySeconds;
 
-    private final WebClient webClient;
-    private final BlockingQueue<UploadTask> uploadQueue;
-    private final ScheduledExecutorService scheduler;
-    private final AtomicLong requestCount;
-    private volatile long windowStart;
+    @Value("${webhook.retry.max-delay-seconds:60}")
+    private int retryMaxDelaySeconds;
 
-    // Inner class for upload tasks
-    private static class UploadTask {
-        private final String filename;
-        private final byte[] photoData;
-        private final String content;
-        private final CompletableFuture<String> future;
-        private int attempts;
+    // Photos that failed for good are kept here and can be listed and replayed through the API
+    @Value("${webhook.dead-letter.enabled:true}")
+    private boolean deadLetterEnabled;
 
-        public UploadTask(String filename, byte[] photoData, String content) {
-            this.filename = filename;
-            this.photoData = photoData;
-            this.content = content;
-            this.future = new CompletableFuture<>();
-            this.attempts = 0;
-        }
+    @Value("${webhook.dead-letter.dir:./data/dead-letter}")
+    private String deadLetterDir;
 
-        public String getFilename() { return filename; }
-        public byte[] getPhotoData() { return photoData; }
-        public String getContent() { return content; }
-        public CompletableFuture<String> getFuture() { return future; }
-        public int getAttempts() { return attempts; }
-        public void incrementAttempts() { attempts++; }
-    }
+    @Value("${webhook.dead-letter.max-entries:1000}")
+    private int deadLetterMaxEntries;
+
+    // Fixed in-flight limit per webhook, or the starting point of the adaptive one
+    @Value("${webhook.dispatch.max-in-flight:2}")
+    private int maxInFlight;
+
+    // Let each webhook's in-flight limit follow its latency and 429/5xx rate between min and max
+    @Value("${webhook.dispatch.adaptive.enabled:true}")
+    private boolean adaptiveConcurrency;
+
+    @Value("${webhook.dispatch.adaptive.min-in-flight:1}")
+    private int adaptiveMinInFlight;
+
+    @Value("${webhook.dispatch.adaptive.max-in-flight:16}")
+    private int adaptiveMaxInFlight;
+
+    // Coordination with other instances posting to the same webhooks: "memory" for a single instance,
+    // "file" for instances sharing cluster.dir, which then share each webhook's rate limit and queued photos
+    @Value("${webhook.cluster.backend:memory}")
+    private String clusterBackend;
+
+    @Value("${webhook.cluster.dir:./data/cluster}")
+    private String clusterDir;
+
+    // Queued photos of an instance that stopped renewing its leases for this long are taken over by the others
+    @Value("${webhook.cluster.lease-seconds:30}")
+    private int clusterLeaseSeconds;
+
+    // Blank for a generated one; must differ between instances
+    @Value("${webhook.cluster.instance-id:}")
+    private String clusterInstanceId;
+
+    // Consecutive server or connection errors that stop all requests to a webhook; 0 disables the breaker
+    @Value("${webhook.circuit-breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    // How long a tripped breaker waits before its probe; doubled on every failed probe up to the maximum
+    @Value("${webhook.circuit-breaker.open-seconds:5}")
+    private int breakerOpenSeconds;
+
+    @Value("${webhook.circuit-breaker.max-open-seconds:120}")
+    private int breakerMaxOpenSeconds;
+
+    // How often job status changes and queue snapshots are pushed to event stream clients; 0 disables the stream
+    @Value("${webhook.events.interval-ms:250}")
+    private long eventsIntervalMillis;
+
+    // An unchanged queue snapshot is sent again after this long, so idle streams aren't cut by proxies
+    @Value("${webhook.events.heartbeat-seconds:15}")
+    private int eventsHeartbeatSeconds;
+
+    // Pooled connections to all webhooks together; 0 sizes the pool for max-in-flight on every webhook
+    @Value("${webhook.http.max-connections:0}")
+    private int httpMaxConnections;
+
+    @Value("${webhook.http.max-idle-seconds:60}")
+    private int httpMaxIdleSeconds;
+
+    // Connections are replaced after this long so DNS changes of the webhook hosts are picked up
+    @Value("${webhook.http.max-life-seconds:600}")
+    private int httpMaxLifeSeconds;
+
+    @Value("${webhook.http.connect-timeout-ms:5000}")
+    private int httpConnectTimeoutMillis;
+
+    @Value("${webhook.http.response-timeout-seconds:30}")
+    private int httpResponseTimeoutSeconds;
+
+    @Value("${webhook.http.http2:true}")
+    private boolean http2Enabled;
+
+    // Connections opened to each webhook host at startup, and kept open while idle
+    @Value("${webhook.http.warm-up:true}")
+    private boolean httpWarmUp;
+
+    @Value("${webhook.http.warm-connections:2}")
+    private int httpWarmConnections;
+
+    // How often warm connections are touched between uploads; 0 (the default) lets them expire
+    @Value("${webhook.http.keep-alive-seconds:0}")
+    private int httpKeepAliveSeconds;
+
+    // Idle time after which keep-alive stops and connections are warmed again by the next upload; 0 never stops
+    @Value("${webhook.http.keep-alive-max-idle-seconds:600}")
+    private int httpKeepAliveMaxIdleSeconds;
+
+    @Value("${webhook.batch.max-files:10}")
+    private int batchMaxFiles;
+
+    @Value("${webhook.batch.max-payload-bytes:8388608}")
+    private long batchMaxPayloadBytes;
+
+    @Value("${webhook.jobs.retention-minutes:60}")
+    private int jobRetentionMinutes;
+
+    @Value("${webhook.jobs.max-retained:1000}")
+    private int maxRetainedJobs;
+
+    @Value("${webhook.queue.backend:memory}")
+    private String queueBackend;
+
+    @Value("${webhook.queue.journal.dir:./data/upload-journal}")
+    private String journalDir;
+
+    @Value("${webhook.queue.journal.segment-size-bytes:67108864}")
+    private long journalSegmentSize;
+
+    @Value("${webhook.upload.streaming:true}")
+    private boolean streamingUploads;
+
+    @Value("${webhook.upload.spool-dir:${java.io.tmpdir}/webcam-upload-spool}")
+    private String spoolDir;
+
+    // Raw request bodies have no multipart size limit in front of them, so they are capped here
+    @Value("${webhook.upload.max-body-bytes:26214400}")
+    private long maxBodyBytes;
+
+    @Value("${webhook.bulk.max-files:50}")
+    private int bulkMaxFiles;
+
+    @Value("${webhook.bulk.worker-threads:4}")
+    private int bulkWorkerThreads;
+
+    @Value("${webhook.image.enabled:false}")
+    private boolean imageProcessingEnabled;
+
+    @Value("${webhook.image.max-dimension:1920}")
+    private int imageMaxDimension;
+
+    @Value("${webhook.image.target-bytes:2097152}")
+    private long imageTargetBytes;
+
+    @Value("${webhook.image.min-quality:0.5}")
+    private float imageMinQuality;
+
+    @Value("${webhook.image.strip-metadata:true}")
+    private boolean imageStripMetadata;
+
+    @Value("${webhook.image.worker-threads:2}")
+    private int imageWorkerThreads;
+
+    @Value("${webhook.image.queue-capacity:50}")
+    private int imageQueueCapacity;
+
+    @Value("${webhook.dedup.enabled:false}")
+    private boolean dedupEnabled;
+
+    @Value("${webhook.dedup.window-seconds:10}")
+    private int dedupWindowSeconds;
+
+    @Value("${webhook.dedup.max-distance:5}")
+    private int dedupMaxDistance;
+
+    @Value("${webhook.dedup.cache-size:256}")
+    private int dedupCacheSize;
+
+    @Value("${webhook.idempotency.enabled:true}")
+    private boolean idempotencyEnabled;
+
+    @Value("${webhook.idempotency.ttl-minutes:10}")
+    private int idempotencyTtlMinutes;
+
+    @Value("${webhook.idempotency.max-entries:1000}")
+    private int idempotencyMaxEntries;
+
+    @Value("${webhook.priority.interactive.weight:8}")
+    private int interactiveWeight;
+
+    @Value("${webhook.priority.normal.weight:3}")
+    private int normalWeight;
+
+    @Value("${webhook.priority.bulk.weight:1}")
+    private int bulkWeight;
+
+    @Value("${webhook.priority.interactive.capacity:20}")
+    private int interactiveCapacity;
+
+    @Value("${webhook.priority.normal.capacity:100}")
+    private int normalCapacity;
+
+    @Value("${webhook.priority.bulk.capacity:100}")
+    private int bulkCapacity;
+
+    @Value("${webhook.priority.max-wait-seconds:30}")
+    private int priorityMaxWaitSeconds;
+
+    // Fair queuing between cameras: photos each may send per round ("camera:weight,..."; others get 1),
+    // and photos each may hold at once, 0 for no quota
+    @Value("${webhook.fairness.client-weights:}")
+    private String clientWeights;
+
+    @Value("${webhook.fairness.max-photos-per-client:50}")
+    private int maxPhotosPerClient;
+
+    // Continuous Flight Recorder recording of the upload stages, kept for max-age and written to dir on shutdown
+    @Value("${webhook.jfr.enabled:false}")
+    private boolean jfrEnabled;
+
+    @Value("${webhook.jfr.dir:./data/jfr}")
+    private String jfrDir;
+
+    @Value("${webhook.jfr.max-age-minutes:60}")
+    private int jfrMaxAgeMinutes;
+
+    // Provided by Actuator; without it the service keeps its metrics in a local registry
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // Discord rejects messages whose content is longer than this
+    private static final int MAX_CONTENT_LENGTH = 2000;
+
+    // Formatters are immutable and thread-safe, so every upload shares them
+    private static final DateTimeFormatter FILENAME_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+    private static final DateTimeFormatter CONTENT_TIMESTAMP = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    // Upper bound on how long the dispatcher sleeps without being signalled
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // How long requests wait before asking an unreachable shared rate limit again
+    private static final long SHARED_LIMIT_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Photos taken over from stopped instances in one pass, so a large backlog is spread over several
+    private static final int MAX_CLAIMED_PER_RUN = 100;
+
+    private WebhookHttpClient httpClient;
+    private volatile UploadQueue uploadQueue;
+    private final RetryQueue retryQueue;
+    private RetryPolicy retryPolicy;
+    private DeadLetterStore deadLetters;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong duplicatesMerged;
+    private WebhookRouter router;
+    private ClusterCoordinator coordinator;
+    private UploadJobRegistry jobRegistry;
+    private AdmissionControl admission;
+    private UploadEventHub events;
+    private ImageProcessor imageProcessor;
+    private ExecutorService ingestExecutor;
+    private PhotoDeduplicator deduplicator;
+    private IdempotencyCache idempotencyCache;
+    private UploadMetrics metrics;
+    private UploadRecording recording;
+    private volatile Thread dispatcherThread;
+    private volatile boolean running;
 
     public WebhookService() {
-        this.webClient = WebClient.builder()
-                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(25 * 1024 * 1024)) // 25MB limit
-                .build();
-        this.uploadQueue = new LinkedBlockingQueue<>();
-        this.scheduler = Executors.newScheduledThreadPool(2);
-        this.requestCount = new AtomicLong(0);
-        this.windowStart = System.currentTimeMillis();
+        this.uploadQueue = new InMemoryUploadQueue();
+        this.retryQueue = new RetryQueue();
+        this.scheduler = Executors.newScheduledThreadPool(1);
+        this.duplicatesMerged = new AtomicLong(0);
     }
 
     @PostConstruct
     public void startQueueProcessor() {
-        // Start the queue processor
-        scheduler.scheduleWithFixedDelay(this::processQueue, 0, 1, TimeUnit.SECONDS);
-        
-        // Start rate limit window reset
-        scheduler.scheduleWithFixedDelay(this::resetRateLimit, 60, 60, TimeUnit.SECONDS);
+        if (jfrEnabled) {
+            try {
+                recording = UploadRecording.start(Paths.get(jfrDir), Duration.ofMinutes(Math.max(1, jfrMaxAgeMinutes)));
+                logger.info("Recording upload stages to {}", recording.getDestination());
+            } catch (IOException | RuntimeException e) {
+                // Only the recording is lost; uploads go on as usual
+                logger.warn("Could not start the flight recording: {}", e.getMessage());
+            }
+        }
+        coordinator = createCoordinator();
+
+        // One local token bucket per webhook; Discord's own bucket headers and the cluster's shared bucket are layered on top of each
+        int maxInFlightPerEndpoint = adaptiveConcurrency ? Math.max(maxInFlight, adaptiveMaxInFlight) : maxInFlight;
+        List<WebhookEndpoint> endpoints = new ArrayList<>();
+        for (String url : configuredWebhookUrls()) {
+            ConcurrencyLimit concurrencyLimit = adaptiveConcurrency
+                    ? new ConcurrencyLimit(maxInFlight, adaptiveMinInFlight, maxInFlightPerEndpoint, System::nanoTime)
+                    : ConcurrencyLimit.fixed(maxInFlight);
+            CircuitBreaker circuitBreaker = new CircuitBreaker(breakerFailureThreshold, TimeUnit.SECONDS.toNanos(breakerOpenSeconds),
+                    TimeUnit.SECONDS.toNanos(breakerMaxOpenSeconds), System::nanoTime);
+            endpoints.add(new WebhookEndpoint(endpoints.size(), url, new DiscordRateLimiter(requestsPerMinute), System::nanoTime,
+                    concurrencyLimit, circuitBreaker, sharedPermits(ClusterCoordinator.bucketKey(url))));
+        }
+        router = new WebhookRouter(endpoints, WebhookRouter.Strategy.parse(routingStrategy), maxInFlightPerEndpoint);
+        retryPolicy = new RetryPolicy(maxRetryAttempts, TimeUnit.SECONDS.toMillis(retryDelaySeconds),
+                TimeUnit.SECONDS.toMillis(retryMaxDelaySeconds));
+        if (deadLetterEnabled) {
+            deadLetters = new DeadLetterStore(Paths.get(deadLetterDir), deadLetterMaxEntries);
+        }
+
+        // One pool for all webhooks, sized so every permitted request has a connection without waiting
+        int maxConnections = httpMaxConnections > 0 ? httpMaxConnections : Math.max(1, maxInFlightPerEndpoint) * Math.max(1, endpoints.size());
+        httpClient = new WebhookHttpClient(configuredWebhookUrls(), maxConnections, httpMaxIdleSeconds, httpMaxLifeSeconds,
+                httpConnectTimeoutMillis, httpResponseTimeoutSeconds, http2Enabled, Math.min(httpWarmConnections, maxConnections));
+        if (httpWarmUp) {
+            httpClient.warmUp();
+            if (httpKeepAliveSeconds > 0) {
+                long keepAliveNanos = TimeUnit.SECONDS.toNanos(httpKeepAliveSeconds);
+                long maxIdleNanos = TimeUnit.SECONDS.toNanos(httpKeepAliveMaxIdleSeconds);
+                scheduler.scheduleWithFixedDelay(() -> httpClient.keepAlive(keepAliveNanos, maxIdleNanos),
+                        httpKeepAliveSeconds, httpKeepAliveSeconds, TimeUnit.SECONDS);
+            }
+        }
+
+        // Lanes per priority, each shared fairly between cameras; photos queued before startup move over with their priority
+        UploadQueue lanes = new PriorityUploadQueue(
+                Map.of(UploadPriority.INTERACTIVE, interactiveWeight, UploadPriority.NORMAL, normalWeight, UploadPriority.BULK, bulkWeight),
+                Map.of(UploadPriority.INTERACTIVE, interactiveCapacity, UploadPriority.NORMAL, normalCapacity, UploadPriority.BULK, bulkCapacity),
+                TimeUnit.SECONDS.toMillis(priorityMaxWaitSeconds), parseClientWeights(clientWeights), System::nanoTime);
+        uploadQueue.drain().forEach(lanes::requeue);
+        uploadQueue = lanes;
+
+        // Switch to the persistent queue before any request arrives, and pick up photos left from the last run
+        if ("journal".equalsIgnoreCase(queueBackend)) {
+            // A photo replayed from the journal may already have been taken over and sent by another instance
+            if (coordinator.isShared()) {
+                throw new IllegalStateException("webhook.queue.backend=journal can't be combined with webhook.cluster.backend="
+                        + clusterBackend + "; the shared directory already keeps queued photos across restarts");
+            }
+            try {
+                uploadQueue = JournalUploadQueue.open(Paths.get(journalDir), journalSegmentSize, lanes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open upload journal in " + journalDir, e);
+            }
+            uploadQueue.recoveredTasks().forEach(task -> {
+                admission().admitRecovered(task);
+                task.getJob().beginStage(UploadStage.QUEUE);
+                track(task.getJob());
+            });
+        }
+
+        // With a shared coordinator every queued photo is leased to this instance and photos other instances
+        // left behind are taken over; within one JVM there is nobody to take them over
+        if (coordinator.isShared()) {
+            LeasedUploadQueue leasedQueue = new LeasedUploadQueue(coordinator, uploadQueue);
+            uploadQueue = leasedQueue;
+            if (clusterLeaseSeconds > 0) {
+                long leaseMillis = TimeUnit.SECONDS.toMillis(clusterLeaseSeconds);
+                scheduler.scheduleWithFixedDelay(() -> renewLeases(leasedQueue), leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+                scheduler.scheduleWithFixedDelay(() -> claimExpiredLeases(leasedQueue), leaseMillis / 2, leaseMillis / 2, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // Image processing gets its own bounded CPU pool, separate from dispatch and the HTTP client
+        if (imageProcessingEnabled) {
+            imageProcessor = new ImageProcessor(imageMaxDimension, imageTargetBytes, imageMinQuality,
+                    imageStripMetadata, imageWorkerThreads, imageQueueCapacity,
+                    streamingUploads ? Paths.get(spoolDir) : null);
+        }
+
+        // Spooling and hashing of bulk uploads; callers wait for the results, so the pool needs no queue bound
+        AtomicInteger ingestThreads = new AtomicInteger();
+        ingestExecutor = Executors.newFixedThreadPool(Math.max(1, bulkWorkerThreads), runnable -> {
+            Thread thread = new Thread(runnable, "bulk-ingest-" + ingestThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (dedupEnabled) {
+            deduplicator = new PhotoDeduplicator(dedupCacheSize, TimeUnit.SECONDS.toMillis(dedupWindowSeconds), dedupMaxDistance);
+        }
+
+        if (idempotencyEnabled) {
+            idempotencyCache = new IdempotencyCache(idempotencyMaxEntries, TimeUnit.MINUTES.toMillis(idempotencyTtlMinutes));
+            scheduler.scheduleWithFixedDelay(idempotencyCache::evictExpired, 1, 1, TimeUnit.MINUTES);
+        }
+
+        metrics().bindService(this);
+
+        // Live status stream: one publisher for every connected client
+        if (eventsIntervalMillis > 0) {
+            scheduler.scheduleAtFixedRate(events()::publish, eventsIntervalMillis, eventsIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // Drop finished jobs once clients have had time to read them
+        scheduler.scheduleWithFixedDelay(jobRegistry()::evictExpired, 1, 1, TimeUnit.MINUTES);
+
+        // Start the dispatcher; it sleeps until a task is enqueued, a permit frees up or a request completes
+        running = true;
+        dispatcherThread = new Thread(this::dispatchLoop, "webhook-dispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
         
-        logger.info("Webhook service started with rate limit: {} requests/minute, max queue size: {}", 
-                   requestsPerMinute, maxQueueSize);
+        logger.info("Webhook service started with {} webhook(s), rate limit: {} requests/minute, max queue size: {}, max in-flight: {}{}",
+                   endpoints.size(), requestsPerMinute, maxQueueSize, maxInFlight,
+                   adaptiveConcurrency ? " (adaptive up to " + maxInFlightPerEndpoint + ")" : "");
     }
 
     @PreDestroy
     public void shutdown() {
+        running = false;
+        Thread dispatcher = dispatcherThread;
+        if (dispatcher != null) {
+            LockSupport.unpark(dispatcher);
+            try {
+                dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Photos in the journal are replayed on the next start and shared ones are taken over by the
+        // other instances, waiting retries included; in-memory ones would be lost silently
+        if (uploadQueue.isDurable()) {
+            logger.info("Keeping {} queued photos and {} waiting retries for {}", uploadQueue.size(), retryQueue.size(),
+                    coordinator != null && coordinator.isShared() ? "the other instances" : "the next start");
+        } else {
+            List<UploadTask> pending = new ArrayList<>(uploadQueue.drain());
+            pending.addAll(retryQueue.drain());
+            for (UploadTask task : pending) {
+                metrics().recordDropped(UploadMetrics.DROP_SHUTDOWN);
+                metrics().recordLatency(task.getJob(), UploadMetrics.OUTCOME_ERROR);
+                finish(task);
+                task.getJob().fail(new IllegalStateException("Webhook service shut down before the photo was uploaded"));
+            }
+        }
+        uploadQueue.close();
+        if (imageProcessor != null) {
+            imageProcessor.shutdown();
+        }
+        if (ingestExecutor != null) {
+            ingestExecutor.shutdownNow();
+        }
+        if (deadLetters != null) {
+            deadLetters.close();
+        }
+
         scheduler.shutdown();
         try {
             if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -112,166 +537,1112 @@ public class WebhookService {
             scheduler.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        if (coordinator != null) {
+            coordinator.close();
+        }
+        if (events != null) {
+            events.close();
+        }
+        if (recording != null) {
+            recording.close();
+        }
         logger.info("Webhook service shutdown completed");
     }
 
     public Mono<String> uploadPhotoToWebhook(MultipartFile photo) {
-        if (webhookUrl == null || webhookUrl.trim().isEmpty()) {
-            return Mono.error(new IllegalStateException("Webhook URL is not configured"));
+        return uploadPhotoToWebhook(photo, UploadOptions.defaults());
+    }
+
+    public Mono<String> uploadPhotoToWebhook(MultipartFile photo, UploadOptions options) {
+        try {
+            UploadJob job = submitPhoto(photo, options);
+
+            // Return future as Mono; several requests may share the job, so one client going away must not cancel it
+            return Mono.fromFuture(job.getFuture(), true);
+        } catch (RuntimeException e) {
+            return Mono.error(e);
         }
+    }
+
+    public UploadJob submitPhoto(MultipartFile photo) {
+        return submitPhoto(photo, UploadOptions.defaults());
+    }
+
+    /**
+     * Queues a photo and returns its job right away; the job's future completes once the
+     * photo has been delivered or has failed for good. A request repeating the idempotency key
+     * of an earlier one (or, without a key, the same photo) gets the earlier job back.
+     */
+    public UploadJob submitPhoto(MultipartFile photo, UploadOptions options) {
+        requireWebhook();
 
+        UploadJob job = new UploadJob();
+        job.beginStage(UploadStage.RECEIVE, UploadTimeline.startedAt(options.getReceiveStartedAt()));
+        String key = resolveIdempotencyKey(options.getIdempotencyKey(), () -> hashPhoto(photo.getInputStream()));
+        UploadJob existing = claimIdempotencyKey(key, job);
+        if (existing != null) {
+            return existing;
+        }
+
+        return enqueueClaimed(key, job, options, () -> {
+            checkQueueCapacity(options.getPriority(), options.getCameraId(), photo.getSize());
+            return streamingUploads ? spool(photo) : new ByteArrayPhotoPayload(photo.getBytes());
+        }, true);
+    }
+
+    /**
+     * Queues a photo sent as a raw request body. The body is copied to the spool as it arrives,
+     * so a chunked upload never sits on the heap, and is hashed in the same pass.
+     */
+    public UploadJob submitPhotoStream(InputStream body, UploadOptions options) {
+        requireWebhook();
+        // Refuse before reading the body when the photo could not be queued anyway
+        checkQueueCapacity(options.getPriority(), options.getCameraId(), 0);
+
+        UploadTimeline.Start receiving = UploadTimeline.startedAt(options.getReceiveStartedAt());
+        MessageDigest digest = idempotencyCache != null ? sha256() : null;
+        PhotoPayload payload;
         try {
-            // Generate timestamp for filename
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
-            String filename = "camera-photo-" + timestamp + ".jpg";
-            
-            // Add content message
-            String content = "📸 Nueva foto tomada - " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
-            
-            // Create upload task
-            UploadTask task = new UploadTask(filename, photo.getBytes(), content);
-            
-            // Check queue capacity
-            if (uploadQueue.size() >= maxQueueSize) {
-                return Mono.error(new RuntimeException("Upload queue is full. Please try again later."));
-            }
-            
-            // Add to queue
-            uploadQueue.offer(task);
-            logger.info("Photo upload queued. Queue size: {}", uploadQueue.size());
-            
-            // Return future as Mono
-            return Mono.fromFuture(task.getFuture());
-            
+            payload = receive(digest != null ? new DigestInputStream(body, digest) : body);
+        } catch (BoundedInputStream.TooLargeException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
         } catch (IOException e) {
-            return Mono.error(new RuntimeException("Failed to read photo data: " + e.getMessage(), e));
+            throw new RuntimeException("Failed to read photo data: " + e.getMessage(), e);
+        }
+        if (payload.size() == 0) {
+            payload.release();
+            throw new IllegalArgumentException("No photo provided");
         }
+
+        return submitReceived(payload, digest != null ? "sha256:" + HexFormat.of().formatHex(digest.digest()) : null,
+                options, receiving, true);
     }
 
-    private void processQueue() {
+    /**
+     * Queues the photos of one request as a group. They are validated, spooled and hashed in
+     * parallel on the ingest pool, then queued back to back with a single dispatcher wake-up, so
+     * they can share webhook messages. Returns one job per photo, in order; a photo that could
+     * not be queued gets a failed job carrying the reason.
+     */
+    public List<UploadJob> submitPhotos(List<MultipartFile> photos, List<UploadOptions> options) {
+        requireWebhook();
+        if (photos.isEmpty()) {
+            throw new IllegalArgumentException("No file provided");
+        }
+        if (photos.size() > bulkMaxFiles) {
+            throw new IllegalArgumentException("At most " + bulkMaxFiles + " photos can be uploaded per request");
+        }
+
+        // Before startup there is no pool and photos are read on the caller's thread
+        Executor executor = ingestExecutor != null ? ingestExecutor : Runnable::run;
+        List<CompletableFuture<ReceivedPhoto>> received = new ArrayList<>(photos.size());
+        for (int i = 0; i < photos.size(); i++) {
+            MultipartFile photo = photos.get(i);
+            UploadOptions photoOptions = options.get(i);
+            received.add(CompletableFuture.supplyAsync(() -> receiveForGroup(photo, photoOptions), executor));
+        }
+
+        List<UploadJob> jobs = new ArrayList<>(photos.size());
+        for (int i = 0; i < photos.size(); i++) {
+            try {
+                ReceivedPhoto photo = received.get(i).join();
+                jobs.add(submitReceived(photo.payload, photo.contentHash, options.get(i), photo.receiving, false));
+            } catch (CompletionException e) {
+                jobs.add(failedJob(e.getCause()));
+            } catch (RuntimeException e) {
+                jobs.add(failedJob(e));
+            }
+        }
+        signalDispatcher();
+        logger.info("Queued {} of {} photos from a bulk upload. Queue size: {}",
+                jobs.stream().filter(job -> job.getStatus() != UploadJob.Status.FAILED).count(), photos.size(), uploadQueue.size());
+        return jobs;
+    }
+
+    // Parallel part of a group upload: everything that touches the photo bytes
+    private ReceivedPhoto receiveForGroup(MultipartFile photo, UploadOptions options) {
+        UploadTimeline.Start receiving = UploadTimeline.startedAt(options.getReceiveStartedAt());
+        if (photo.isEmpty()) {
+            throw new IllegalArgumentException("No file provided");
+        }
+        if (photo.getContentType() == null || !photo.getContentType().startsWith("image/")) {
+            throw new IllegalArgumentException("File must be an image");
+        }
+        checkQueueCapacity(options.getPriority(), options.getCameraId(), photo.getSize());
         try {
-            // Check if we can make a request (rate limiting)
-            if (!canMakeRequest()) {
-                logger.debug("Rate limit reached, waiting...");
-                return;
+            PhotoPayload payload = streamingUploads ? spool(photo) : new ByteArrayPhotoPayload(photo.getBytes());
+            String contentHash = null;
+            if (idempotencyCache != null) {
+                try {
+                    contentHash = hashPhoto(payload.openStream());
+                } catch (IOException e) {
+                    logger.debug("Could not hash photo for idempotency: {}", e.getMessage());
+                }
             }
-            
-            // Get next task from queue
-            UploadTask task = uploadQueue.poll();
-            if (task == null) {
-                return; // No tasks to process
+            return new ReceivedPhoto(payload, contentHash, receiving);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read photo data: " + e.getMessage(), e);
+        }
+    }
+
+    private static UploadJob failedJob(Throwable cause) {
+        UploadJob job = new UploadJob();
+        job.fail(cause);
+        return job;
+    }
+
+    // Queues a photo whose bytes have already been read, since receiving; the payload is released if it isn't queued
+    private UploadJob submitReceived(PhotoPayload payload, String contentHash, UploadOptions options,
+                                     UploadTimeline.Start receiving, boolean wakeDispatcher) {
+        UploadJob job = new UploadJob();
+        job.beginStage(UploadStage.RECEIVE, receiving);
+        String key = resolveIdempotencyKey(options.getIdempotencyKey(), () -> contentHash);
+        UploadJob existing = claimIdempotencyKey(key, job);
+        if (existing != null) {
+            payload.release();
+            return existing;
+        }
+
+        return enqueueClaimed(key, job, options, () -> payload, wakeDispatcher);
+    }
+
+    private void requireWebhook() {
+        if (configuredWebhookUrls().isEmpty()) {
+            throw new IllegalStateException("Webhook URL is not configured");
+        }
+    }
+
+    private UploadJob claimIdempotencyKey(String key, UploadJob job) {
+        if (key == null) {
+            return null;
+        }
+        UploadJob existing = idempotencyCache.claim(key, job);
+        if (existing != null) {
+            logger.info("Repeated upload attached to job {} ({})", existing.getId(), existing.getStatus());
+        }
+        return existing;
+    }
+
+    private UploadJob enqueueClaimed(String key, UploadJob job, UploadOptions options, PayloadSource source,
+                                     boolean wakeDispatcher) {
+        try {
+            UploadJob queued = enqueuePhoto(source, job, options, wakeDispatcher);
+            if (key != null && queued != job) {
+                idempotencyCache.put(key, queued);
+            }
+            return queued;
+        } catch (RuntimeException e) {
+            // A failed job releases its idempotency key and is never matched as a duplicate
+            if (!job.getStatus().isFinished()) {
+                job.fail(e);
             }
-            
-            // Process the upload
-            processUploadTask(task);
-            
-        } catch (Exception e) {
-            logger.error("Error processing upload queue", e);
+            throw e;
         }
     }
 
-    private boolean canMakeRequest() {
-        long now = System.currentTimeMillis();
-        
-        // Reset window if needed
-        if (now - windowStart >= 60000) { // 1 minute window
-            resetRateLimit();
+    // Header keys and content hashes live in separate namespaces so a client key can't collide with a hash
+    private String resolveIdempotencyKey(String idempotencyKey, ContentHash contentHash) {
+        if (idempotencyCache == null) {
+            return null;
+        }
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            return "key:" + idempotencyKey.trim();
+        }
+        try {
+            return contentHash.compute();
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not hash photo for idempotency: {}", e.getMessage());
+            return null;
         }
-        
-        return requestCount.get() < requestsPerMinute;
     }
 
-    private void resetRateLimit() {
-        requestCount.set(0);
-        windowStart = System.currentTimeMillis();
-        logger.debug("Rate limit window reset");
+    private static String hashPhoto(InputStream photo) throws IOException {
+        try (InputStream input = photo) {
+            MessageDigest digest = sha256();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            return "sha256:" + HexFormat.of().formatHex(digest.digest());
+        }
     }
 
-    private void processUploadTask(UploadTask task) {
-        task.incrementAttempts();
-        requestCount.incrementAndGet();
-        
-        logger.info("Processing upload task: {} (attempt {}/{})", 
-                   task.getFilename(), task.getAttempts(), maxRetryAttempts);
-        
-        // Create multipart body
-        MultipartBodyBuilder builder = new MultipartBodyBuilder();
-        builder.part("file", new ByteArrayResource(task.getPhotoData()) {
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // "front-door:4, garage:2" to a weight per camera ID
+    static Map<String, Integer> parseClientWeights(String value) {
+        Map<String, Integer> weights = new HashMap<>();
+        if (value == null || value.isBlank()) {
+            return weights;
+        }
+        for (String entry : value.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf(':');
+            try {
+                weights.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Client weight must be camera:weight, got '" + entry.trim() + "'", e);
+            }
+        }
+        return weights;
+    }
+
+    // webhook.url first, then webhook.urls, without blanks or repeats
+    private List<String> configuredWebhookUrls() {
+        Set<String> urls = new LinkedHashSet<>();
+        for (String value : new String[]{webhookUrl, webhookUrls}) {
+            if (value == null) {
+                continue;
+            }
+            for (String url : value.split(",")) {
+                if (!url.isBlank()) {
+                    urls.add(url.trim());
+                }
+            }
+        }
+        return new ArrayList<>(urls);
+    }
+
+    private ClusterCoordinator createCoordinator() {
+        String instanceId = clusterInstanceId != null && !clusterInstanceId.isBlank()
+                ? clusterInstanceId.trim() : defaultInstanceId();
+        long leaseMillis = TimeUnit.SECONDS.toMillis(clusterLeaseSeconds);
+        if ("file".equalsIgnoreCase(clusterBackend)) {
+            try {
+                logger.info("Sharing rate limits and queued photos in {} as instance {}", clusterDir, instanceId);
+                return new FileClusterCoordinator(instanceId, Paths.get(clusterDir), leaseMillis);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open cluster directory " + clusterDir, e);
+            }
+        }
+        return new InMemoryClusterCoordinator(instanceId, leaseMillis);
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "instance";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    // Permits from the webhook's bucket in the cluster; when that can't be reached, requests wait rather than overrun it.
+    // A single instance has nothing to share, so only its own limiter applies, Discord's headers included
+    private WebhookEndpoint.SharedPermits sharedPermits(String bucket) {
+        if (!coordinator.isShared()) {
+            return () -> 0;
+        }
+        return new WebhookEndpoint.SharedPermits() {
             @Override
-            public String getFilename() {
-                return task.getFilename();
+            public long tryAcquire() {
+                try {
+                    return coordinator.tryAcquire(bucket, requestsPerMinute);
+                } catch (UncheckedIOException e) {
+                    logger.warn("Shared rate limit unavailable: {}", e.getMessage());
+                    return SHARED_LIMIT_RETRY_NANOS;
+                }
             }
-        }, MediaType.IMAGE_JPEG);
-        builder.part("content", task.getContent());
 
+            @Override
+            public void release() {
+                try {
+                    coordinator.refund(bucket, requestsPerMinute);
+                } catch (UncheckedIOException e) {
+                    logger.warn("Shared rate limit unavailable: {}", e.getMessage());
+                }
+            }
+        };
+    }
+
+    private void renewLeases(LeasedUploadQueue queue) {
+        try {
+            queue.renewLeases();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to renew leases of queued photos: {}", e.getMessage());
+        }
+    }
+
+    // Takes over as many orphaned photos as the queue has room for
+    private void claimExpiredLeases(LeasedUploadQueue queue) {
+        try {
+            int room = maxQueueSize > 0 ? maxQueueSize - queue.size() : MAX_CLAIMED_PER_RUN;
+            List<UploadTask> claimed = queue.claimExpired(Math.min(room, MAX_CLAIMED_PER_RUN));
+            if (claimed.isEmpty()) {
+                return;
+            }
+            claimed.forEach(task -> {
+                admission().admitRecovered(task);
+                track(task.getJob());
+            });
+            logger.info("Took over {} queued photos from instances that stopped", claimed.size());
+            signalDispatcher();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to claim photos of stopped instances: {}", e.getMessage());
+        }
+    }
+
+    // Early refusal before a photo is read; the atomic reservation happens in admit. Shedding can
+    // always make room, so with that policy only admit decides.
+    private void checkQueueCapacity(UploadPriority priority, String cameraId, long expectedBytes) {
+        String client = cameraId != null ? cameraId : UploadTask.DEFAULT_CLIENT;
+        if (admission().isOverClientQuota(client)) {
+            metrics().recordDropped(UploadMetrics.DROP_CLIENT_QUOTA);
+            throw clientQuotaRejection(client);
+        }
+        if (!shedOldest() && !admission().hasRoom(priority, expectedBytes)) {
+            metrics().recordDropped(UploadMetrics.DROP_QUEUE_FULL);
+            throw rejection(priority, expectedBytes);
+        }
+    }
+
+    // Reserves the task's bytes, shedding the oldest queued photos of the same or lower priority if the policy allows
+    private void admit(UploadTask task) {
+        while (!admission().tryAdmit(task)) {
+            if (admission().isOverClientQuota(task.getClientId())) {
+                metrics().recordDropped(UploadMetrics.DROP_CLIENT_QUOTA);
+                throw clientQuotaRejection(task.getClientId());
+            }
+            UploadTask shed = shedOldest() ? uploadQueue.shedOldest(task.getPriority()) : null;
+            if (shed == null) {
+                metrics().recordDropped(UploadMetrics.DROP_QUEUE_FULL);
+                throw rejection(task.getPriority(), task.getSize());
+            }
+            logger.warn("Shedding queued job {} to make room for job {}", shed.getJob().getId(), task.getJob().getId());
+            metrics().recordDropped(UploadMetrics.DROP_SHED);
+            metrics().recordLatency(shed.getJob(), UploadMetrics.OUTCOME_ERROR);
+            shed.getJob().fail(new RuntimeException("Photo was dropped to make room for newer uploads"));
+            finish(shed);
+        }
+    }
+
+    private UploadRejectedException rejection(UploadPriority priority, long size) {
+        return new UploadRejectedException("Upload queue is full. Please try again later.",
+                admission().retryAfterSeconds(size, priority, fallbackPhotosPerSecond()));
+    }
+
+    private ClientQuotaExceededException clientQuotaRejection(String client) {
+        return new ClientQuotaExceededException("Too many photos queued for camera " + client + ". Please try again later.",
+                admission().clientRetryAfterSeconds(fallbackPhotosPerSecond()));
+    }
+
+    // Until something has been delivered, assume one photo per request at the configured rate limits
+    private double fallbackPhotosPerSecond() {
+        return Math.max(1, requestsPerMinute) * Math.max(1, configuredWebhookUrls().size()) / 60.0;
+    }
+
+    private boolean shedOldest() {
+        return "shed-oldest".equalsIgnoreCase(admissionPolicy);
+    }
+
+    // A task is finished for good: drop it from the journal, free its storage and its admission budget
+    private void finish(UploadTask task) {
+        uploadQueue.acknowledge(task);
+        task.getPayload().release();
+        admission().release(task);
+    }
+
+    private UploadJob enqueuePhoto(PayloadSource source, UploadJob job, UploadOptions options, boolean wakeDispatcher) {
+        try {
+            // Create upload task
+            PhotoPayload payload = source.read();
+            UploadTask task = createTask(payload, job, options);
+
+            // Near-identical frames share the job of the photo already sent instead of using another permit
+            UploadJob duplicateOf = findRecentDuplicate(task);
+            if (duplicateOf != null) {
+                payload.release();
+                duplicatesMerged.incrementAndGet();
+                logger.info("Photo is a near-duplicate of job {}, not queueing it again", duplicateOf.getId());
+                return duplicateOf;
+            }
+
+            return enqueueTask(task, wakeDispatcher);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read photo data: " + e.getMessage(), e);
+        }
+    }
+
+    // Reserves room for a new task and hands it to image processing or the queue; its payload is released if it isn't queued
+    private UploadJob enqueueTask(UploadTask task, boolean wakeDispatcher) {
+        try {
+            admit(task);
+        } catch (UploadRejectedException e) {
+            task.getPayload().release();
+            throw e;
+        }
+
+        if (imageProcessor != null) {
+            return submitForProcessing(task);
+        }
+
+        // Add to queue; a full lane refuses the photo even when the budget has room. The stage begins
+        // first because the dispatcher may take the photo as soon as it is offered
+        task.getJob().beginStage(UploadStage.QUEUE);
+        if (!uploadQueue.offer(task)) {
+            metrics().recordDropped(UploadMetrics.DROP_QUEUE_FULL);
+            finish(task);
+            throw rejection(task.getPriority(), task.getSize());
+        }
+        track(task.getJob());
+        // Group uploads wake the dispatcher once all their photos are in
+        if (wakeDispatcher) {
+            signalDispatcher();
+        }
+        logger.info("Photo upload queued as job {}. Queue size: {}", task.getJob().getId(), uploadQueue.size());
+
+        return task.getJob();
+    }
+
+    static UploadTask createTask(PhotoPayload payload, UploadJob job, UploadPriority priority) {
+        return createTask(payload, job, UploadOptions.defaults().withPriority(priority));
+    }
+
+    // Names the photo and its message after the capture time the client sent, or the upload time without one
+    static UploadTask createTask(PhotoPayload payload, UploadJob job, UploadOptions options) {
+        LocalDateTime takenAt = options.getCaptureTime() != null
+                ? LocalDateTime.ofInstant(options.getCaptureTime(), ZoneId.systemDefault())
+                : LocalDateTime.now();
+        String filename = "camera-photo-" + takenAt.format(FILENAME_TIMESTAMP) + ".jpg";
+        String content = "📸 Nueva foto tomada - " + takenAt.format(CONTENT_TIMESTAMP);
+        return new UploadTask(filename, payload, content, job, options.getPriority(), options.getCameraId());
+    }
+
+    // Runs the photo through the image pool and queues it afterwards; queue-full errors then surface through the job
+    private UploadJob submitForProcessing(UploadTask task) {
+        UploadJob job = task.getJob();
+        job.markProcessing();
+        track(job);
+
+        try {
+            imageProcessor.submit(task.getPayload()).whenComplete((processed, error) -> {
+                if (processed != null && processed != task.getPayload()) {
+                    task.getPayload().release();
+                    task.replacePayload(processed);
+                }
+                job.markQueued();
+                if (!uploadQueue.offer(task)) {
+                    metrics().recordDropped(UploadMetrics.DROP_QUEUE_FULL);
+                    metrics().recordLatency(job, UploadMetrics.OUTCOME_ERROR);
+                    finish(task);
+                    job.fail(rejection(task.getPriority(), task.getSize()));
+                    return;
+                }
+                signalDispatcher();
+                logger.info("Processed photo queued as job {}. Queue size: {}", job.getId(), uploadQueue.size());
+            });
+        } catch (RejectedExecutionException e) {
+            metrics().recordDropped(UploadMetrics.DROP_QUEUE_FULL);
+            finish(task);
+            UploadRejectedException error = new UploadRejectedException("Image processing queue is full. Please try again later.",
+                    admission().retryAfterSeconds(0, task.getPriority(), imageWorkerThreads));
+            job.fail(error);
+            throw error;
+        }
+        return job;
+    }
+
+    // Hashes the photo before it is queued; photos that can't be decoded are never treated as duplicates
+    private UploadJob findRecentDuplicate(UploadTask task) {
+        if (deduplicator == null) {
+            return null;
+        }
+        long hash;
+        try {
+            hash = PhotoDeduplicator.differenceHash(task.getPayload());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Skipping duplicate detection for job {}: {}", task.getJob().getId(), e.getMessage());
+            return null;
+        }
+        return deduplicator.findOrRecord(hash, task.getJob());
+    }
+
+    // Moves the multipart temp file into the spool directory instead of copying the photo onto the heap
+    private PhotoPayload spool(MultipartFile photo) throws IOException {
+        Path file = createSpoolFile();
+        try {
+            photo.transferTo(file.toFile());
+            return new FilePhotoPayload(file, Files.size(file));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    // Copies a raw request body into the spool directory as it arrives, refusing bodies over the size limit
+    private PhotoPayload receive(InputStream body) throws IOException {
+        InputStream limited = new BoundedInputStream(body, maxBodyBytes);
+        if (!streamingUploads) {
+            return new ByteArrayPhotoPayload(limited.readAllBytes());
+        }
+        Path file = createSpoolFile();
+        try {
+            long size = Files.copy(limited, file, StandardCopyOption.REPLACE_EXISTING);
+            return new FilePhotoPayload(file, size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    // Copies a stored photo into the spool, so releasing the payload later leaves the original alone
+    private PhotoPayload readStoredPhoto(Path photo) throws IOException {
+        if (!streamingUploads) {
+            return new ByteArrayPhotoPayload(Files.readAllBytes(photo));
+        }
+        Path file = createSpoolFile();
+        try {
+            Files.copy(photo, file, StandardCopyOption.REPLACE_EXISTING);
+            return new FilePhotoPayload(file, Files.size(file));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private Path createSpoolFile() throws IOException {
+        Path directory = Paths.get(spoolDir);
+        Files.createDirectories(directory);
+        return Files.createTempFile(directory, "photo-", ".jpg");
+    }
+
+    @FunctionalInterface
+    private interface PayloadSource {
+        PhotoPayload read() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ContentHash {
+        String compute() throws IOException;
+    }
+
+    private static final class ReceivedPhoto {
+        final PhotoPayload payload;
+        final String contentHash;
+        final UploadTimeline.Start receiving;
+
+        ReceivedPhoto(PhotoPayload payload, String contentHash, UploadTimeline.Start receiving) {
+            this.payload = payload;
+            this.contentHash = contentHash;
+            this.receiving = receiving;
+        }
+    }
+
+    // Queue snapshots and job status changes as they happen, shared by every subscriber
+    public Flux<UploadEvent> streamEvents() {
+        return events().subscribe();
+    }
+
+    // Photos that failed for good, oldest first; empty when the dead-letter store is disabled
+    public List<Map<String, Object>> getDeadLetters() {
+        if (deadLetters == null) {
+            return List.of();
+        }
+        return deadLetters.list().stream().map(DeadLetterStore.Entry::toMap).toList();
+    }
+
+    /**
+     * Queues a dead-lettered photo again as a new job, with its original name, message and
+     * priority, and removes it from the store once it is queued. Empty when there is no such entry.
+     */
+    public Optional<UploadJob> replayDeadLetter(String id) {
+        requireWebhook();
+        if (deadLetters == null) {
+            return Optional.empty();
+        }
+        // Held for the whole replay, so two requests can't queue the same photo twice
+        synchronized (deadLetters) {
+            Optional<DeadLetterStore.Entry> found = deadLetters.find(id);
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            DeadLetterStore.Entry entry = found.get();
+            checkQueueCapacity(entry.getPriority(), entry.getCameraId(), entry.getSize());
+
+            UploadJob job = new UploadJob();
+            job.beginStage(UploadStage.RECEIVE);
+            try {
+                UploadTask task = new UploadTask(entry.getFilename(), readStoredPhoto(entry.getPhoto()), entry.getContent(),
+                        job, entry.getPriority(), entry.getCameraId());
+                enqueueTask(task, true);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read dead-lettered photo: " + e.getMessage(), e);
+            } catch (RuntimeException e) {
+                if (!job.getStatus().isFinished()) {
+                    job.fail(e);
+                }
+                throw e;
+            }
+            deadLetters.remove(id);
+            logger.info("Replayed dead letter {} as job {}", id, job.getId());
+            return Optional.of(job);
+        }
+    }
+
+    public boolean deleteDeadLetter(String id) {
+        return deadLetters != null && deadLetters.remove(id);
+    }
+
+    public Optional<UploadJob> getJob(String jobId) {
+        return jobRegistry().find(jobId);
+    }
+
+    /**
+     * The stages a job went through with their start times and durations, and the time spent in
+     * each stage over all attempts. Empty when the job is unknown or no longer retained.
+     */
+    public Optional<Map<String, Object>> getJobTimeline(String jobId) {
+        return getJob(jobId).map(job -> {
+            Map<String, Object> timeline = job.getTimeline().toMap();
+            timeline.put("status", job.getStatus().name());
+            return timeline;
+        });
+    }
+
+    // Created lazily because the retention settings are only injected after construction
+    private synchronized UploadJobRegistry jobRegistry() {
+        if (jobRegistry == null) {
+            jobRegistry = new UploadJobRegistry(Duration.ofMinutes(jobRetentionMinutes), Math.max(1, maxRetainedJobs));
+        }
+        return jobRegistry;
+    }
+
+    private synchronized UploadEventHub events() {
+        if (events == null) {
+            long heartbeatMillis = TimeUnit.SECONDS.toMillis(eventsHeartbeatSeconds);
+            events = new UploadEventHub(this::getQueueStatus, (int) (heartbeatMillis / Math.max(1, eventsIntervalMillis)));
+        }
+        return events;
+    }
+
+    // Makes a job addressable by ID and reports its status changes to the event stream from then on
+    private void track(UploadJob job) {
+        jobRegistry().register(job);
+        UploadEventHub hub = events();
+        job.setListener(hub::jobChanged);
+        hub.jobChanged(job);
+    }
+
+    // Created lazily for the same reason; photos can be submitted before the dispatcher starts
+    private synchronized AdmissionControl admission() {
+        if (admission == null) {
+            admission = new AdmissionControl(admissionMaxBytes, maxQueueSize, maxPhotosPerClient, System::nanoTime);
+        }
+        return admission;
+    }
+
+    // Created lazily for the same reason: the registry is injected after construction
+    private synchronized UploadMetrics metrics() {
+        if (metrics == null) {
+            metrics = new UploadMetrics(meterRegistry != null ? meterRegistry : new SimpleMeterRegistry());
+        }
+        return metrics;
+    }
+
+    // Due retries go to the front of their lane, ahead of photos that haven't been tried yet
+    private void promoteDueRetries() {
+        for (UploadTask task : retryQueue.pollDue()) {
+            task.getJob().beginStage(UploadStage.QUEUE);
+            uploadQueue.retry(task);
+            logger.info("Re-queued {} for retry", task.getFilename());
+        }
+    }
+
+    // Upper bound on a dispatcher sleep, so a waiting retry is picked up when it is due
+    private long parkNanos(long waitNanos) {
+        return Math.min(Math.min(waitNanos, IDLE_PARK_NANOS), retryQueue.nanosUntilNextDue());
+    }
+
+    private void signalDispatcher() {
+        Thread dispatcher = dispatcherThread;
+        if (dispatcher != null) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                promoteDueRetries();
+
+                // Wait for a queued task
+                UploadTask head = uploadQueue.peek();
+                if (head == null) {
+                    LockSupport.parkNanos(this, parkNanos(IDLE_PARK_NANOS));
+                    continue;
+                }
+
+                // Find a webhook with a free in-flight slot and a rate-limit permit
+                WebhookEndpoint endpoint = router.acquire(head.getRoutingKey());
+                if (endpoint == null) {
+                    // Rate limits, in-flight limits or open circuit breakers; the queue is held meanwhile
+                    head.getJob().getTimeline().throttled();
+                    long waitNanos = router.getWaitNanos();
+                    if (waitNanos != Long.MAX_VALUE) {
+                        logger.debug("No webhook can take a request, waiting {} ms...", TimeUnit.NANOSECONDS.toMillis(waitNanos));
+                    }
+                    LockSupport.parkNanos(this, parkNanos(waitNanos));
+                    continue;
+                }
+
+                // Shedding may have emptied the queue since the peek; the permit then goes back unused
+                List<UploadTask> batch = pollBatch();
+                if (batch.isEmpty()) {
+                    endpoint.releasePermit();
+                    continue;
+                }
+
+                // Process the upload
+                endpoint.requestStarted();
+                try {
+                    processUploadBatch(batch, endpoint);
+                } catch (RuntimeException e) {
+                    endpoint.requestFinished();
+                    batch.forEach(task -> handleUploadError(task, e, endpoint));
+                }
+
+            } catch (Exception e) {
+                logger.error("Error processing upload queue", e);
+            }
+        }
+    }
+
+    // Packs as many queued tasks as fit in one webhook message. The first task is always
+    // taken, even when it alone exceeds the payload limit, so oversized photos still get sent.
+    // Only photos of the first one's client join it: the webhook was chosen for that camera, and
+    // the other cameras' photos wait for their own turn in the queue.
+    private List<UploadTask> pollBatch() {
+        List<UploadTask> batch = new ArrayList<>();
+        long batchBytes = 0;
+
+        UploadTask next;
+        while (batch.size() < Math.max(1, batchMaxFiles) && (next = uploadQueue.peek()) != null) {
+            if (!batch.isEmpty() && !next.getClientId().equals(batch.get(0).getClientId())) {
+                break;
+            }
+            long taskBytes = next.getSize();
+            if (!batch.isEmpty() && batchBytes + taskBytes > batchMaxPayloadBytes) {
+                break;
+            }
+            // Shedding may have taken the peeked task meanwhile
+            UploadTask polled = uploadQueue.poll();
+            if (polled == null) {
+                break;
+            }
+            batch.add(polled);
+            batchBytes += polled.getSize();
+        }
+        return batch;
+    }
+
+    private static String buildBatchContent(List<UploadTask> batch) {
+        StringBuilder content = new StringBuilder();
+        for (UploadTask task : batch) {
+            String line = task.getContent();
+            int separator = content.length() > 0 ? 1 : 0;
+            if (content.length() + separator + line.length() > MAX_CONTENT_LENGTH) {
+                break;
+            }
+            if (separator > 0) {
+                content.append('\n');
+            }
+            content.append(line);
+        }
+        return content.toString();
+    }
+
+    private void processUploadBatch(List<UploadTask> batch, WebhookEndpoint endpoint) {
+        UploadMetrics metrics = metrics();
+        long dispatchedAt = System.nanoTime();
+        batch.forEach(task -> {
+            metrics.recordQueueWait(task, dispatchedAt);
+            task.incrementAttempts();
+            task.getJob().markDispatching(task.getAttempts());
+        });
+
+        if (batch.size() == 1) {
+            UploadTask task = batch.get(0);
+            logger.info("Processing upload task: {} (attempt {}/{})", 
+                       task.getFilename(), task.getAttempts(), maxRetryAttempts);
+        } else {
+            logger.info("Processing upload batch of {} photos", batch.size());
+        }
+        
         // Make the request
-        webClient.post()
-                .uri(webhookUrl)
+        DiscordRateLimiter rateLimiter = endpoint.getRateLimiter();
+        httpClient.webClient().post()
+                .uri(endpoint.getUrl())
                 .contentType(MediaType.MULTIPART_FORM_DATA)
-                .body(BodyInserters.fromMultipartData(builder.build()))
+                .body(BodyInserters.fromMultipartData(buildMultipartBody(batch)))
                 .retrieve()
-                .bodyToMono(String.class)
-                .retryWhen(Retry.backoff(2, Duration.ofSeconds(1))
-                        .filter(this::isRetryableError))
+                .toEntity(String.class)
+                .doOnNext(entity -> {
+                    rateLimiter.onResponse(entity.getHeaders());
+                    shareRateLimitState(endpoint);
+                })
+                .doOnError(WebClientResponseException.class, ex -> recordRateLimitState(endpoint, ex))
+                .doOnError(error -> {
+                    // 429s, server and connection errors take the webhook out of rotation for a while
+                    if (RetryPolicy.isRetryable(error)) {
+                        endpoint.recordFailure();
+                    }
+                })
+                .map(entity -> entity.getBody() != null ? entity.getBody() : "")
+                // No inline retries: every attempt goes back through the dispatcher and takes a rate-limit permit
+                .doOnSuccess(result -> {
+                    long latency = System.nanoTime() - dispatchedAt;
+                    endpoint.recordOutcome(dispatchedAt, latency, null);
+                    metrics.recordDispatch(latency, UploadMetrics.OUTCOME_SUCCESS);
+                })
+                .doOnError(error -> {
+                    long latency = System.nanoTime() - dispatchedAt;
+                    endpoint.recordOutcome(dispatchedAt, latency, error);
+                    metrics.recordDispatch(latency,
+                            RetryPolicy.isRateLimited(error) ? UploadMetrics.OUTCOME_RATE_LIMITED : UploadMetrics.OUTCOME_ERROR);
+                })
+                .doFinally(signal -> {
+                    endpoint.requestFinished();
+                    signalDispatcher();
+                })
                 .subscribe(
                     result -> {
-                        logger.info("Upload successful for {}", task.getFilename());
-                        task.getFuture().complete(result);
+                        endpoint.recordSuccess();
+                        batch.forEach(task -> {
+                            metrics.recordSent(task.getSize());
+                            metrics.recordLatency(task.getJob(), UploadMetrics.OUTCOME_SUCCESS);
+                            logger.info("Upload successful for {}", task.getFilename());
+                            task.getJob().complete(result);
+                            admission().recordDrained(task.getSize());
+                            finish(task);
+                        });
                     },
-                    error -> handleUploadError(task, error)
+                    error -> batch.forEach(task -> handleUploadError(task, error, endpoint))
                 );
     }
 
-    private boolean isRetryableError(Throwable throwable) {
-        if (throwable instanceof WebClientResponseException) {
-            WebClientResponseException ex = (WebClientResponseException) throwable;
-            HttpStatusCode statusCode = ex.getStatusCode();
-            
-            // Retry on rate limit, server errors, and timeout
-            return statusCode.value() == 429 || // TOO_MANY_REQUESTS
-                   statusCode.is5xxServerError() ||
-                   statusCode.value() == 408; // REQUEST_TIMEOUT
+    // A single photo keeps the plain "file" part for non-Discord webhooks
+    static MultiValueMap<String, HttpEntity<?>> buildMultipartBody(List<UploadTask> batch) {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            UploadTask task = batch.get(i);
+            String partName = batch.size() == 1 ? "file" : "files[" + i + "]";
+            builder.asyncPart(partName, task.getPayload().content(DefaultDataBufferFactory.sharedInstance), DataBuffer.class)
+                    .filename(task.getFilename())
+                    .contentType(MediaType.IMAGE_JPEG);
         }
-        
-        // Retry on network errors
-        return throwable instanceof IOException ||
-               throwable.getMessage().contains("Connection") ||
-               throwable.getMessage().contains("timeout");
+        builder.part("content", buildBatchContent(batch));
+        return builder.build();
     }
 
-    private void handleUploadError(UploadTask task, Throwable error) {
-        logger.warn("Upload failed for {} (attempt {}/{}): {}", 
-                   task.getFilename(), task.getAttempts(), maxRetryAttempts, error.getMessage());
-        
-        // Check if we should retry
-        if (task.getAttempts() < maxRetryAttempts && isRetryableError(error)) {
-            // Schedule retry
-            scheduler.schedule(() -> {
-                uploadQueue.offer(task); // Re-queue the task
-                logger.info("Re-queued {} for retry", task.getFilename());
-            }, retryDelaySeconds, TimeUnit.SECONDS);
+    private void recordRateLimitState(WebhookEndpoint endpoint, WebClientResponseException ex) {
+        DiscordRateLimiter rateLimiter = endpoint.getRateLimiter();
+        if (ex.getStatusCode().value() == 429) {
+            metrics().recordRateLimited();
+            rateLimiter.onRateLimited(ex.getHeaders(), ex.getResponseBodyAsString());
+            // The other instances hit the same limit, so they wait out the Retry-After too
+            try {
+                coordinator.block(endpoint.getBucketKey(), requestsPerMinute, rateLimiter.peekDelayNanos());
+            } catch (RuntimeException e) {
+                logger.warn("Failed to share the rate limit of webhook {}: {}", endpoint.getIndex(), e.getMessage());
+            }
+        } else {
+            rateLimiter.onResponse(ex.getHeaders());
+            shareRateLimitState(endpoint);
+        }
+    }
+
+    // The other instances follow the window Discord reported here rather than requests-per-minute
+    private void shareRateLimitState(WebhookEndpoint endpoint) {
+        DiscordRateLimiter rateLimiter = endpoint.getRateLimiter();
+        if (!coordinator.isShared() || !rateLimiter.isWindowReported()) {
+            return;
+        }
+        try {
+            coordinator.report(endpoint.getBucketKey(), requestsPerMinute, rateLimiter.getRemaining(),
+                    TimeUnit.MILLISECONDS.toNanos(rateLimiter.getResetAfterMillis()));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to share the rate limit of webhook {}: {}", endpoint.getIndex(), e.getMessage());
+        }
+    }
+
+    private void handleUploadError(UploadTask task, Throwable error, WebhookEndpoint endpoint) {
+        logger.warn("Upload failed for {} (attempt {}/{}): {}",
+                   task.getFilename(), task.getAttempts(), retryPolicy.getMaxAttempts(), error.getMessage());
+
+        if (retryPolicy.shouldRetry(task.getAttempts(), error)) {
+            // After a 429 the webhook's limiter knows how long it is blocked, retry_after from the body included
+            long retryAfterNanos = RetryPolicy.isRateLimited(error)
+                    ? endpoint.getRateLimiter().peekDelayNanos()
+                    : RetryPolicy.retryAfterNanos(error);
+            // Another healthy webhook can take the retry at once, since the failed one is now cooling down
+            long delayNanos = retryPolicy.delayNanos(task.getAttempts(), retryAfterNanos, router.hasHealthyAlternative(endpoint));
+
+            task.getJob().markRetrying(error.getMessage());
+            metrics().recordRetry();
+            retryQueue.schedule(task, delayNanos);
+            signalDispatcher();
+            logger.debug("Retrying {} in {} ms", task.getFilename(), TimeUnit.NANOSECONDS.toMillis(delayNanos));
         } else {
             // Max attempts reached or non-retryable error
-            String errorMessage = String.format("Failed to upload photo after %d attempts: %s", 
+            String errorMessage = String.format("Failed to upload photo after %d attempts: %s",
                                                task.getAttempts(), error.getMessage());
-            task.getFuture().completeExceptionally(new RuntimeException(errorMessage, error));
+            metrics().recordDropped(UploadMetrics.DROP_FAILED);
+            metrics().recordLatency(task.getJob(), UploadMetrics.OUTCOME_ERROR);
+            task.getJob().fail(new RuntimeException(errorMessage, error));
+            // The photo stays available until it is safely in the dead-letter store
+            if (deadLetters != null) {
+                deadLetters.add(task, errorMessage).whenComplete((done, e) -> finish(task));
+            } else {
+                finish(task);
+            }
         }
     }
 
     // Utility methods for monitoring
+
+    // One snapshot for the status endpoint and the event stream; lanes are read together so they add up
+    public Map<String, Object> getQueueStatus() {
+        Map<String, Integer> lanes = new LinkedHashMap<>();
+        int queueSize = 0;
+        for (Map.Entry<UploadPriority, Integer> lane : uploadQueue.laneSizes().entrySet()) {
+            lanes.put(lane.getKey().name().toLowerCase(), lane.getValue());
+            queueSize += lane.getValue();
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("queueSize", queueSize);
+        status.put("queueSizeByPriority", lanes);
+        status.put("queueSizeByClient", new TreeMap<>(uploadQueue.clientSizes()));
+        status.put("retrying", getRetryingCount());
+        status.put("instanceId", getInstanceId());
+        status.put("queueBytes", getQueueSizeBytes());
+        status.put("admittedBytes", getAdmittedBytes());
+        status.put("inFlight", getInFlightCount());
+        status.put("currentRequestCount", getCurrentRequestCount());
+        status.put("requestsPerMinute", getRequestsPerMinute());
+        status.put("isRateLimited", isRateLimited());
+        status.put("rateLimitRemaining", getRateLimitRemaining());
+        status.put("rateLimitResetAfterMs", getRateLimitResetAfterMillis());
+        status.put("rateLimitBucket", getRateLimitBucket());
+        status.put("duplicatesMerged", getDuplicatesMerged());
+        status.put("webhooks", getWebhookStatus());
+        return status;
+    }
     public int getQueueSize() {
         return uploadQueue.size();
     }
 
+    public int getQueueSize(UploadPriority priority) {
+        return uploadQueue.size(priority);
+    }
+
+    // Photos waiting out a retry delay, outside the queue
+    public int getRetryingCount() {
+        return retryQueue.size();
+    }
+
+    // Name of this instance among those sharing the webhooks; null before the dispatcher starts
+    public String getInstanceId() {
+        return coordinator != null ? coordinator.getInstanceId() : null;
+    }
+
+    public long getQueueSizeBytes() {
+        return uploadQueue.sizeBytes();
+    }
+
+    // Bytes reserved by every photo the service holds, queued or not
+    public long getAdmittedBytes() {
+        return admission().getBytes();
+    }
+
+    public long getAdmissionMaxBytes() {
+        return admission().getMaxBytes();
+    }
+
     public long getCurrentRequestCount() {
-        return requestCount.get();
+        return router.getEndpoints().stream().mapToLong(endpoint -> endpoint.getRateLimiter().getRequestsInWindow()).sum();
+    }
+
+    // Sum of the webhooks' current in-flight limits
+    public int getConcurrencyLimit() {
+        return router.getEndpoints().stream().mapToInt(WebhookEndpoint::getConcurrencyLimit).sum();
     }
 
+    // Webhooks whose circuit breaker currently stops or probes traffic
+    public int getOpenCircuitCount() {
+        return (int) router.getEndpoints().stream()
+                .filter(endpoint -> endpoint.getCircuitState() != CircuitBreaker.State.CLOSED)
+                .count();
+    }
+
+    public int getInFlightCount() {
+        return router.getEndpoints().stream().mapToInt(WebhookEndpoint::getInFlight).sum();
+    }
+
+    // Combined budget of all webhooks
     public int getRequestsPerMinute() {
-        return requestsPerMinute;
+        return requestsPerMinute * Math.max(1, router.getEndpoints().size());
     }
 
+    // Only when no webhook can take a request
     public boolean isRateLimited() {
-        return !canMakeRequest();
+        return !router.getEndpoints().isEmpty() && router.getEndpoints().stream()
+                .allMatch(endpoint -> endpoint.getRateLimiter().peekDelayNanos() > 0);
+    }
+
+    public int getRateLimitRemaining() {
+        int[] known = router.getEndpoints().stream()
+                .mapToInt(endpoint -> endpoint.getRateLimiter().getRemaining())
+                .filter(remaining -> remaining >= 0)
+                .toArray();
+        return known.length == 0 ? -1 : Arrays.stream(known).sum();
+    }
+
+    public long getRateLimitResetAfterMillis() {
+        return router.getEndpoints().stream()
+                .mapToLong(endpoint -> endpoint.getRateLimiter().getResetAfterMillis())
+                .filter(resetAfter -> resetAfter >= 0)
+                .min()
+                .orElse(-1);
+    }
+
+    // Bucket of the primary webhook
+    public String getRateLimitBucket() {
+        return router.getEndpoints().isEmpty() ? null : router.getEndpoints().get(0).getRateLimiter().getBucket();
+    }
+
+    // Per-webhook state for monitoring; URLs are left out because they contain the webhook token
+    public List<Map<String, Object>> getWebhookStatus() {
+        List<Map<String, Object>> status = new ArrayList<>();
+        for (WebhookEndpoint endpoint : router.getEndpoints()) {
+            Map<String, Object> webhook = new HashMap<>();
+            webhook.put("index", endpoint.getIndex());
+            webhook.put("bucket", endpoint.getRateLimiter().getBucket());
+            webhook.put("inFlight", endpoint.getInFlight());
+            webhook.put("rateLimitRemaining", endpoint.getRateLimiter().getRemaining());
+            webhook.put("isRateLimited", endpoint.getRateLimiter().peekDelayNanos() > 0);
+            webhook.put("healthy", endpoint.isHealthy());
+            webhook.put("circuit", endpoint.getCircuitState().label());
+            webhook.put("concurrencyLimit", endpoint.getConcurrencyLimit());
+            webhook.put("delivered", endpoint.getDelivered());
+            status.add(webhook);
+        }
+        return status;
+    }
+
+    public long getDuplicatesMerged() {
+        return duplicatesMerged.get();
     }
 }
@@ -46,6 +46,7 @@ function cameraStart() {
             cameraView.addEventListener('loadedmetadata', () => {
                 setTimeout(() => {
                     startMotionDetection();
+                    startFrameStream();
                 }, 1000);
             });
         })
@@ -181,15 +182,23 @@ function performCapture(context) {
         context.drawImage(cameraView, 0, 0);
     }
 
-    // Convert to high quality image
-    cameraOutput.src = cameraSensor.toDataURL("image/jpeg", 0.95); // High quality JPEG
-    cameraOutput.classList.add("taken");
+    // Encode straight to a JPEG blob; the upload sends these bytes as they are, without a base64 round trip
+    const capturedAt = new Date().toISOString();
+    cameraSensor.toBlob(function (blob) {
+        if (!blob) {
+            console.error('Could not encode the captured photo');
+            return;
+        }
+        const photoUrl = URL.createObjectURL(blob);
+        cameraOutput.src = photoUrl;
+        cameraOutput.classList.add("taken");
 
-    // Add photo to gallery
-    addPhotoToGallery(cameraOutput.src);
+        // Add photo to gallery
+        const photo = addPhotoToGallery(photoUrl, blob, capturedAt);
 
-    // Show the photo in a sweet alert
-    showPhoto(cameraOutput.src, true); // Auto-upload on close since this is a new photo
+        // Show the photo in a sweet alert
+        showPhoto(photo, true); // Auto-upload on close since this is a new photo
+    }, "image/jpeg", 0.95); // High quality JPEG
 }
 
 // Photo click handled by the double-tap listener above
@@ -563,6 +572,63 @@ function calculateMotionLevel(frame1, frame2) {
     return pixelCount > 0 ? totalDiff / pixelCount : 0;
 }
 
+// Opened as /?stream=<cameraId>, the page streams downscaled frames to the server, which uploads the ones with motion
+const frameStreamCameraId = new URLSearchParams(window.location.search).get('stream');
+const frameStreamWidth = 640;
+const frameStreamIntervalMs = 500;
+let frameSocket = null;
+
+function startFrameStream() {
+    if (!frameStreamCameraId || frameSocket) {
+        return;
+    }
+
+    const protocol = window.location.protocol === 'https:' ? 'wss:' : 'ws:';
+    frameSocket = new WebSocket(`${protocol}//${window.location.host}/ws/frames?cameraId=${encodeURIComponent(frameStreamCameraId)}`);
+    frameSocket.binaryType = 'arraybuffer';
+
+    const canvas = document.createElement('canvas');
+    const context = canvas.getContext('2d');
+
+    function sendFrame() {
+        if (!frameSocket || frameSocket.readyState !== WebSocket.OPEN) {
+            return;
+        }
+        // Skip a frame rather than queue them up on a slow connection
+        if (frameSocket.bufferedAmount > 0 || !cameraView.videoWidth) {
+            setTimeout(sendFrame, frameStreamIntervalMs);
+            return;
+        }
+        canvas.width = frameStreamWidth;
+        canvas.height = Math.round(frameStreamWidth * cameraView.videoHeight / cameraView.videoWidth);
+        context.drawImage(cameraView, 0, 0, canvas.width, canvas.height);
+        canvas.toBlob(blob => {
+            if (blob && frameSocket && frameSocket.readyState === WebSocket.OPEN) {
+                frameSocket.send(blob);
+            }
+            setTimeout(sendFrame, frameStreamIntervalMs);
+        }, 'image/jpeg', 0.8);
+    }
+
+    frameSocket.onopen = () => {
+        console.log(`Streaming frames as camera ${frameStreamCameraId}`);
+        sendFrame();
+    };
+    frameSocket.onmessage = event => {
+        const message = JSON.parse(event.data);
+        if (message.error) {
+            console.warn('Frame rejected:', message.error);
+        } else {
+            console.log('Motion detected, upload queued as job', message.jobId);
+        }
+    };
+    frameSocket.onclose = () => {
+        // Reconnect after a pause; the server starts a fresh motion reference
+        frameSocket = null;
+        setTimeout(startFrameStream, 5000);
+    };
+}
+
 // Update motion indicator
 function updateMotionIndicator(motionLevel) {
     // Use a lower threshold for the visual indicator for more sensitivity
@@ -591,14 +657,17 @@ window.addEventListener("load", function () {
     // Show storage info for debugging
     showStorageInfo();
 
+    // Follow uploads over the live event stream instead of waiting on each request
+    connectUploadEvents();
+
     // Then start the camera
     cameraStart();
 }, false);
 
 //show photo in a sweet alert
-function showPhoto(photoUrl, autoUploadOnClose = false) {
+function showPhoto(photo, autoUploadOnClose = false) {
     Swal.fire({
-        imageUrl: photoUrl,
+        imageUrl: photo.url,
         imageWidth: 'auto',
         imageHeight: 'auto',
         imageAlt: 'Foto tomada',
@@ -639,44 +708,62 @@ function showPhoto(photoUrl, autoUploadOnClose = false) {
     }).then((result) => {
         if (result.isConfirmed) {
             // User clicked "Subir" - always show success/error messages
-            uploadPhoto(photoUrl, true);
+            uploadPhoto(photo, true);
         } else if (result.isDenied) {
             // User clicked "Descargar" - download the photo
-            downloadPhoto(photoUrl, new Date().toISOString());
+            downloadPhoto(photo.url, photo.timestamp);
         } else if (autoUploadOnClose && (result.dismiss === Swal.DismissReason.close || result.dismiss === Swal.DismissReason.cancel || result.dismiss === Swal.DismissReason.backdrop)) {
             // Only upload silently if this was called after taking a new photo
-            uploadPhoto(photoUrl, false);
+            uploadPhoto(photo, false);
         }
         // If opened from cameraOutput click, don't upload on close/cancel
     });
 }
 
-// Add photo to gallery
-function addPhotoToGallery(photoDataUrl) {
+// Add photo to gallery; the blob stays in memory for uploads, localStorage gets a data URL copy
+function addPhotoToGallery(photoUrl, blob, timestamp) {
     const photoData = {
-        url: photoDataUrl,
-        timestamp: new Date().toISOString(),
+        url: photoUrl,
+        blob: blob,
+        timestamp: timestamp,
         id: Date.now() + Math.random() // Unique ID
     };
 
     // Add to beginning of display gallery
     photoGallery.unshift(photoData);
 
-    // Keep only the last 6 photos for display
+    // Keep only the last 6 photos for display, freeing the blobs of the ones dropped
     if (photoGallery.length > maxGallerySize) {
+        photoGallery.slice(maxGallerySize)
+            .filter(photo => photo.blob)
+            .forEach(photo => URL.revokeObjectURL(photo.url));
         photoGallery = photoGallery.slice(0, maxGallerySize);
     }
 
-    // Add to persistent gallery (only first 3)
-    persistentGallery.unshift(photoData);
+    // localStorage only holds strings, so the persisted copy is encoded off the upload path
+    blobToDataUrl(blob).then(dataUrl => {
+        // Add to persistent gallery (only first 3)
+        persistentGallery.unshift({ url: dataUrl, timestamp: photoData.timestamp, id: photoData.id });
 
-    // Keep only the last 3 photos for storage
-    if (persistentGallery.length > maxPersistentSize) {
-        persistentGallery = persistentGallery.slice(0, maxPersistentSize);
-    }
+        // Keep only the last 3 photos for storage
+        if (persistentGallery.length > maxPersistentSize) {
+            persistentGallery = persistentGallery.slice(0, maxPersistentSize);
+        }
 
-    // Save to localStorage
-    saveGalleryToStorage();
+        // Save to localStorage
+        saveGalleryToStorage();
+    }).catch(error => console.error('Error encoding photo for storage:', error));
+
+    return photoData;
+}
+
+function blobToDataUrl(blob) {
+    return new Promise((resolve, reject) => {
+        const reader = new FileReader();
+        reader.onload = () => resolve(reader.result);
+        reader.onerror = () => reject(reader.error);
+        reader.readAsDataURL(blob);
+    });
 }
 
 // Show photo gallery
@@ -720,12 +807,14 @@ function showPhotoGallery() {
         width: '95vw',
         heightAuto: false,
         showCloseButton: true,
-        showConfirmButton: false,
+        showConfirmButton: true,
+        confirmButtonText: 'Subir todas',
         background: 'rgba(0, 0, 0, 0.9)',
         color: '#ffffff',
         customClass: {
             popup: 'swal-gallery-popup',
-            title: 'swal-title-white'
+            title: 'swal-title-white',
+            confirmButton: 'swal-confirm-button'
         },
         didOpen: () => {
             // Add responsive layout for landscape
@@ -734,6 +823,10 @@ function showPhotoGallery() {
                 popup.classList.add('swal-gallery-landscape');
             }
         }
+    }).then((result) => {
+        if (result.isConfirmed) {
+            syncGallery(photoGallery);
+        }
     });
 }
 
@@ -794,7 +887,7 @@ function showGalleryPhoto(photoUrl, index) {
     }).then((result) => {
         if (result.isConfirmed) {
             // User clicked "Subir" - show success/error messages
-            uploadPhoto(photoUrl, true);
+            uploadPhoto(photo, true);
         } else if (result.isDenied) {
             // User clicked "Descargar" - download the photo
             downloadPhoto(photoUrl, photo.timestamp);
@@ -819,8 +912,150 @@ cameraOutput.addEventListener('click', function () {
     }
 });
 
-// Function to upload photo to webhook
-async function uploadPhoto(imageDataUrl, showMessages = true) {
+// Unique key identifying one photo upload across retries
+function createIdempotencyKey() {
+    if (window.crypto && typeof window.crypto.randomUUID === 'function') {
+        return window.crypto.randomUUID();
+    }
+    return `${Date.now()}-${Math.random().toString(36).slice(2)}`;
+}
+
+// Camera ID sent with uploads, so the server queues this browser's photos fairly against other cameras.
+// A streaming page uses its stream name; otherwise a random ID is kept for the browser.
+const CLIENT_ID_STORAGE_KEY = 'cameraClientId';
+let uploadClientId = null;
+
+function getUploadClientId() {
+    if (uploadClientId) {
+        return uploadClientId;
+    }
+    if (frameStreamCameraId) {
+        uploadClientId = frameStreamCameraId;
+    } else if (isLocalStorageAvailable()) {
+        uploadClientId = localStorage.getItem(CLIENT_ID_STORAGE_KEY);
+        if (!uploadClientId) {
+            uploadClientId = `browser-${createIdempotencyKey().slice(0, 8)}`;
+            localStorage.setItem(CLIENT_ID_STORAGE_KEY, uploadClientId);
+        }
+    } else {
+        uploadClientId = `browser-${createIdempotencyKey().slice(0, 8)}`;
+    }
+    return uploadClientId;
+}
+
+// Retries requests that failed at the network level; HTTP error responses are returned as they are
+async function fetchWithRetry(url, options, attempts = 3) {
+    for (let attempt = 1; ; attempt++) {
+        try {
+            return await fetch(url, options);
+        } catch (error) {
+            if (attempt >= attempts) {
+                throw error;
+            }
+            console.warn(`Upload attempt ${attempt} failed, retrying:`, error);
+            await new Promise(resolve => setTimeout(resolve, 1000 * attempt));
+        }
+    }
+}
+
+// Live job and queue updates pushed by the server over one shared EventSource
+const finishedJobStatuses = ['DELIVERED', 'FAILED'];
+const jobWaiters = new Map();
+const recentlyFinishedJobs = new Map();
+let uploadEvents = null;
+let latestQueueStatus = null;
+
+function connectUploadEvents() {
+    if (!window.EventSource || uploadEvents) {
+        return;
+    }
+    uploadEvents = new EventSource('/api/events');
+    uploadEvents.addEventListener('jobs', function (event) {
+        for (const job of JSON.parse(event.data)) {
+            if (finishedJobStatuses.includes(job.status)) {
+                // A job can finish before its upload response arrives, so keep the latest outcomes around
+                recentlyFinishedJobs.set(job.jobId, job);
+                if (recentlyFinishedJobs.size > 200) {
+                    recentlyFinishedJobs.delete(recentlyFinishedJobs.keys().next().value);
+                }
+            }
+            const waiter = jobWaiters.get(job.jobId);
+            if (waiter) {
+                waiter(job);
+            }
+        }
+    });
+    uploadEvents.addEventListener('queue', function (event) {
+        latestQueueStatus = JSON.parse(event.data);
+    });
+    // Updates sent while reconnecting are lost; read the state of every job still being waited on
+    uploadEvents.addEventListener('open', function () {
+        for (const [jobId, waiter] of jobWaiters) {
+            fetchJobStatus(jobId).then(job => job && waiter(job));
+        }
+    });
+}
+
+async function fetchJobStatus(jobId) {
+    try {
+        const response = await fetch(`/api/jobs/${jobId}`);
+        return response.ok ? await response.json() : null;
+    } catch (error) {
+        return null;
+    }
+}
+
+// Resolves with the job once it is delivered or failed; onUpdate sees the states in between
+function waitForJob(jobId, onUpdate) {
+    const finished = recentlyFinishedJobs.get(jobId);
+    if (finished) {
+        return Promise.resolve(finished);
+    }
+    connectUploadEvents();
+    return new Promise(resolve => {
+        const settle = job => {
+            if (onUpdate) {
+                onUpdate(job);
+            }
+            if (finishedJobStatuses.includes(job.status)) {
+                jobWaiters.delete(jobId);
+                resolve(job);
+            }
+        };
+        jobWaiters.set(jobId, settle);
+        // Without a live stream, fall back to asking once a second
+        if (!uploadEvents) {
+            const poll = async () => {
+                const job = await fetchJobStatus(jobId);
+                if (job) {
+                    settle(job);
+                }
+                if (jobWaiters.has(jobId)) {
+                    setTimeout(poll, 1000);
+                }
+            };
+            poll();
+        }
+    });
+}
+
+function describeJob(job) {
+    switch (job.status) {
+        case 'PROCESSING':
+            return 'Procesando la foto...';
+        case 'DISPATCHING':
+            return 'Enviando la foto...';
+        case 'RETRYING':
+            return `Reintentando (intento ${job.attempts})...`;
+        default:
+            return latestQueueStatus && latestQueueStatus.queueSize > 0
+                ? `En cola (${latestQueueStatus.queueSize} fotos pendientes)...`
+                : 'En cola...';
+    }
+}
+
+// Function to upload photo to webhook; takes a gallery photo with a blob or, once reloaded from storage, a data URL
+async function uploadPhoto(photo, showMessages = true) {
     try {
         // Show loading indicator only if messages are enabled
         if (showMessages) {
@@ -841,26 +1076,41 @@ async function uploadPhoto(imageDataUrl, showMessages = true) {
             });
         }
 
-        // Convert data URL to blob
-        const response = await fetch(imageDataUrl);
-        const blob = await response.blob();
+        // Photos restored from localStorage only have their data URL left
+        const blob = photo.blob || await (await fetch(photo.url)).blob();
 
-        // Create form data for the backend endpoint
-        const formData = new FormData();
-        const timestamp = new Date().toISOString().replace(/[:.]/g, '-');
-        const filename = `camera-photo-${timestamp}.jpg`;
+        // The server answers as soon as the photo is queued. Uploads the user is waiting on go in the
+        // interactive lane, ahead of background auto-uploads, and follow the job over the event stream.
+        const uploadUrl = showMessages
+            ? '/api/photos?async=true&priority=interactive'
+            : '/api/photos?async=true&priority=bulk';
 
-        formData.append('file', blob, filename);
+        // Every attempt of this upload carries the same key, so a retry after a dropped connection
+        // attaches to the photo the server already queued instead of posting it twice
+        const idempotencyKey = createIdempotencyKey();
 
-        // Send to our backend endpoint instead of directly to webhook
-        const uploadResponse = await fetch('/api/upload-photo', {
+        // The JPEG goes out as the raw request body; the server names it after the capture time
+        const uploadResponse = await fetchWithRetry(uploadUrl, {
             method: 'POST',
-            body: formData
+            headers: {
+                'Content-Type': 'image/jpeg',
+                'Idempotency-Key': idempotencyKey,
+                'X-Capture-Time': photo.timestamp,
+                'X-Camera-Id': getUploadClientId()
+            },
+            body: blob
         });
 
         const result = await uploadResponse.json();
 
         if (uploadResponse.ok) {
+            if (showMessages) {
+                const job = await waitForJob(result.jobId, update => Swal.update({ text: describeJob(update) }));
+                if (job.status === 'FAILED') {
+                    throw new Error(job.error || 'Upload failed');
+                }
+            }
+
             // Success - only show message if enabled
             if (showMessages) {
                 Swal.fire({
@@ -902,6 +1152,80 @@ async function uploadPhoto(imageDataUrl, showMessages = true) {
     }
 }
 
+// Uploads a set of gallery photos through the bulk endpoint, a few requests instead of one per photo
+const bulkUploadSize = 10;
+
+async function syncGallery(photos) {
+    Swal.fire({
+        title: 'Subiendo fotos...',
+        text: `Subiendo ${photos.length} fotos`,
+        allowOutsideClick: false,
+        showConfirmButton: false,
+        background: 'rgba(0, 0, 0, 0.9)',
+        color: '#ffffff',
+        customClass: {
+            popup: 'swal-responsive-popup',
+            title: 'swal-title-white'
+        },
+        didOpen: () => {
+            Swal.showLoading();
+        }
+    });
+
+    let queued = 0;
+    try {
+        for (let start = 0; start < photos.length; start += bulkUploadSize) {
+            const formData = new FormData();
+            for (const photo of photos.slice(start, start + bulkUploadSize)) {
+                const blob = photo.blob || await (await fetch(photo.url)).blob();
+                formData.append('files', blob, 'camera-photo.jpg');
+                formData.append('captureTime', photo.timestamp);
+            }
+
+            // One key per request; the server derives a key per photo from it, so a retry reuses the queued jobs
+            const response = await fetchWithRetry('/api/photos/bulk?priority=bulk', {
+                method: 'POST',
+                headers: { 'Idempotency-Key': createIdempotencyKey(), 'X-Camera-Id': getUploadClientId() },
+                body: formData
+            });
+            const result = await response.json();
+            if (!response.ok) {
+                throw new Error(result.error || `Upload API error: ${response.status}`);
+            }
+            queued += result.photos.filter(photo => photo.jobId).length;
+        }
+
+        Swal.fire({
+            title: '¡Fotos en cola!',
+            text: `${queued} de ${photos.length} fotos se están subiendo`,
+            icon: 'success',
+            timer: 2000,
+            showConfirmButton: false,
+            background: 'rgba(0, 0, 0, 0.9)',
+            color: '#ffffff',
+            customClass: {
+                popup: 'swal-responsive-popup',
+                title: 'swal-title-white'
+            }
+        });
+    } catch (error) {
+        console.error('Error uploading gallery:', error);
+        Swal.fire({
+            title: 'Error al subir',
+            text: `Se pusieron en cola ${queued} de ${photos.length} fotos. Verifica la configuración del servidor.`,
+            icon: 'error',
+            confirmButtonText: 'Entendido',
+            background: 'rgba(0, 0, 0, 0.9)',
+            color: '#ffffff',
+            customClass: {
+                popup: 'swal-responsive-popup',
+                title: 'swal-title-white',
+                confirmButton: 'swal-confirm-button'
+            }
+        });
+    }
+}
+
 // Function to download photo
 function downloadPhoto(imageDataUrl, timestamp) {
     try {
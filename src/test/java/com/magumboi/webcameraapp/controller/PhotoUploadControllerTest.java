@@ -1,5 +1,10 @@
 package com.magumboi.webcameraapp.controller;
 
+import com.magumboi.webcameraapp.service.ClientQuotaExceededException;
+import com.magumboi.webcameraapp.service.UploadEvent;
+import com.magumboi.webcameraapp.service.UploadJob;
+import com.magumboi.webcameraapp.service.UploadPriority;
+import com.magumboi.webcameraapp.service.UploadRejectedException;
 import com.magumboi.webcameraapp.service.WebhookService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,11 +13,30 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(PhotoUploadController.class)
@@ -24,10 +48,18 @@ class PhotoUploadControllerTest {
     @MockBean
     private WebhookService webhookService;
 
+    // The upload endpoint answers asynchronously, so the final response comes from the async dispatch
+    private ResultActions performUpload(RequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
     @Test
     void testUploadPhoto_Success() throws Exception {
         // Mock the webhook service
-        when(webhookService.uploadPhotoToWebhook(any()))
+        when(webhookService.uploadPhotoToWebhook(any(), any()))
                 .thenReturn(Mono.just("Upload successful"));
 
         // Create a mock image file
@@ -39,7 +71,7 @@ class PhotoUploadControllerTest {
         );
 
         // Perform the request
-        mockMvc.perform(multipart("/api/upload-photo")
+        performUpload(multipart("/api/upload-photo")
                         .file(file))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.message").value("Photo uploaded successfully"));
@@ -56,7 +88,7 @@ class PhotoUploadControllerTest {
         );
 
         // Perform the request
-        mockMvc.perform(multipart("/api/upload-photo")
+        performUpload(multipart("/api/upload-photo")
                         .file(file))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").value("No file provided"));
@@ -73,7 +105,7 @@ class PhotoUploadControllerTest {
         );
 
         // Perform the request
-        mockMvc.perform(multipart("/api/upload-photo")
+        performUpload(multipart("/api/upload-photo")
                         .file(file))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").value("File must be an image"));
@@ -82,7 +114,7 @@ class PhotoUploadControllerTest {
     @Test
     void testUploadPhoto_WebhookNotConfigured() throws Exception {
         // Mock the webhook service to throw webhook configuration error
-        when(webhookService.uploadPhotoToWebhook(any()))
+        when(webhookService.uploadPhotoToWebhook(any(), any()))
                 .thenReturn(Mono.error(new IllegalStateException("Webhook URL is not configured")));
 
         // Create a mock image file
@@ -94,7 +126,7 @@ class PhotoUploadControllerTest {
         );
 
         // Perform the request
-        mockMvc.perform(multipart("/api/upload-photo")
+        performUpload(multipart("/api/upload-photo")
                         .file(file))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").value("Webhook no configurado. La URL del webhook no está configurada en el servidor."));
@@ -103,7 +135,7 @@ class PhotoUploadControllerTest {
     @Test
     void testUploadPhoto_NoFileParameter() throws Exception {
         // Perform request without file parameter
-        mockMvc.perform(multipart("/api/upload-photo"))
+        performUpload(multipart("/api/upload-photo"))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").value("No file provided"));
     }
@@ -111,7 +143,7 @@ class PhotoUploadControllerTest {
     @Test
     void testUploadPhoto_LargeFile() throws Exception {
         // Mock successful upload
-        when(webhookService.uploadPhotoToWebhook(any()))
+        when(webhookService.uploadPhotoToWebhook(any(), any()))
                 .thenReturn(Mono.just("Upload successful"));
 
         // Create a large mock image file (simulate large photo)
@@ -124,7 +156,7 @@ class PhotoUploadControllerTest {
         );
 
         // Perform the request
-        mockMvc.perform(multipart("/api/upload-photo")
+        performUpload(multipart("/api/upload-photo")
                         .file(file))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.message").value("Photo uploaded successfully"));
@@ -133,7 +165,7 @@ class PhotoUploadControllerTest {
     @Test
     void testUploadPhoto_WebhookError() throws Exception {
         // Mock the webhook service to throw a network error
-        when(webhookService.uploadPhotoToWebhook(any()))
+        when(webhookService.uploadPhotoToWebhook(any(), any()))
                 .thenReturn(Mono.error(new RuntimeException("Network connection failed")));
 
         // Create a mock image file
@@ -145,9 +177,315 @@ class PhotoUploadControllerTest {
         );
 
         // Perform the request
-        mockMvc.perform(multipart("/api/upload-photo")
+        performUpload(multipart("/api/upload-photo")
                         .file(file))
                 .andExpect(status().isInternalServerError())
                 .andExpect(jsonPath("$.error").value("Failed to upload photo: Network connection failed"));
     }
+
+    @Test
+    void testUploadPhoto_AsyncReturnsJobId() throws Exception {
+        UploadJob job = mock(UploadJob.class);
+        when(job.getId()).thenReturn("job-123");
+        when(job.getStatus()).thenReturn(UploadJob.Status.QUEUED);
+        when(webhookService.submitPhoto(any(), any())).thenReturn(job);
+
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "test-image.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                "fake image content".getBytes()
+        );
+
+        performUpload(multipart("/api/upload-photo")
+                        .file(file)
+                        .param("async", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/jobs/job-123"))
+                .andExpect(jsonPath("$.jobId").value("job-123"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+
+        // Async mode must never wait on the upload itself
+        verify(webhookService, never()).uploadPhotoToWebhook(any(), any());
+    }
+
+    @Test
+    void testUploadPhoto_AsyncQueueFull() throws Exception {
+        when(webhookService.submitPhoto(any(), any()))
+                .thenThrow(new RuntimeException("Upload queue is full. Please try again later."));
+
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "test-image.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                "fake image content".getBytes()
+        );
+
+        performUpload(multipart("/api/upload-photo")
+                        .file(file)
+                        .param("async", "true"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.error").value("Failed to upload photo: Upload queue is full. Please try again later."));
+    }
+
+    @Test
+    void testUploadRawPhoto_CameraOverQuotaAnswers429WithRetryAfter() throws Exception {
+        when(webhookService.submitPhotoStream(any(), any()))
+                .thenThrow(new ClientQuotaExceededException("Too many photos queued for camera garage. Please try again later.", 4));
+
+        performUpload(post("/api/photos")
+                        .param("async", "true")
+                        .header("X-Camera-Id", "garage")
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .content("fake image content".getBytes()))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "4"))
+                .andExpect(jsonPath("$.error").value("Too many photos queued for camera garage. Please try again later."));
+    }
+
+    @Test
+    void testUploadPhoto_OverloadAnswers503WithRetryAfter() throws Exception {
+        when(webhookService.submitPhoto(any(), any()))
+                .thenThrow(new UploadRejectedException("Upload queue is full. Please try again later.", 12));
+
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "test-image.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                "fake image content".getBytes()
+        );
+
+        performUpload(multipart("/api/upload-photo")
+                        .file(file)
+                        .param("async", "true"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "12"))
+                .andExpect(jsonPath("$.error").value("Upload queue is full. Please try again later."));
+    }
+
+    @Test
+    void testUploadPhoto_PassesIdempotencyKeyAndPriority() throws Exception {
+        UploadJob job = mock(UploadJob.class);
+        when(job.getId()).thenReturn("job-123");
+        when(job.getStatus()).thenReturn(UploadJob.Status.DELIVERED);
+        when(webhookService.submitPhoto(any(), argThat(options -> "photo-42".equals(options.getIdempotencyKey())
+                && options.getPriority() == UploadPriority.INTERACTIVE)))
+                .thenReturn(job);
+
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "test-image.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                "fake image content".getBytes()
+        );
+
+        // A retried request gets the job of the first one
+        performUpload(multipart("/api/upload-photo")
+                        .file(file)
+                        .param("async", "true")
+                        .param("priority", "interactive")
+                        .header("Idempotency-Key", "photo-42"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.jobId").value("job-123"))
+                .andExpect(jsonPath("$.status").value("DELIVERED"));
+    }
+
+    @Test
+    void testUploadPhoto_InvalidPriority() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "test-image.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                "fake image content".getBytes()
+        );
+
+        performUpload(multipart("/api/upload-photo")
+                        .file(file)
+                        .param("priority", "urgent"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Priority must be one of interactive, normal or bulk"));
+
+        verify(webhookService, never()).uploadPhotoToWebhook(any(), any());
+    }
+
+    @Test
+    void testUploadRawPhoto_PassesHeaderMetadata() throws Exception {
+        UploadJob job = mock(UploadJob.class);
+        when(job.getId()).thenReturn("job-123");
+        when(job.getStatus()).thenReturn(UploadJob.Status.QUEUED);
+        when(webhookService.submitPhotoStream(any(), argThat(options -> "door".equals(options.getCameraId())
+                && Instant.parse("2024-01-01T10:00:00Z").equals(options.getCaptureTime())
+                && options.getPriority() == UploadPriority.BULK)))
+                .thenReturn(job);
+
+        performUpload(post("/api/photos")
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .content("fake image content".getBytes())
+                        .param("async", "true")
+                        .param("priority", "bulk")
+                        .header("X-Capture-Time", "2024-01-01T10:00:00Z")
+                        .header("X-Camera-Id", "door"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/jobs/job-123"))
+                .andExpect(jsonPath("$.jobId").value("job-123"));
+    }
+
+    @Test
+    void testUploadRawPhoto_WaitsForDelivery() throws Exception {
+        UploadJob job = mock(UploadJob.class);
+        when(job.getFuture()).thenReturn(CompletableFuture.completedFuture("Upload successful"));
+        when(webhookService.submitPhotoStream(any(), any())).thenReturn(job);
+
+        performUpload(post("/api/photos")
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .content("fake image content".getBytes()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Photo uploaded successfully"));
+    }
+
+    @Test
+    void testUploadRawPhoto_RejectsOtherContentTypes() throws Exception {
+        performUpload(post("/api/photos")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content("not an image".getBytes()))
+                .andExpect(status().isUnsupportedMediaType())
+                .andExpect(jsonPath("$.error").value("Body must be an image/jpeg photo"));
+
+        verify(webhookService, never()).submitPhotoStream(any(), any());
+    }
+
+    @Test
+    void testUploadRawPhoto_InvalidCaptureTime() throws Exception {
+        performUpload(post("/api/photos")
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .content("fake image content".getBytes())
+                        .header("X-Capture-Time", "yesterday"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("X-Capture-Time must be an ISO-8601 instant"));
+    }
+
+    @Test
+    void testUploadPhotos_ReturnsJobPerPhoto() throws Exception {
+        UploadJob queued = mock(UploadJob.class);
+        when(queued.getId()).thenReturn("job-1");
+        when(queued.getStatus()).thenReturn(UploadJob.Status.QUEUED);
+        UploadJob rejected = mock(UploadJob.class);
+        when(rejected.getStatus()).thenReturn(UploadJob.Status.FAILED);
+        when(rejected.getError()).thenReturn("File must be an image");
+        when(webhookService.submitPhotos(any(), argThat(options -> options.size() == 2
+                && "sync-1/0".equals(options.get(0).getIdempotencyKey())
+                && Instant.parse("2024-01-01T10:00:00Z").equals(options.get(0).getCaptureTime())
+                && options.get(1).getPriority() == UploadPriority.BULK)))
+                .thenReturn(List.of(queued, rejected));
+
+        mockMvc.perform(multipart("/api/photos/bulk")
+                        .file(new MockMultipartFile("files", "a.jpg", MediaType.IMAGE_JPEG_VALUE, "a".getBytes()))
+                        .file(new MockMultipartFile("files", "b.txt", MediaType.TEXT_PLAIN_VALUE, "b".getBytes()))
+                        .param("captureTime", "2024-01-01T10:00:00Z")
+                        .header("Idempotency-Key", "sync-1"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.photos[0].jobId").value("job-1"))
+                .andExpect(jsonPath("$.photos[0].statusUrl").value("/api/jobs/job-1"))
+                .andExpect(jsonPath("$.photos[1].status").value("FAILED"))
+                .andExpect(jsonPath("$.photos[1].error").value("File must be an image"));
+    }
+
+    @Test
+    void testUploadPhotos_NoFiles() throws Exception {
+        mockMvc.perform(multipart("/api/photos/bulk"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("No file provided"));
+    }
+
+    @Test
+    void testGetJobStatus_Found() throws Exception {
+        UploadJob job = mock(UploadJob.class);
+        when(job.getId()).thenReturn("job-123");
+        when(job.getStatus()).thenReturn(UploadJob.Status.RETRYING);
+        when(job.getAttempts()).thenReturn(1);
+        when(job.getCreatedAt()).thenReturn(Instant.parse("2024-01-01T10:00:00Z"));
+        when(job.getUpdatedAt()).thenReturn(Instant.parse("2024-01-01T10:00:05Z"));
+        when(job.getError()).thenReturn("503 Service Unavailable");
+        when(webhookService.getJob("job-123")).thenReturn(Optional.of(job));
+
+        mockMvc.perform(get("/api/jobs/job-123"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.jobId").value("job-123"))
+                .andExpect(jsonPath("$.status").value("RETRYING"))
+                .andExpect(jsonPath("$.attempts").value(1))
+                .andExpect(jsonPath("$.error").value("503 Service Unavailable"));
+    }
+
+    @Test
+    void testGetJobStatus_NotFound() throws Exception {
+        when(webhookService.getJob("missing")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/jobs/missing"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Job not found"));
+    }
+
+    @Test
+    void testGetJobTimeline_Found() throws Exception {
+        when(webhookService.getJobTimeline("job-123")).thenReturn(Optional.of(Map.of(
+                "jobId", "job-123",
+                "stages", List.of(Map.of("stage", "queue", "attempt", 0, "durationMs", 40)),
+                "breakdownMs", Map.of("queue", 40),
+                "totalMs", 40)));
+
+        mockMvc.perform(get("/api/jobs/job-123/timeline"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stages[0].stage").value("queue"))
+                .andExpect(jsonPath("$.breakdownMs.queue").value(40))
+                .andExpect(jsonPath("$.totalMs").value(40));
+    }
+
+    @Test
+    void testGetJobTimeline_NotFound() throws Exception {
+        when(webhookService.getJobTimeline("missing")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/jobs/missing/timeline"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Job not found"));
+    }
+
+    @Test
+    void testStreamEvents_SendsServerSentEvents() throws Exception {
+        when(webhookService.streamEvents()).thenReturn(Flux.just(
+                new UploadEvent(UploadEvent.QUEUE, "{\"queueSize\":2}"),
+                new UploadEvent(UploadEvent.JOBS, "[{\"jobId\":\"job-123\",\"status\":\"DELIVERED\"}]")));
+
+        performUpload(get("/api/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(containsString("event:queue\ndata:{\"queueSize\":2}\n\n")))
+                .andExpect(content().string(containsString("event:jobs\ndata:[{\"jobId\":\"job-123\",\"status\":\"DELIVERED\"}]")));
+    }
+
+    @Test
+    void testReplayDeadLetter_AcceptsNewJob() throws Exception {
+        UploadJob job = mock(UploadJob.class);
+        when(job.getId()).thenReturn("job-2");
+        when(job.getStatus()).thenReturn(UploadJob.Status.QUEUED);
+        when(webhookService.replayDeadLetter("job-1")).thenReturn(Optional.of(job));
+        when(webhookService.replayDeadLetter("missing")).thenReturn(Optional.empty());
+
+        mockMvc.perform(post("/api/dead-letters/job-1/replay"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.jobId").value("job-2"))
+                .andExpect(jsonPath("$.statusUrl").value("/api/jobs/job-2"));
+        mockMvc.perform(post("/api/dead-letters/missing/replay"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Dead letter not found"));
+    }
+
+    @Test
+    void testDeleteDeadLetter() throws Exception {
+        when(webhookService.deleteDeadLetter("job-1")).thenReturn(true);
+
+        mockMvc.perform(delete("/api/dead-letters/job-1"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/dead-letters/missing"))
+                .andExpect(status().isNotFound());
+    }
 }
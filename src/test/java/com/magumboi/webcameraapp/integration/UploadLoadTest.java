@@ -0,0 +1,262 @@
+package com.magumboi.webcameraapp.integration;
+
+import com.magumboi.webcameraapp.service.WebhookService;
+import com.magumboi.webcameraapp.support.FakeWebhookServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Release gate: many simulated cameras upload through /api/upload-photo while the local fake
+ * webhook answers slowly and injects 429s, 5xx errors and dropped connections. Reports sustained
+ * throughput, p50/p99 end-to-end latency, queue growth and heap use, and fails when they miss
+ * the configured limits. Runs offline with fixed seeds; excluded from the default build, run it
+ * with {@code mvn -Pload-test test}. Every setting can be overridden with a -Dload.* property.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UploadLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadLoadTest.class);
+
+    private static final int CAMERAS = Integer.getInteger("load.cameras", 16);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration-seconds", 20);
+    private static final int CAPTURE_INTERVAL_MILLIS = Integer.getInteger("load.capture-interval-ms", 200);
+    private static final int PHOTO_BYTES = Integer.getInteger("load.photo-bytes", 64 * 1024);
+
+    private static final double MIN_THROUGHPUT = Double.parseDouble(System.getProperty("load.min-throughput", "20"));
+    private static final long MAX_P99_MILLIS = Long.getLong("load.max-p99-ms", 10_000);
+    private static final double MIN_SUCCESS_RATIO = Double.parseDouble(System.getProperty("load.min-success-ratio", "0.99"));
+    private static final long MAX_HEAP_GROWTH_BYTES = Long.getLong("load.max-heap-growth-mb", 64) * 1024 * 1024;
+
+    private static FakeWebhookServer webhook;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private WebhookService webhookService;
+
+    @DynamicPropertySource
+    static void webhookProperties(DynamicPropertyRegistry registry) throws IOException {
+        webhook = new FakeWebhookServer();
+        webhook.setLatencyMillis(Long.getLong("load.webhook-latency-ms", 40));
+        webhook.setLatencyJitterMillis(Long.getLong("load.webhook-jitter-ms", 60));
+        webhook.setRateLimitRatio(Double.parseDouble(System.getProperty("load.rate-limit-ratio", "0.03")), 0.25);
+        webhook.setServerErrorRatio(Double.parseDouble(System.getProperty("load.server-error-ratio", "0.02")));
+        webhook.setDropRatio(Double.parseDouble(System.getProperty("load.drop-ratio", "0.01")));
+
+        registry.add("webhook.url", webhook::getUrl);
+        registry.add("webhook.rate-limit.requests-per-minute", () -> 6000);
+        registry.add("webhook.rate-limit.max-queue-size", () -> 1000);
+        registry.add("webhook.dispatch.max-in-flight", () -> 4);
+        registry.add("webhook.retry.max-attempts", () -> 5);
+        registry.add("webhook.retry.delay-seconds", () -> 1);
+        registry.add("logging.level.web", () -> "INFO");
+    }
+
+    @AfterAll
+    static void stopWebhook() {
+        webhook.close();
+    }
+
+    @Test
+    void testSustainedLoad_WithInjectedFaults() throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        // Sample queue depth and heap while the cameras run
+        AtomicInteger maxQueue = new AtomicInteger();
+        AtomicLong peakHeap = new AtomicLong(heapBefore);
+        List<Integer> queueSamples = new ArrayList<>();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> {
+            int queued = webhookService.getQueueSize();
+            maxQueue.accumulateAndGet(queued, Math::max);
+            peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            synchronized (queueSamples) {
+                queueSamples.add(queued);
+            }
+        }, 0, 100, TimeUnit.MILLISECONDS);
+
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger delivered = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+
+        ExecutorService cameras = Executors.newFixedThreadPool(CAMERAS);
+        List<Future<?>> runs = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int camera = 0; camera < CAMERAS; camera++) {
+            int cameraId = camera;
+            runs.add(cameras.submit(() -> runCamera(cameraId, deadline, latencies, delivered, failed)));
+        }
+        for (Future<?> run : runs) {
+            run.get(DURATION_SECONDS + 300L, TimeUnit.SECONDS);
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        cameras.shutdown();
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.SECONDS);
+
+        System.gc();
+        long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        sorted.sort(null);
+        int total = delivered.get() + failed.get();
+        double throughput = delivered.get() / seconds;
+        long p50 = percentile(sorted, 0.50);
+        long p99 = percentile(sorted, 0.99);
+
+        String report = String.join(System.lineSeparator(),
+                "Upload load test",
+                String.format(Locale.ROOT, "cameras=%d duration=%ds capture-interval=%dms photo=%d bytes",
+                        CAMERAS, DURATION_SECONDS, CAPTURE_INTERVAL_MILLIS, PHOTO_BYTES),
+                String.format(Locale.ROOT, "uploads: %d delivered, %d failed (%.2f%% success)",
+                        delivered.get(), failed.get(), total == 0 ? 0 : 100.0 * delivered.get() / total),
+                String.format(Locale.ROOT, "throughput: %.1f uploads/s sustained over %.1f s", throughput, seconds),
+                String.format(Locale.ROOT, "latency: p50=%d ms p99=%d ms max=%d ms",
+                        p50, p99, sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1)),
+                String.format(Locale.ROOT, "queue: max=%d, samples=%s", maxQueue.get(), summarize(queueSamples)),
+                String.format(Locale.ROOT, "heap: before=%d MB peak=%d MB after=%d MB",
+                        heapBefore >> 20, peakHeap.get() >> 20, heapAfter >> 20),
+                String.format(Locale.ROOT, "webhook: %d requests, %d files, %d rate limited, %d server errors, %d dropped",
+                        webhook.getRequestCount(), webhook.getFileCount(), webhook.getRateLimitedCount(),
+                        webhook.getServerErrorCount(), webhook.getDroppedCount()));
+        logger.info("{}{}", System.lineSeparator(), report);
+        writeReport(report);
+
+        assertThat(total).isPositive();
+        assertThat(webhook.getRateLimitedCount() + webhook.getServerErrorCount() + webhook.getDroppedCount())
+                .as("faults injected").isPositive();
+        assertThat((double) delivered.get() / total).as("success ratio").isGreaterThanOrEqualTo(MIN_SUCCESS_RATIO);
+        assertThat(throughput).as("uploads/s").isGreaterThanOrEqualTo(MIN_THROUGHPUT);
+        assertThat(p99).as("p99 latency (ms)").isLessThanOrEqualTo(MAX_P99_MILLIS);
+        assertThat(webhookService.getQueueSize()).as("queue drained").isZero();
+        assertThat(heapAfter - heapBefore).as("retained heap (bytes)").isLessThanOrEqualTo(MAX_HEAP_GROWTH_BYTES);
+    }
+
+    // One camera: capture, wait for the synchronous upload to be delivered, then wait for the next capture slot
+    private void runCamera(int cameraId, long deadline, ConcurrentLinkedQueue<Long> latencies,
+                           AtomicInteger delivered, AtomicInteger failed) {
+        Random random = new Random(cameraId);
+        String url = "http://localhost:" + port + "/api/upload-photo";
+        int frame = 0;
+        while (System.nanoTime() < deadline) {
+            long captureAt = System.nanoTime();
+
+            // Unique bytes per frame, so uploads are never merged as repeats of each other
+            byte[] photo = new byte[PHOTO_BYTES];
+            random.nextBytes(photo);
+            String filename = "camera-" + cameraId + "-" + frame++ + ".jpg";
+
+            ResponseEntity<String> response = restTemplate.postForEntity(url, multipart(photo, filename), String.class);
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - captureAt));
+            if (response.getStatusCode().is2xxSuccessful()) {
+                delivered.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+                logger.warn("Camera {} upload failed: {} {}", cameraId, response.getStatusCode(), response.getBody());
+            }
+
+            long next = captureAt + TimeUnit.MILLISECONDS.toNanos(CAPTURE_INTERVAL_MILLIS);
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static HttpEntity<MultiValueMap<String, Object>> multipart(byte[] photo, String filename) {
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentType(MediaType.IMAGE_JPEG);
+        ByteArrayResource resource = new ByteArrayResource(photo) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", new HttpEntity<>(resource, partHeaders));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return new HttpEntity<>(body, headers);
+    }
+
+    private static long percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    // Queue depth at each tenth of the run, to show whether the backlog grows or holds steady
+    private static String summarize(List<Integer> samples) {
+        synchronized (samples) {
+            List<Integer> points = new ArrayList<>();
+            for (int i = 1; i <= 10 && !samples.isEmpty(); i++) {
+                points.add(samples.get(Math.min(samples.size() - 1, i * samples.size() / 10)));
+            }
+            return points.toString();
+        }
+    }
+
+    private static void writeReport(String report) {
+        try {
+            Path directory = Paths.get("target", "load-test");
+            Files.createDirectories(directory);
+            Files.writeString(directory.resolve("report.txt"), report + System.lineSeparator());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.magumboi.webcameraapp.integration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
@@ -15,11 +17,23 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.test.context.TestPropertySource;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability // Spring Boot tests leave metrics export off by default
 @TestPropertySource(properties = {
-    "webhook.url=http://localhost:9999/webhook" // Mock webhook URL
+    "webhook.url=http://localhost:9999/webhook", // Mock webhook URL
+    // Fail fast against the unreachable webhook and keep dead letters out of the working tree
+    "webhook.retry.max-attempts=1",
+    "webhook.retry.delay-seconds=0",
+    "webhook.dead-letter.enabled=false"
 })
 class WebControllerIntegrationTest {
 
@@ -93,6 +107,51 @@ class WebControllerIntegrationTest {
         assertThat(response.getStatusCode().is5xxServerError()).isTrue();
         assertThat(response.getBody()).contains("Failed to upload photo");
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUploadPhotoEndpoint_ReceiveStageCoversMultipartParsing() throws Exception {
+        String boundary = "timing-boundary";
+        byte[] head = ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"slow.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("slow photo\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        HttpURLConnection connection = (HttpURLConnection) URI.create(
+                "http://localhost:" + port + "/api/upload-photo?async=true").toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+        connection.setChunkedStreamingMode(0);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(head);
+            out.flush();
+            // The photo arrives slowly; Spring has to read all of it before the controller runs
+            Thread.sleep(300);
+            out.write(tail);
+        }
+        assertThat(connection.getResponseCode()).isEqualTo(HttpStatus.ACCEPTED.value());
+        String jobId;
+        try (InputStream in = connection.getInputStream()) {
+            jobId = (String) new ObjectMapper().readValue(in, Map.class).get("jobId");
+        }
+
+        ResponseEntity<Map> timeline = restTemplate.getForEntity(
+            "http://localhost:" + port + "/api/jobs/" + jobId + "/timeline", Map.class);
+        Map<String, Object> breakdown = (Map<String, Object>) timeline.getBody().get("breakdownMs");
+        assertThat(((Number) breakdown.get("receive")).longValue()).isGreaterThanOrEqualTo(300);
+    }
+
+    @Test
+    void testPrometheusEndpoint_ExposesUploadMetrics() {
+        ResponseEntity<String> response = restTemplate.getForEntity(
+            "http://localhost:" + port + "/actuator/prometheus", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).contains("webhook_queue_size");
+        assertThat(response.getBody()).contains("webhook_queue_bytes");
+        assertThat(response.getBody()).contains("webhook_requests_in_flight");
+        assertThat(response.getBody()).contains("webhook_upload_queue_wait_seconds");
+    }
 }
 
 // Test class for webhook not configured scenario
@@ -0,0 +1,142 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+
+    private UploadTask newTask(int size, UploadPriority priority) {
+        return new UploadTask("photo.jpg", new ByteArrayPhotoPayload(new byte[size]), "photo", new UploadJob(), priority);
+    }
+
+    @Test
+    void testByteBudget_RefusesUntilReleased() {
+        AdmissionControl admission = new AdmissionControl(1000, 0, clock::get);
+        UploadTask first = newTask(600, UploadPriority.NORMAL);
+        UploadTask second = newTask(600, UploadPriority.NORMAL);
+
+        assertThat(admission.tryAdmit(first)).isTrue();
+        assertThat(admission.tryAdmit(second)).isFalse();
+        assertThat(admission.hasRoom(UploadPriority.NORMAL, 600)).isFalse();
+
+        admission.release(first);
+        assertThat(admission.tryAdmit(second)).isTrue();
+        assertThat(admission.getBytes()).isEqualTo(600);
+    }
+
+    @Test
+    void testOversizedPhoto_IsAdmittedOnlyWhenNothingElseIsHeld() {
+        AdmissionControl admission = new AdmissionControl(1000, 0, clock::get);
+        UploadTask small = newTask(10, UploadPriority.NORMAL);
+        UploadTask huge = newTask(5000, UploadPriority.NORMAL);
+
+        assertThat(admission.tryAdmit(small)).isTrue();
+        assertThat(admission.tryAdmit(huge)).isFalse();
+
+        admission.release(small);
+        assertThat(admission.tryAdmit(huge)).isTrue();
+    }
+
+    @Test
+    void testPhotoLimit_LeavesInteractiveHeadroom() {
+        AdmissionControl admission = new AdmissionControl(0, 2, clock::get);
+
+        assertThat(admission.tryAdmit(newTask(10, UploadPriority.BULK))).isTrue();
+        assertThat(admission.tryAdmit(newTask(10, UploadPriority.NORMAL))).isTrue();
+        assertThat(admission.tryAdmit(newTask(10, UploadPriority.BULK))).isFalse();
+        assertThat(admission.tryAdmit(newTask(10, UploadPriority.INTERACTIVE))).isTrue();
+        assertThat(admission.getPhotos()).isEqualTo(2);
+    }
+
+    @Test
+    void testRelease_IgnoresTasksReleasedTwiceOrNeverAdmitted() {
+        AdmissionControl admission = new AdmissionControl(1000, 10, clock::get);
+        UploadTask task = newTask(100, UploadPriority.NORMAL);
+
+        admission.release(task);
+        admission.tryAdmit(task);
+        admission.release(task);
+        admission.release(task);
+
+        assertThat(admission.getBytes()).isZero();
+        assertThat(admission.getPhotos()).isZero();
+    }
+
+    @Test
+    void testRetryAfter_FollowsMeasuredDrainRate() {
+        AdmissionControl admission = new AdmissionControl(1000, 0, clock::get);
+        admission.tryAdmit(newTask(1000, UploadPriority.NORMAL));
+
+        // 100 bytes per second over the last ten seconds
+        for (int i = 0; i < 10; i++) {
+            clock.set(TimeUnit.SECONDS.toNanos(i));
+            admission.recordDrained(100);
+        }
+
+        assertThat(admission.retryAfterSeconds(500, UploadPriority.NORMAL, 0.5)).isEqualTo(5);
+    }
+
+    @Test
+    void testRetryAfter_WorksWithNegativeClock() {
+        // nanoTime may be negative; the drain rate is the same as from zero
+        clock.set(-TimeUnit.MINUTES.toNanos(5) - 123);
+        AdmissionControl admission = new AdmissionControl(1000, 0, clock::get);
+        admission.tryAdmit(newTask(1000, UploadPriority.NORMAL));
+
+        long start = clock.get();
+        for (int i = 0; i < 10; i++) {
+            clock.set(start + TimeUnit.SECONDS.toNanos(i));
+            admission.recordDrained(100);
+        }
+
+        assertThat(admission.retryAfterSeconds(500, UploadPriority.NORMAL, 0.5)).isEqualTo(5);
+    }
+
+    @Test
+    void testRetryAfter_UsesFallbackRateAndIsClamped() {
+        AdmissionControl admission = new AdmissionControl(0, 4, clock::get);
+        for (int i = 0; i < 4; i++) {
+            admission.tryAdmit(newTask(100, UploadPriority.BULK));
+        }
+
+        // Nothing delivered yet: half a photo per second means two seconds for one slot
+        assertThat(admission.retryAfterSeconds(100, UploadPriority.BULK, 0.5)).isEqualTo(2);
+        assertThat(admission.retryAfterSeconds(100, UploadPriority.BULK, 0.0001)).isEqualTo(300);
+        assertThat(admission.retryAfterSeconds(100, UploadPriority.INTERACTIVE, 0.5)).isEqualTo(1);
+    }
+
+    @Test
+    void testClientQuota_RefusesOnlyTheClientAtItsQuota() {
+        AdmissionControl admission = new AdmissionControl(0, 10, 2, clock::get);
+        UploadTask first = cameraTask("garage", UploadPriority.BULK);
+
+        assertThat(admission.tryAdmit(first)).isTrue();
+        assertThat(admission.tryAdmit(cameraTask("garage", UploadPriority.INTERACTIVE))).isTrue();
+        assertThat(admission.tryAdmit(cameraTask("garage", UploadPriority.INTERACTIVE))).isFalse();
+        assertThat(admission.isOverClientQuota("garage")).isTrue();
+        assertThat(admission.tryAdmit(cameraTask("porch", UploadPriority.NORMAL))).isTrue();
+
+        admission.release(first);
+        assertThat(admission.isOverClientQuota("garage")).isFalse();
+    }
+
+    @Test
+    void testClientRetryAfter_SharesDrainRateBetweenClients() {
+        AdmissionControl admission = new AdmissionControl(0, 0, 1, clock::get);
+        admission.tryAdmit(cameraTask("garage", UploadPriority.NORMAL));
+        admission.tryAdmit(cameraTask("porch", UploadPriority.NORMAL));
+
+        // Two clients at one photo per second: each gets a photo through every two seconds
+        assertThat(admission.clientRetryAfterSeconds(1.0)).isEqualTo(2);
+    }
+
+    private UploadTask cameraTask(String cameraId, UploadPriority priority) {
+        return new UploadTask("photo.jpg", new ByteArrayPhotoPayload(new byte[10]), "photo", new UploadJob(), priority, cameraId);
+    }
+}
@@ -0,0 +1,85 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final AtomicLong clock = new AtomicLong(0);
+    private final CircuitBreaker breaker = new CircuitBreaker(3, OPEN_NANOS, TimeUnit.SECONDS.toNanos(12), clock::get);
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.onRequestStarted();
+            breaker.onFailure();
+            breaker.onRequestFinished();
+        }
+    }
+
+    @Test
+    void testConsecutiveFailures_OpenBreaker() {
+        fail(2);
+        breaker.onSuccess();
+        fail(2);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail(1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.waitNanos()).isEqualTo(OPEN_NANOS);
+    }
+
+    @Test
+    void testHalfOpen_SendsOneProbeThatClosesBreaker() {
+        fail(3);
+        clock.addAndGet(OPEN_NANOS);
+        assertThat(breaker.waitNanos()).isZero();
+
+        breaker.onRequestStarted();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.waitNanos()).isEqualTo(Long.MAX_VALUE);
+
+        breaker.onSuccess();
+        breaker.onRequestFinished();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.waitNanos()).isZero();
+    }
+
+    @Test
+    void testFailedProbe_DoublesOpenTimeUpToMaximum() {
+        fail(3);
+        clock.addAndGet(OPEN_NANOS);
+        fail(1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.waitNanos()).isEqualTo(2 * OPEN_NANOS);
+
+        clock.addAndGet(2 * OPEN_NANOS);
+        fail(1);
+        assertThat(breaker.waitNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(12));
+    }
+
+    @Test
+    void testProbeWithoutOutcome_FreesSlot() {
+        fail(3);
+        clock.addAndGet(OPEN_NANOS);
+        breaker.onRequestStarted();
+        breaker.onRequestFinished();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.waitNanos()).isZero();
+    }
+
+    @Test
+    void testDisabledBreaker_NeverOpens() {
+        CircuitBreaker disabled = CircuitBreaker.disabled();
+        for (int i = 0; i < 100; i++) {
+            disabled.onFailure();
+        }
+        assertThat(disabled.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+}
@@ -0,0 +1,67 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitTest {
+
+    private static final long LATENCY = 100_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(0);
+
+    @Test
+    void testSuccesses_GrowLimitOnlyWhileItIsUsed() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(2, 1, 4, clock::get);
+
+        // Requests that leave slots unused say nothing about a higher limit
+        for (int i = 0; i < 20; i++) {
+            limit.onSuccess(clock.get(), LATENCY, 1);
+        }
+        assertThat(limit.getLimit()).isEqualTo(2);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSuccess(clock.get(), LATENCY, limit.getLimit());
+        }
+        assertThat(limit.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void testOverload_HalvesOncePerRoundTrip() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(16, 1, 16, clock::get);
+        long sentAt = clock.addAndGet(10);
+        clock.addAndGet(LATENCY);
+
+        // Requests sent together fail together; only the first one counts
+        limit.onOverload(sentAt);
+        limit.onOverload(sentAt);
+        limit.onOverload(sentAt);
+        assertThat(limit.getLimit()).isEqualTo(8);
+
+        // A request sent after the cut reflects the new limit
+        limit.onOverload(clock.addAndGet(10));
+        assertThat(limit.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void testSlowResponses_TrimLimitButNotBelowMinimum() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(10, 5, 10, clock::get);
+        limit.onSuccess(clock.get(), LATENCY, 1);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSuccess(clock.addAndGet(10), LATENCY * 5, 1);
+        }
+        assertThat(limit.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void testFixedLimit_NeverMoves() {
+        ConcurrencyLimit limit = ConcurrencyLimit.fixed(3);
+        limit.onOverload(System.nanoTime());
+        limit.onSuccess(System.nanoTime(), LATENCY, 3);
+
+        assertThat(limit.getLimit()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,95 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeadLetterStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private DeadLetterStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private UploadTask newTask(String name) {
+        return new UploadTask(name + ".jpg", new ByteArrayPhotoPayload(name.getBytes()), "content " + name,
+                new UploadJob(), UploadPriority.BULK, "garage");
+    }
+
+    @Test
+    void testAdd_KeepsPhotoAndMetadata() throws Exception {
+        store = new DeadLetterStore(directory, 10);
+        UploadTask task = newTask("front-door");
+
+        store.add(task, "500 Internal Server Error").get(5, TimeUnit.SECONDS);
+
+        DeadLetterStore.Entry entry = store.find(task.getJob().getId()).orElseThrow();
+        assertThat(entry.getFilename()).isEqualTo("front-door.jpg");
+        assertThat(entry.getContent()).isEqualTo("content front-door");
+        assertThat(entry.getPriority()).isEqualTo(UploadPriority.BULK);
+        assertThat(entry.getCameraId()).isEqualTo("garage");
+        assertThat(Files.readAllBytes(entry.getPhoto())).isEqualTo("front-door".getBytes());
+        assertThat(entry.toMap()).containsEntry("error", "500 Internal Server Error").containsEntry("size", 10L);
+    }
+
+    @Test
+    void testAdd_DropsOldestBeyondMaxEntries() throws Exception {
+        store = new DeadLetterStore(directory, 2);
+        UploadTask first = newTask("first");
+        store.add(first, "error").get(5, TimeUnit.SECONDS);
+        Thread.sleep(5);
+        store.add(newTask("second"), "error").get(5, TimeUnit.SECONDS);
+        Thread.sleep(5);
+        store.add(newTask("third"), "error").get(5, TimeUnit.SECONDS);
+
+        assertThat(store.list()).extracting(DeadLetterStore.Entry::getFilename).containsExactly("second.jpg", "third.jpg");
+        assertThat(store.find(first.getJob().getId())).isEmpty();
+    }
+
+    @Test
+    void testAdd_TrimsEntriesLeftByAnEarlierRun() throws Exception {
+        DeadLetterStore earlier = new DeadLetterStore(directory, 10);
+        UploadTask first = newTask("first");
+        earlier.add(first, "error").get(5, TimeUnit.SECONDS);
+        Thread.sleep(5);
+        earlier.add(newTask("second"), "error").get(5, TimeUnit.SECONDS);
+        earlier.close();
+
+        store = new DeadLetterStore(directory, 2);
+        Thread.sleep(5);
+        store.add(newTask("third"), "error").get(5, TimeUnit.SECONDS);
+
+        assertThat(store.list()).extracting(DeadLetterStore.Entry::getFilename).containsExactly("second.jpg", "third.jpg");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString())).noneMatch(name -> name.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    void testRemoveAndFind_RefuseIdsOutsideTheStore() throws Exception {
+        store = new DeadLetterStore(directory, 10);
+        UploadTask task = newTask("photo");
+        store.add(task, "error").get(5, TimeUnit.SECONDS);
+
+        assertThat(store.find("../photo")).isEmpty();
+        assertThat(store.remove("../photo")).isFalse();
+
+        assertThat(store.remove(task.getJob().getId())).isTrue();
+        assertThat(store.list()).isEmpty();
+        assertThat(store.remove(task.getJob().getId())).isFalse();
+    }
+}
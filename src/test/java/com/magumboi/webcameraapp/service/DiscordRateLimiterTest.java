@@ -0,0 +1,149 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiscordRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+
+    private HttpHeaders rateLimitHeaders(String bucket, int limit, int remaining, double resetAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(DiscordRateLimiter.HEADER_BUCKET, bucket);
+        headers.add(DiscordRateLimiter.HEADER_LIMIT, String.valueOf(limit));
+        headers.add(DiscordRateLimiter.HEADER_REMAINING, String.valueOf(remaining));
+        headers.add(DiscordRateLimiter.HEADER_RESET_AFTER, String.valueOf(resetAfter));
+        return headers;
+    }
+
+    private void advanceMillis(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    void testRelease_GivesBackAnUnusedPermit() {
+        DiscordRateLimiter limiter = new DiscordRateLimiter(1, clock::get);
+        assertThat(limiter.tryAcquire()).isZero();
+        assertThat(limiter.tryAcquire()).isPositive();
+
+        limiter.release();
+        assertThat(limiter.tryAcquire()).isZero();
+
+        // Once Discord reports the bucket, the permit goes back to its remaining count
+        limiter.onResponse(rateLimitHeaders("abc", 5, 1, 10));
+        assertThat(limiter.tryAcquire()).isZero();
+        assertThat(limiter.tryAcquire()).isPositive();
+        limiter.release();
+        assertThat(limiter.getRemaining()).isEqualTo(1);
+        assertThat(limiter.tryAcquire()).isZero();
+    }
+
+    @Test
+    void testLocalTokenBucket_RefillsContinuously() {
+        DiscordRateLimiter limiter = new DiscordRateLimiter(60, clock::get);
+
+        // Drain the full bucket
+        for (int i = 0; i < 60; i++) {
+            assertThat(limiter.tryAcquire()).isZero();
+        }
+
+        // Next permit is one second away at 60 requests/minute
+        long wait = limiter.tryAcquire();
+        assertThat(wait).isBetween(TimeUnit.MILLISECONDS.toNanos(999), TimeUnit.MILLISECONDS.toNanos(1001));
+
+        advanceMillis(1000);
+        assertThat(limiter.tryAcquire()).isZero();
+    }
+
+    @Test
+    void testDiscordBucket_WaitsForResetWhenDrained() {
+        DiscordRateLimiter limiter = new DiscordRateLimiter(600, clock::get);
+
+        assertThat(limiter.tryAcquire()).isZero();
+        limiter.onResponse(rateLimitHeaders("abc", 5, 0, 1.5));
+
+        // Bucket is empty even though the local fallback still has tokens
+        assertThat(limiter.tryAcquire()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertThat(limiter.getBucket()).isEqualTo("abc");
+
+        // After the reset the bucket is assumed full again
+        advanceMillis(1500);
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire()).isZero();
+        }
+        assertThat(limiter.tryAcquire()).isPositive();
+    }
+
+    @Test
+    void testDiscordBucket_ReportedPermitsOverrideLocalFallback() {
+        DiscordRateLimiter limiter = new DiscordRateLimiter(2, clock::get);
+        limiter.onResponse(rateLimitHeaders("abc", 10, 10, 1.0));
+
+        // Discord allows more than the configured requests per minute, so its count is the limit
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire()).isZero();
+        }
+        assertThat(limiter.tryAcquire()).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+
+        // Once the window passes without new headers the local bucket applies again, still full
+        advanceMillis(1000);
+        assertThat(limiter.tryAcquire()).isZero();
+        assertThat(limiter.tryAcquire()).isZero();
+        assertThat(limiter.tryAcquire()).isEqualTo(TimeUnit.SECONDS.toNanos(30));
+    }
+
+    @Test
+    void testDiscordBucket_RefillsWithoutFurtherHeaders() {
+        DiscordRateLimiter limiter = new DiscordRateLimiter(600, clock::get);
+        limiter.onResponse(rateLimitHeaders("abc", 2, 0, 1.0));
+
+        // Responses stop carrying headers, e.g. a proxy strips them; every assumed window still refills
+        for (int window = 0; window < 3; window++) {
+            advanceMillis(1000);
+            assertThat(limiter.tryAcquire()).isZero();
+            assertThat(limiter.tryAcquire()).isZero();
+            assertThat(limiter.tryAcquire()).isBetween(1L, TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    void testDiscordBucket_OutOfOrderResponsesDoNotRestorePermits() {
+        DiscordRateLimiter limiter = new DiscordRateLimiter(600, clock::get);
+
+        limiter.onResponse(rateLimitHeaders("abc", 5, 4, 2.0));
+        assertThat(limiter.tryAcquire()).isZero();
+        assertThat(limiter.tryAcquire()).isZero();
+
+        // A late response from an earlier request in the same window reports more remaining
+        limiter.onResponse(rateLimitHeaders("abc", 5, 3, 2.0));
+
+        assertThat(limiter.getRemaining()).isEqualTo(2);
+    }
+
+    @Test
+    void testRateLimited_HonorsRetryAfterBody() {
+        DiscordRateLimiter limiter = new DiscordRateLimiter(600, clock::get);
+
+        limiter.onRateLimited(new HttpHeaders(), "{\"message\": \"You are being rate limited.\", \"retry_after\": 0.75, \"global\": false}");
+
+        assertThat(limiter.peekDelayNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(750));
+        advanceMillis(750);
+        assertThat(limiter.tryAcquire()).isZero();
+    }
+
+    @Test
+    void testRateLimited_FallsBackToRetryAfterHeader() {
+        DiscordRateLimiter limiter = new DiscordRateLimiter(600, clock::get);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "3");
+        limiter.onRateLimited(headers, "not json");
+
+        assertThat(limiter.peekDelayNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(3));
+    }
+}
@@ -0,0 +1,130 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileClusterCoordinatorTest {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    private ClusterCoordinator coordinator(String instanceId) throws Exception {
+        return new FileClusterCoordinator(instanceId, directory, 30_000, clock::get);
+    }
+
+    private UploadTask newTask(String name) {
+        return new UploadTask(name + ".jpg", new ByteArrayPhotoPayload(name.getBytes()), "content " + name,
+                new UploadJob(), UploadPriority.BULK, "garage");
+    }
+
+    @Test
+    void testTryAcquire_SharesBucketBetweenInstances() throws Exception {
+        ClusterCoordinator first = coordinator("first");
+        ClusterCoordinator second = coordinator("second");
+
+        assertThat(first.tryAcquire("bucket", 2)).isZero();
+        assertThat(second.tryAcquire("bucket", 2)).isZero();
+        assertThat(first.tryAcquire("bucket", 2)).isEqualTo(TimeUnit.SECONDS.toNanos(30));
+
+        second.block("bucket", 2, TimeUnit.SECONDS.toNanos(60));
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(30));
+        assertThat(first.tryAcquire("bucket", 2)).isEqualTo(TimeUnit.SECONDS.toNanos(30));
+    }
+
+    @Test
+    void testBlock_BeforeAnyRequest_StartsWithAFullBucket() throws Exception {
+        ClusterCoordinator first = coordinator("first");
+        ClusterCoordinator second = coordinator("second");
+
+        first.block("bucket", 3, TimeUnit.SECONDS.toNanos(5));
+        assertThat(second.tryAcquire("bucket", 3)).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(5));
+        assertThat(second.tryAcquire("bucket", 3)).isZero();
+        assertThat(second.tryAcquire("bucket", 3)).isZero();
+        assertThat(second.tryAcquire("bucket", 3)).isZero();
+    }
+
+    @Test
+    void testTryAcquire_TakesPermitsInBlocksAndReturnsTheUnusedOnesOnClose() throws Exception {
+        ClusterCoordinator first = coordinator("first");
+        ClusterCoordinator second = coordinator("second");
+
+        // 120 per minute: blocks of two permits, the second one held by the first instance
+        assertThat(first.tryAcquire("bucket", 120)).isZero();
+        int taken = 0;
+        while (second.tryAcquire("bucket", 120) == 0) {
+            taken++;
+        }
+        assertThat(taken).isEqualTo(118);
+        assertThat(first.tryAcquire("bucket", 120)).isZero();
+        assertThat(first.tryAcquire("bucket", 120)).isPositive();
+
+        // A refunded permit joins the block, and closing hands it back to the bucket
+        first.refund("bucket", 120);
+        first.close();
+        ClusterCoordinator third = coordinator("third");
+        assertThat(third.tryAcquire("bucket", 120)).isZero();
+        assertThat(third.tryAcquire("bucket", 120)).isPositive();
+    }
+
+    @Test
+    void testClaimExpired_ReadsTaskFromSharedDirectory() throws Exception {
+        ClusterCoordinator first = coordinator("first");
+        ClusterCoordinator second = coordinator("second");
+        UploadTask task = newTask("porch");
+        first.register(task);
+
+        assertThat(second.claimExpired(10)).isEmpty();
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(30));
+        List<UploadTask> claimed = second.claimExpired(10);
+
+        assertThat(claimed).hasSize(1);
+        UploadTask copy = claimed.get(0);
+        assertThat(copy.getJob().getId()).isEqualTo(task.getJob().getId());
+        assertThat(copy.getFilename()).isEqualTo("porch.jpg");
+        assertThat(copy.getContent()).isEqualTo("content porch");
+        assertThat(copy.getPriority()).isEqualTo(UploadPriority.BULK);
+        assertThat(copy.getCameraId()).isEqualTo("garage");
+        try (InputStream in = copy.getPayload().openStream()) {
+            assertThat(in.readAllBytes()).isEqualTo("porch".getBytes());
+        }
+        assertThat(first.claimExpired(10)).isEmpty();
+    }
+
+    @Test
+    void testRelease_OnlyByOwnerDeletesTask() throws Exception {
+        ClusterCoordinator first = coordinator("first");
+        ClusterCoordinator second = coordinator("second");
+        UploadTask task = newTask("porch");
+        first.register(task);
+        first.abandon(List.of(task.getJob().getId()));
+        assertThat(second.claimExpired(10)).hasSize(1);
+
+        first.release(task.getJob().getId());
+        second.abandon(List.of(task.getJob().getId()));
+        assertThat(first.claimExpired(10)).hasSize(1);
+
+        first.release(task.getJob().getId());
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(60));
+        assertThat(second.claimExpired(10)).isEmpty();
+        assertThat(directory.resolve("tasks")).isEmptyDirectory();
+    }
+
+    @Test
+    void testRestart_TakesBackOwnLeftoverTasks() throws Exception {
+        coordinator("first").register(newTask("porch"));
+
+        assertThat(coordinator("first").claimExpired(10)).hasSize(1);
+    }
+}
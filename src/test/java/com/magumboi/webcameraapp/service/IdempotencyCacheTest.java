@@ -0,0 +1,66 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyCacheTest {
+
+    @Test
+    void testClaim_ReturnsJobOfFirstRequest() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60_000);
+        UploadJob first = new UploadJob();
+
+        assertThat(cache.claim("key:a", first)).isNull();
+        assertThat(cache.claim("key:a", new UploadJob())).isSameAs(first);
+        assertThat(cache.claim("key:b", new UploadJob())).isNull();
+    }
+
+    @Test
+    void testClaim_FailedJobReleasesKey() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60_000);
+        UploadJob failed = new UploadJob();
+        cache.claim("key:a", failed);
+        failed.fail(new RuntimeException("Upload queue is full"));
+
+        UploadJob retry = new UploadJob();
+        assertThat(cache.claim("key:a", retry)).isNull();
+        assertThat(cache.claim("key:a", new UploadJob())).isSameAs(retry);
+    }
+
+    @Test
+    void testClaim_DeliveredJobExpiresAfterTtl() {
+        AtomicLong clock = new AtomicLong();
+        IdempotencyCache cache = new IdempotencyCache(10, 60_000, clock::get);
+        UploadJob queued = new UploadJob();
+        UploadJob delivered = new UploadJob();
+        cache.claim("key:queued", queued);
+        cache.claim("key:delivered", delivered);
+        delivered.complete("{}");
+
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        cache.evictExpired();
+
+        // Unfinished jobs outlive the TTL so a slow upload is never queued twice
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.claim("key:queued", new UploadJob())).isSameAs(queued);
+        assertThat(cache.claim("key:delivered", new UploadJob())).isNull();
+    }
+
+    @Test
+    void testClaim_EvictsLeastRecentlyUsed() {
+        IdempotencyCache cache = new IdempotencyCache(2, 60_000);
+        UploadJob first = new UploadJob();
+        cache.claim("key:a", first);
+        cache.claim("key:b", new UploadJob());
+        cache.claim("key:a", new UploadJob()); // touches a
+        cache.claim("key:c", new UploadJob()); // evicts b
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.claim("key:a", new UploadJob())).isSameAs(first);
+        assertThat(cache.claim("key:b", new UploadJob())).isNull();
+    }
+}
@@ -0,0 +1,140 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageProcessorTest {
+
+    @TempDir
+    Path spoolDirectory;
+
+    private ImageProcessor processor;
+
+    @AfterEach
+    void tearDown() {
+        if (processor != null) {
+            processor.shutdown();
+        }
+    }
+
+    private static byte[] noisyJpeg(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", output);
+        return output.toByteArray();
+    }
+
+    // Inserts an EXIF-style APP1 segment right after SOI
+    private static byte[] withApp1(byte[] jpeg) {
+        byte[] exif = "Exif\0\0fake-gps-and-camera-serial".getBytes();
+        byte[] result = new byte[jpeg.length + 4 + exif.length];
+        result[0] = (byte) 0xFF;
+        result[1] = (byte) 0xD8;
+        result[2] = (byte) 0xFF;
+        result[3] = (byte) 0xE1;
+        result[4] = (byte) ((exif.length + 2) >> 8);
+        result[5] = (byte) (exif.length + 2);
+        System.arraycopy(exif, 0, result, 6, exif.length);
+        System.arraycopy(jpeg, 2, result, 6 + exif.length, jpeg.length - 2);
+        return result;
+    }
+
+    private static boolean containsMarker(byte[] jpeg, int marker) {
+        for (int i = 0; i + 1 < jpeg.length; i++) {
+            if ((jpeg[i] & 0xFF) == 0xFF && (jpeg[i + 1] & 0xFF) == marker) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void testProcess_DownscalesToMaxDimension() throws Exception {
+        processor = new ImageProcessor(400, 0, 0.5f, true, 1, 4);
+        byte[] photo = noisyJpeg(1200, 900);
+
+        PhotoPayload result = processor.submit(new ByteArrayPhotoPayload(photo)).get(30, TimeUnit.SECONDS);
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(result.getBytes()));
+        assertThat(decoded.getWidth()).isEqualTo(400);
+        assertThat(decoded.getHeight()).isEqualTo(300);
+    }
+
+    @Test
+    void testProcess_ReencodesTowardsTargetSize() throws Exception {
+        byte[] photo = noisyJpeg(600, 400);
+        processor = new ImageProcessor(0, photo.length / 3, 0.1f, true, 1, 4);
+
+        PhotoPayload result = processor.process(new ByteArrayPhotoPayload(photo));
+
+        assertThat(result.size()).isLessThanOrEqualTo(photo.length / 3);
+    }
+
+    @Test
+    void testProcess_StripsMetadataWithoutReencoding() throws Exception {
+        byte[] photo = withApp1(noisyJpeg(64, 64));
+        processor = new ImageProcessor(1920, 0, 0.5f, true, 1, 4);
+
+        PhotoPayload result = processor.process(new ByteArrayPhotoPayload(photo));
+
+        assertThat(containsMarker(photo, 0xE1)).isTrue();
+        assertThat(containsMarker(result.getBytes(), 0xE1)).isFalse();
+        assertThat(result.size()).isLessThan(photo.length);
+        assertThat(ImageIO.read(new ByteArrayInputStream(result.getBytes())).getWidth()).isEqualTo(64);
+    }
+
+    @Test
+    void testProcess_SpooledPhotoStaysInTheSpoolDirectory() throws Exception {
+        byte[] photo = withApp1(noisyJpeg(64, 64));
+        Path original = Files.write(spoolDirectory.resolve("photo.jpg"), photo);
+        processor = new ImageProcessor(400, 0, 0.5f, true, 1, 4, spoolDirectory);
+
+        PhotoPayload result = processor.process(new FilePhotoPayload(original, photo.length));
+
+        assertThat(result).isInstanceOf(FilePhotoPayload.class);
+        assertThat(((FilePhotoPayload) result).getPath()).hasParent(spoolDirectory);
+        assertThat(containsMarker(result.getBytes(), 0xE1)).isFalse();
+        assertThat(Files.readAllBytes(original)).isEqualTo(photo);
+
+        Path large = Files.write(spoolDirectory.resolve("large.jpg"), noisyJpeg(800, 600));
+        PhotoPayload scaled = processor.process(new FilePhotoPayload(large, Files.size(large)));
+
+        assertThat(scaled).isInstanceOf(FilePhotoPayload.class);
+        assertThat(ImageIO.read(((FilePhotoPayload) scaled).getPath().toFile()).getWidth()).isEqualTo(400);
+    }
+
+    @Test
+    void testProcess_PassesThroughPhotosWithinLimits() throws Exception {
+        byte[] photo = noisyJpeg(64, 64);
+        processor = new ImageProcessor(1920, photo.length * 2L, 0.5f, false, 1, 4);
+        ByteArrayPhotoPayload payload = new ByteArrayPhotoPayload(photo);
+
+        assertThat(processor.process(payload)).isSameAs(payload);
+    }
+
+    @Test
+    void testProcess_PassesThroughUndecodableData() {
+        processor = new ImageProcessor(400, 100, 0.5f, true, 1, 4);
+        ByteArrayPhotoPayload payload = new ByteArrayPhotoPayload("not an image".getBytes());
+
+        assertThat(processor.process(payload)).isSameAs(payload);
+    }
+}
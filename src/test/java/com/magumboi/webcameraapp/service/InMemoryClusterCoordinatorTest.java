@@ -0,0 +1,95 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryClusterCoordinatorTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+    private final InMemoryClusterCoordinator.Store store = new InMemoryClusterCoordinator.Store();
+    private final ClusterCoordinator first = new InMemoryClusterCoordinator("first", store, 30_000, clock::get);
+    private final ClusterCoordinator second = new InMemoryClusterCoordinator("second", store, 30_000, clock::get);
+
+    private UploadTask newTask(String name) {
+        return new UploadTask(name + ".jpg", new ByteArrayPhotoPayload(name.getBytes()), "", new UploadJob());
+    }
+
+    @Test
+    void testTryAcquire_SharesBucketBetweenInstances() {
+        assertThat(first.tryAcquire("bucket", 2)).isZero();
+        assertThat(second.tryAcquire("bucket", 2)).isZero();
+
+        assertThat(first.tryAcquire("bucket", 2)).isEqualTo(TimeUnit.SECONDS.toNanos(30));
+        assertThat(second.tryAcquire("other", 2)).isZero();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(second.tryAcquire("bucket", 2)).isZero();
+    }
+
+    @Test
+    void testBlock_HoldsBucketForEveryInstance() {
+        first.tryAcquire("bucket", 60);
+        first.block("bucket", 60, TimeUnit.SECONDS.toNanos(5));
+
+        assertThat(second.tryAcquire("bucket", 60)).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertThat(second.tryAcquire("bucket", 60)).isZero();
+    }
+
+    @Test
+    void testReport_ReplacesRequestsPerMinuteUntilTheWindowResets() {
+        first.report("bucket", 1, 3, TimeUnit.SECONDS.toNanos(2));
+
+        assertThat(first.tryAcquire("bucket", 1)).isZero();
+        assertThat(second.tryAcquire("bucket", 1)).isZero();
+        assertThat(second.tryAcquire("bucket", 1)).isZero();
+        assertThat(first.tryAcquire("bucket", 1)).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+
+        // A late response from the same window can't hand out permits again
+        second.report("bucket", 1, 2, TimeUnit.SECONDS.toNanos(2));
+        assertThat(second.tryAcquire("bucket", 1)).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+
+        // Past the reset, requests-per-minute applies again
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(first.tryAcquire("bucket", 1)).isZero();
+        assertThat(first.tryAcquire("bucket", 1)).isEqualTo(TimeUnit.SECONDS.toNanos(60));
+    }
+
+    @Test
+    void testClaimExpired_OnlyAfterOwnerStopsRenewing() {
+        UploadTask task = newTask("porch");
+        first.register(task);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        first.renew(List.of(task.getJob().getId()));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        assertThat(second.claimExpired(10)).isEmpty();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertThat(first.claimExpired(10)).isEmpty();
+        assertThat(second.claimExpired(10)).containsExactly(task);
+        assertThat(second.claimExpired(10)).isEmpty();
+    }
+
+    @Test
+    void testRelease_IgnoredUnlessOwner() {
+        UploadTask task = newTask("porch");
+        first.register(task);
+        first.abandon(List.of(task.getJob().getId()));
+        assertThat(second.claimExpired(10)).containsExactly(task);
+
+        // The previous owner's late acknowledgement doesn't drop the claimed task
+        first.release(task.getJob().getId());
+        second.abandon(List.of(task.getJob().getId()));
+        assertThat(first.claimExpired(10)).containsExactly(task);
+
+        first.release(task.getJob().getId());
+        first.abandon(List.of(task.getJob().getId()));
+        assertThat(second.claimExpired(10)).isEmpty();
+    }
+}
@@ -0,0 +1,171 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JournalUploadQueueTest {
+
+    @TempDir
+    Path journalDir;
+
+    private UploadTask newTask(String name, int size) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) name.hashCode());
+        return new UploadTask(name + ".jpg", new ByteArrayPhotoPayload(data), "content " + name, new UploadJob());
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testOffer_KeepsPhotoBytesInJournal() throws Exception {
+        JournalUploadQueue queue = JournalUploadQueue.open(journalDir, 1024 * 1024, new InMemoryUploadQueue());
+        UploadTask task = newTask("a", 4096);
+        byte[] original = task.getPhotoData();
+
+        assertThat(queue.offer(task)).isTrue();
+
+        // The heap payload was swapped for one backed by the mapped segment
+        assertThat(task.getPayload()).isNotInstanceOf(ByteArrayPhotoPayload.class);
+        assertThat(queue.sizeBytes()).isEqualTo(4096);
+        assertThat(queue.poll().getPhotoData()).isEqualTo(original);
+        queue.close();
+    }
+
+    @Test
+    void testReopen_ReplaysUnacknowledgedTasksInOrder() throws Exception {
+        JournalUploadQueue queue = JournalUploadQueue.open(journalDir, 1024 * 1024, new InMemoryUploadQueue());
+        List<UploadTask> tasks = new ArrayList<>();
+        for (String name : List.of("a", "b", "c", "d")) {
+            UploadTask task = newTask(name, 1000);
+            tasks.add(task);
+            queue.offer(task);
+        }
+
+        // "a" was delivered, "b" is in flight when the process stops
+        queue.acknowledge(queue.poll());
+        queue.poll();
+        queue.close();
+
+        JournalUploadQueue reopened = JournalUploadQueue.open(journalDir, 1024 * 1024, new InMemoryUploadQueue());
+
+        assertThat(reopened.size()).isEqualTo(3);
+        assertThat(reopened.recoveredTasks()).extracting(UploadTask::getFilename)
+                .containsExactly("b.jpg", "c.jpg", "d.jpg");
+
+        UploadTask recovered = reopened.poll();
+        assertThat(recovered.getJob().getId()).isEqualTo(tasks.get(1).getJob().getId());
+        assertThat(recovered.getContent()).isEqualTo("content b");
+        assertThat(recovered.getPhotoData()).isEqualTo(tasks.get(1).getPhotoData());
+        reopened.close();
+    }
+
+    @Test
+    void testReopen_RestoresPriority() throws Exception {
+        JournalUploadQueue queue = JournalUploadQueue.open(journalDir, 1024 * 1024, new InMemoryUploadQueue());
+        queue.offer(new UploadTask("a.jpg", new ByteArrayPhotoPayload(new byte[10]), "content a", new UploadJob(),
+                UploadPriority.INTERACTIVE));
+        queue.close();
+
+        JournalUploadQueue reopened = JournalUploadQueue.open(journalDir, 1024 * 1024, new InMemoryUploadQueue());
+        assertThat(reopened.poll().getPriority()).isEqualTo(UploadPriority.INTERACTIVE);
+        reopened.close();
+    }
+
+    @Test
+    void testAcknowledge_DeletesFullyAcknowledgedSegments() throws Exception {
+        // Each segment holds two 3000 byte photos
+        JournalUploadQueue queue = JournalUploadQueue.open(journalDir, 8192, new InMemoryUploadQueue());
+        for (int i = 0; i < 6; i++) {
+            queue.offer(newTask("photo" + i, 3000));
+        }
+        assertThat(queue.getSegmentCount()).isEqualTo(3);
+
+        // Acknowledging the second segment first must not delete it ahead of the first one
+        queue.poll();
+        queue.poll();
+        UploadTask third = queue.poll();
+        UploadTask fourth = queue.poll();
+        queue.acknowledge(third);
+        queue.acknowledge(fourth);
+        assertThat(queue.getSegmentCount()).isEqualTo(3);
+
+        queue.close();
+        JournalUploadQueue reopened = JournalUploadQueue.open(journalDir, 8192, new InMemoryUploadQueue());
+        assertThat(reopened.recoveredTasks()).extracting(UploadTask::getFilename)
+                .containsExactly("photo0.jpg", "photo1.jpg", "photo4.jpg", "photo5.jpg");
+
+        // Once the oldest segment is acknowledged both leading segments go away
+        reopened.acknowledge(reopened.poll());
+        reopened.acknowledge(reopened.poll());
+        assertThat(reopened.getSegmentCount()).isEqualTo(1);
+        assertThat(segmentFiles()).isEqualTo(1);
+        reopened.close();
+    }
+
+    @Test
+    void testReopen_IgnoresTornRecord() throws Exception {
+        JournalUploadQueue queue = JournalUploadQueue.open(journalDir, 1024 * 1024, new InMemoryUploadQueue());
+        queue.offer(newTask("a", 1000));
+        queue.close();
+
+        // Simulate a crash halfway through the next append: payload bytes written, record type not yet
+        Path segment;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9}), 1100);
+        }
+
+        JournalUploadQueue reopened = JournalUploadQueue.open(journalDir, 1024 * 1024, new InMemoryUploadQueue());
+        assertThat(reopened.size()).isEqualTo(1);
+
+        // New appends overwrite the torn bytes and survive another restart
+        reopened.offer(newTask("b", 10));
+        reopened.close();
+        JournalUploadQueue again = JournalUploadQueue.open(journalDir, 1024 * 1024, new InMemoryUploadQueue());
+        assertThat(again.recoveredTasks()).extracting(UploadTask::getFilename).containsExactly("a.jpg", "b.jpg");
+        again.close();
+    }
+
+    @Test
+    void testReopen_ClearsLeftoversPastTheLastRecord() throws Exception {
+        JournalUploadQueue queue = JournalUploadQueue.open(journalDir, 1024 * 1024, new InMemoryUploadQueue());
+        queue.offer(newTask("a", 1000));
+        queue.close();
+
+        // Bytes of an older, longer record far past the end of the journal
+        Path segment;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{9, 9, 9, 9}), 700_000);
+        }
+
+        JournalUploadQueue.open(journalDir, 1024 * 1024, new InMemoryUploadQueue()).close();
+
+        ByteBuffer leftover = ByteBuffer.allocate(4);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            channel.read(leftover, 700_000);
+        }
+        assertThat(leftover.array()).containsOnly(0);
+    }
+}
@@ -0,0 +1,80 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LeasedUploadQueueTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+    private final InMemoryClusterCoordinator.Store store = new InMemoryClusterCoordinator.Store();
+    private final ClusterCoordinator first = new InMemoryClusterCoordinator("first", store, 30_000, clock::get);
+    private final ClusterCoordinator second = new InMemoryClusterCoordinator("second", store, 30_000, clock::get);
+    private final ExecutorService registrar = Executors.newSingleThreadExecutor();
+    // Holds the registrar until released, so the tests decide when registrations run
+    private final CountDownLatch registrarHeld = new CountDownLatch(1);
+    private final LeasedUploadQueue queue = new LeasedUploadQueue(first, new InMemoryUploadQueue(), registrar);
+
+    LeasedUploadQueueTest() {
+        registrar.execute(() -> {
+            try {
+                registrarHeld.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        registrarHeld.countDown();
+        registrar.shutdownNow();
+    }
+
+    private UploadTask newTask(String name) {
+        return new UploadTask(name + ".jpg", new ByteArrayPhotoPayload(name.getBytes()), "", new UploadJob());
+    }
+
+    private void runRegistrations() throws Exception {
+        registrarHeld.countDown();
+        registrar.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testOffer_RegistersPhotoInTheBackground() throws Exception {
+        UploadTask task = newTask("porch");
+
+        assertThat(queue.offer(task)).isTrue();
+        assertThat(queue.getPendingCount()).isEqualTo(1);
+        assertThat(queue.getLeasedCount()).isZero();
+
+        runRegistrations();
+        assertThat(queue.getPendingCount()).isZero();
+        assertThat(queue.getLeasedCount()).isEqualTo(1);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(second.claimExpired(10)).containsExactly(task);
+    }
+
+    @Test
+    void testAcknowledge_BeforeRegistration_LeavesNothingToClaim() throws Exception {
+        UploadTask task = newTask("porch");
+        queue.offer(task);
+        assertThat(queue.poll()).isSameAs(task);
+        queue.acknowledge(task);
+
+        runRegistrations();
+        assertThat(queue.getPendingCount()).isZero();
+        assertThat(queue.getLeasedCount()).isZero();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(second.claimExpired(10)).isEmpty();
+    }
+}
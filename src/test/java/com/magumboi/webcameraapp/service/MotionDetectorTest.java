@@ -0,0 +1,53 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MotionDetectorTest {
+
+    private static boolean accept(MotionDetector detector, byte[] frame) throws Exception {
+        return detector.accept(frame, 0, frame.length);
+    }
+
+    @Test
+    void testAccept_OnlyFramesWithMotion() throws Exception {
+        MotionDetector detector = new MotionDetector(20, 0.05, 0);
+
+        // The first frame only sets the reference
+        assertThat(accept(detector, PhotoDeduplicatorTest.sceneJpeg(100, 1))).isFalse();
+        // Sensor noise on a still scene
+        assertThat(accept(detector, PhotoDeduplicatorTest.sceneJpeg(100, 2))).isFalse();
+        // The square moved across the frame
+        assertThat(accept(detector, PhotoDeduplicatorTest.sceneJpeg(400, 1))).isTrue();
+    }
+
+    @Test
+    void testAccept_CooldownBetweenTriggers() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        MotionDetector detector = new MotionDetector(20, 0.05, 5_000, clock::get);
+        byte[] left = PhotoDeduplicatorTest.sceneJpeg(100, 1);
+        byte[] right = PhotoDeduplicatorTest.sceneJpeg(400, 1);
+
+        accept(detector, left);
+        assertThat(accept(detector, right)).isTrue();
+        // Still moving, but within the cooldown
+        assertThat(accept(detector, left)).isFalse();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        assertThat(accept(detector, right)).isTrue();
+    }
+
+    @Test
+    void testAccept_RejectsNonImages() {
+        MotionDetector detector = new MotionDetector(20, 0.05, 0);
+        byte[] frame = "not an image".getBytes();
+
+        assertThatThrownBy(() -> detector.accept(frame, 0, frame.length))
+                .isInstanceOf(java.io.IOException.class);
+    }
+}
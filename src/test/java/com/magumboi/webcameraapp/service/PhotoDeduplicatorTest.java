@@ -0,0 +1,98 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PhotoDeduplicatorTest {
+
+    // A scene with a bright square; shifting the square changes the picture, noise does not
+    static byte[] sceneJpeg(int squareX, long noiseSeed) throws Exception {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.fillRect(0, 0, 640, 480);
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(squareX, 120, 200, 200);
+        graphics.dispose();
+
+        Random random = new Random(noiseSeed);
+        for (int i = 0; i < 5000; i++) {
+            int x = random.nextInt(640);
+            int y = random.nextInt(480);
+            image.setRGB(x, y, image.getRGB(x, y) ^ 0x0F0F0F);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", output);
+        return output.toByteArray();
+    }
+
+    private static long hash(byte[] jpeg) throws Exception {
+        return PhotoDeduplicator.differenceHash(new ByteArrayPhotoPayload(jpeg));
+    }
+
+    @Test
+    void testDifferenceHash_SimilarFramesAreClose() throws Exception {
+        long first = hash(sceneJpeg(100, 1));
+        long noisy = hash(sceneJpeg(100, 2));
+        long moved = hash(sceneJpeg(400, 1));
+
+        assertThat(PhotoDeduplicator.distance(first, noisy)).isLessThanOrEqualTo(3);
+        assertThat(PhotoDeduplicator.distance(first, moved)).isGreaterThan(10);
+    }
+
+    @Test
+    void testDifferenceHash_RejectsNonImages() {
+        assertThatThrownBy(() -> hash("not an image".getBytes()))
+                .isInstanceOf(java.io.IOException.class);
+    }
+
+    @Test
+    void testFindOrRecord_MatchesWithinWindowOnly() {
+        AtomicLong clock = new AtomicLong();
+        PhotoDeduplicator deduplicator = new PhotoDeduplicator(16, 10_000, 5, clock::get);
+        UploadJob first = new UploadJob();
+
+        assertThat(deduplicator.findOrRecord(0b1111L, first)).isNull();
+        // Two bits apart: merged into the first job
+        assertThat(deduplicator.findOrRecord(0b1100L, new UploadJob())).isSameAs(first);
+        // Far apart: a new photo
+        assertThat(deduplicator.findOrRecord(~0b1111L, new UploadJob())).isNull();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        UploadJob later = new UploadJob();
+        assertThat(deduplicator.findOrRecord(0b1111L, later)).isNull();
+        assertThat(deduplicator.findOrRecord(0b1111L, new UploadJob())).isSameAs(later);
+    }
+
+    @Test
+    void testFindOrRecord_IgnoresFailedJobs() {
+        PhotoDeduplicator deduplicator = new PhotoDeduplicator(16, 10_000, 5);
+        UploadJob failed = new UploadJob();
+        deduplicator.findOrRecord(42L, failed);
+        failed.fail(new RuntimeException("boom"));
+
+        assertThat(deduplicator.findOrRecord(42L, new UploadJob())).isNull();
+    }
+
+    @Test
+    void testFindOrRecord_EvictsOldestWhenFull() {
+        PhotoDeduplicator deduplicator = new PhotoDeduplicator(2, 10_000, 0);
+        deduplicator.findOrRecord(1L, new UploadJob());
+        deduplicator.findOrRecord(2L, new UploadJob());
+        deduplicator.findOrRecord(4L, new UploadJob());
+
+        assertThat(deduplicator.findOrRecord(1L, new UploadJob())).isNull();
+    }
+}
@@ -0,0 +1,99 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Measures per-upload heap allocation of the outbound photo body, old byte[] path versus streaming payloads
+class PhotoPayloadAllocationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoPayloadAllocationTest.class);
+
+    private static final int PHOTO_SIZE = 4 * 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private static long allocatedBytes(Callable<Long> work) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up so class loading and JIT don't count against either path
+        for (int i = 0; i < 3; i++) {
+            work.call();
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long written = work.call();
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(written).isEqualTo(PHOTO_SIZE);
+        return allocated;
+    }
+
+    private static long drain(Flux<DataBuffer> body) {
+        return body.map(buffer -> {
+            int size = buffer.readableByteCount();
+            DataBufferUtils.release(buffer);
+            return (long) size;
+        }).reduce(0L, Long::sum).block();
+    }
+
+    @Test
+    void testStreamingPayload_AllocatesAnOrderOfMagnitudeLess() throws Exception {
+        byte[] photo = new byte[PHOTO_SIZE];
+        new Random(42).nextBytes(photo);
+        Path spooled = tempDir.resolve("photo.jpg");
+        Files.write(spooled, photo);
+
+        // Old path: photo.getBytes() copy, then ByteArrayResource re-read into body buffers
+        long copying = allocatedBytes(() -> {
+            byte[] data = Files.readAllBytes(spooled);
+            return drain(DataBufferUtils.read(new ByteArrayResource(data), DefaultDataBufferFactory.sharedInstance, 4096));
+        });
+
+        // New path: the spooled file is mapped and wrapped, never copied onto the heap
+        FilePhotoPayload payload = new FilePhotoPayload(spooled, PHOTO_SIZE);
+        long streaming = allocatedBytes(() -> drain(payload.content(DefaultDataBufferFactory.sharedInstance)));
+
+        logger.info("Per-upload allocation for a {} byte photo: copying={} bytes, streaming={} bytes",
+                PHOTO_SIZE, copying, streaming);
+
+        assertThat(copying).isGreaterThan(2L * PHOTO_SIZE);
+        assertThat(streaming * 10).isLessThan(copying);
+    }
+
+    @Test
+    void testFilePayload_CopiesIntoJournalBuffer() throws Exception {
+        byte[] photo = new byte[1000];
+        new Random(7).nextBytes(photo);
+        Path spooled = tempDir.resolve("photo.jpg");
+        Files.write(spooled, photo);
+
+        ByteBuffer target = ByteBuffer.allocateDirect(2000);
+        FilePhotoPayload payload = new FilePhotoPayload(spooled, photo.length);
+        payload.copyTo(target, 500);
+
+        byte[] copied = new byte[photo.length];
+        target.get(500, copied);
+        assertThat(copied).isEqualTo(photo);
+
+        payload.release();
+        assertThat(spooled).doesNotExist();
+    }
+}
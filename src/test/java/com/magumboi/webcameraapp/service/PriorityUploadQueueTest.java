@@ -0,0 +1,185 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriorityUploadQueueTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+
+    private PriorityUploadQueue newQueue(Map<UploadPriority, Integer> capacities, long maxWaitMillis) {
+        Map<UploadPriority, Integer> weights = Map.of(
+                UploadPriority.INTERACTIVE, 8, UploadPriority.NORMAL, 3, UploadPriority.BULK, 1);
+        return new PriorityUploadQueue(weights, capacities, maxWaitMillis, clock::get);
+    }
+
+    private UploadTask newTask(String name, UploadPriority priority) {
+        return new UploadTask(name, new ByteArrayPhotoPayload(new byte[100]), name, new UploadJob(), priority);
+    }
+
+    private List<String> pollAll(PriorityUploadQueue queue, int count) {
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UploadTask peeked = queue.peek();
+            UploadTask polled = queue.poll();
+            assertThat(polled).isSameAs(peeked);
+            order.add(polled.getFilename());
+        }
+        return order;
+    }
+
+    @Test
+    void testInteractiveTask_JumpsAheadOfBulkBacklog() {
+        PriorityUploadQueue queue = newQueue(Map.of(), 60_000);
+        for (int i = 0; i < 20; i++) {
+            queue.offer(newTask("bulk" + i, UploadPriority.BULK));
+        }
+        pollAll(queue, 3);
+
+        queue.offer(newTask("capture", UploadPriority.INTERACTIVE));
+
+        assertThat(queue.peek().getFilename()).isEqualTo("capture");
+        assertThat(queue.sizeBytes()).isEqualTo(18 * 100);
+    }
+
+    @Test
+    void testLanes_ShareDispatchesByWeight() {
+        PriorityUploadQueue queue = newQueue(Map.of(), 60_000);
+        for (int i = 0; i < 24; i++) {
+            queue.offer(newTask("interactive", UploadPriority.INTERACTIVE));
+            queue.offer(newTask("normal", UploadPriority.NORMAL));
+            queue.offer(newTask("bulk", UploadPriority.BULK));
+        }
+
+        List<String> first = pollAll(queue, 12);
+
+        // 8:3:1 while every lane has work, with background lanes interleaved rather than bunched at the end
+        assertThat(first).filteredOn("interactive"::equals).hasSize(8);
+        assertThat(first).filteredOn("normal"::equals).hasSize(3);
+        assertThat(first).filteredOn("bulk"::equals).hasSize(1);
+        assertThat(first.subList(0, 6)).contains("normal");
+    }
+
+    @Test
+    void testStarvingTask_IsServedFirst() {
+        PriorityUploadQueue queue = newQueue(Map.of(), 30_000);
+        queue.offer(newTask("old-bulk", UploadPriority.BULK));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        for (int i = 0; i < 5; i++) {
+            queue.offer(newTask("interactive", UploadPriority.INTERACTIVE));
+        }
+
+        assertThat(pollAll(queue, 1)).containsExactly("old-bulk");
+    }
+
+    @Test
+    void testLaneCapacity_IsEnforcedPerLane() {
+        PriorityUploadQueue queue = newQueue(Map.of(UploadPriority.BULK, 2, UploadPriority.INTERACTIVE, 1), 60_000);
+
+        assertThat(queue.offer(newTask("bulk1", UploadPriority.BULK))).isTrue();
+        assertThat(queue.offer(newTask("bulk2", UploadPriority.BULK))).isTrue();
+        assertThat(queue.offer(newTask("bulk3", UploadPriority.BULK))).isFalse();
+
+        // A full bulk lane leaves the interactive lane untouched
+        assertThat(queue.offer(newTask("capture", UploadPriority.INTERACTIVE))).isTrue();
+        assertThat(queue.size(UploadPriority.BULK)).isEqualTo(2);
+        assertThat(queue.size(UploadPriority.INTERACTIVE)).isEqualTo(1);
+
+        // Retries were admitted once and are always taken back
+        UploadTask retry = queue.poll();
+        assertThat(queue.requeue(retry)).isTrue();
+        assertThat(queue.size()).isEqualTo(3);
+    }
+
+    @Test
+    void testShedOldest_TakesLowestPriorityFirstAndSparesHigherLanes() {
+        PriorityUploadQueue queue = newQueue(Map.of(), 60_000);
+        queue.offer(newTask("capture", UploadPriority.INTERACTIVE));
+        queue.offer(newTask("normal", UploadPriority.NORMAL));
+        queue.offer(newTask("bulk1", UploadPriority.BULK));
+        queue.offer(newTask("bulk2", UploadPriority.BULK));
+
+        assertThat(queue.shedOldest(UploadPriority.NORMAL).getFilename()).isEqualTo("bulk1");
+        assertThat(queue.shedOldest(UploadPriority.NORMAL).getFilename()).isEqualTo("bulk2");
+        assertThat(queue.shedOldest(UploadPriority.NORMAL).getFilename()).isEqualTo("normal");
+        assertThat(queue.shedOldest(UploadPriority.NORMAL)).isNull();
+        assertThat(queue.sizeBytes()).isEqualTo(100);
+        assertThat(pollAll(queue, 1)).containsExactly("capture");
+    }
+
+    @Test
+    void testRetry_GoesToFrontOfItsLane() {
+        PriorityUploadQueue queue = newQueue(Map.of(UploadPriority.NORMAL, 2), 60_000);
+        queue.offer(newTask("first", UploadPriority.NORMAL));
+        queue.offer(newTask("second", UploadPriority.NORMAL));
+
+        // A full lane still takes the retry back, ahead of the photos queued after it
+        assertThat(queue.retry(newTask("retried", UploadPriority.NORMAL))).isTrue();
+
+        assertThat(pollAll(queue, 3)).containsExactly("retried", "first", "second");
+    }
+
+    @Test
+    void testNoisyCamera_TakesTurnsWithQuietOnes() {
+        PriorityUploadQueue queue = newQueue(Map.of(), 60_000);
+        for (int i = 1; i <= 4; i++) {
+            queue.offer(cameraTask("noisy" + i, "garage"));
+        }
+        queue.offer(cameraTask("quiet1", "porch"));
+        queue.offer(cameraTask("quiet2", "porch"));
+
+        assertThat(pollAll(queue, 6)).containsExactly("noisy1", "quiet1", "noisy2", "quiet2", "noisy3", "noisy4");
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void testClientWeights_SetPhotosPerRound() {
+        PriorityUploadQueue queue = new PriorityUploadQueue(Map.of(), Map.of(), 60_000, Map.of("front-door", 2), clock::get);
+        for (int i = 1; i <= 3; i++) {
+            queue.offer(cameraTask("front" + i, "front-door"));
+            queue.offer(cameraTask("garage" + i, "garage"));
+        }
+
+        assertThat(queue.clientSizes()).containsEntry("front-door", 3).containsEntry("garage", 3);
+        assertThat(pollAll(queue, 6)).containsExactly("front1", "front2", "garage1", "front3", "garage2", "garage3");
+        assertThat(queue.clientSizes()).isEmpty();
+    }
+
+    @Test
+    void testStarvingTask_IsServedOutOfItsFlowsTurn() {
+        PriorityUploadQueue queue = newQueue(Map.of(), 1_000);
+        queue.offer(cameraTask("garage1", "garage"));
+        queue.offer(cameraTask("garage2", "garage"));
+        queue.offer(cameraTask("garage3", "garage"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(900));
+        queue.offer(cameraTask("attic", "attic"));
+
+        assertThat(pollAll(queue, 1)).containsExactly("garage1");
+
+        // It is attic's turn, but garage's photos have waited past the maximum
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(pollAll(queue, 3)).containsExactly("garage2", "garage3", "attic");
+    }
+
+    @Test
+    void testShedOldest_TakesFromBusiestCamera() {
+        PriorityUploadQueue queue = newQueue(Map.of(), 60_000);
+        queue.offer(cameraTask("quiet", "porch"));
+        queue.offer(cameraTask("noisy1", "garage"));
+        queue.offer(cameraTask("noisy2", "garage"));
+
+        assertThat(queue.shedOldest(UploadPriority.NORMAL).getFilename()).isEqualTo("noisy1");
+        assertThat(pollAll(queue, 2)).containsExactly("quiet", "noisy2");
+    }
+
+    private UploadTask cameraTask(String name, String cameraId) {
+        return new UploadTask(name, new ByteArrayPhotoPayload(new byte[100]), name, new UploadJob(), UploadPriority.NORMAL, cameraId);
+    }
+}
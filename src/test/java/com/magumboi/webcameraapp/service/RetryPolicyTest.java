@@ -0,0 +1,73 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryPolicyTest {
+
+    private static WebClientResponseException response(int status, String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        return WebClientResponseException.create(status, "status " + status, headers, new byte[0], StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testDelay_DoublesPerAttemptUpToMaximum() {
+        // No randomness: the jittered half is at its top, so the delay is the full backoff
+        RetryPolicy policy = new RetryPolicy(10, 1000, 5000, () -> 1.0);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(policy.delayNanos(1, 0, false))).isEqualTo(1000);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(policy.delayNanos(2, 0, false))).isEqualTo(2000);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(policy.delayNanos(3, 0, false))).isEqualTo(4000);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(policy.delayNanos(4, 0, false))).isEqualTo(5000);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(policy.delayNanos(9, 0, false))).isEqualTo(5000);
+    }
+
+    @Test
+    void testDelay_JitterKeepsAtLeastHalfTheBackoff() {
+        RetryPolicy low = new RetryPolicy(10, 1000, 60_000, () -> 0.0);
+        RetryPolicy mid = new RetryPolicy(10, 1000, 60_000, () -> 0.5);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(low.delayNanos(3, 0, false))).isEqualTo(2000);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(mid.delayNanos(3, 0, false))).isEqualTo(3000);
+    }
+
+    @Test
+    void testDelay_NeverShorterThanRetryAfter() {
+        RetryPolicy policy = new RetryPolicy(10, 1000, 60_000, () -> 0.0);
+        long retryAfter = TimeUnit.SECONDS.toNanos(7);
+
+        assertThat(policy.delayNanos(1, retryAfter, false)).isEqualTo(retryAfter);
+        // Failover to another webhook doesn't wait for the failed one's retry_after
+        assertThat(policy.delayNanos(1, retryAfter, true)).isZero();
+    }
+
+    @Test
+    void testShouldRetry_StopsAtMaxAttemptsAndOnClientErrors() {
+        RetryPolicy policy = new RetryPolicy(3, 1000, 60_000);
+
+        assertThat(policy.shouldRetry(2, response(503, null))).isTrue();
+        assertThat(policy.shouldRetry(3, response(503, null))).isFalse();
+        assertThat(policy.shouldRetry(1, response(429, null))).isTrue();
+        assertThat(policy.shouldRetry(1, response(400, null))).isFalse();
+        assertThat(policy.shouldRetry(1, new IOException("Connection reset"))).isTrue();
+        assertThat(policy.shouldRetry(1, new IllegalStateException())).isFalse();
+    }
+
+    @Test
+    void testRetryAfterNanos_ReadsHeaderSeconds() {
+        assertThat(RetryPolicy.retryAfterNanos(response(503, "2.5"))).isEqualTo(2_500_000_000L);
+        assertThat(RetryPolicy.retryAfterNanos(response(503, "Wed, 21 Oct 2015 07:28:00 GMT"))).isZero();
+        assertThat(RetryPolicy.retryAfterNanos(response(503, null))).isZero();
+        assertThat(RetryPolicy.retryAfterNanos(new IOException("timeout"))).isZero();
+    }
+}
@@ -0,0 +1,36 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryQueueTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+
+    private UploadTask newTask(String name) {
+        return new UploadTask(name, new ByteArrayPhotoPayload(new byte[10]), name, new UploadJob());
+    }
+
+    @Test
+    void testPollDue_ReturnsOnlyTasksWhoseDelayPassed() {
+        RetryQueue queue = new RetryQueue(clock::get);
+        queue.schedule(newTask("late"), 300);
+        queue.schedule(newTask("early"), 100);
+        queue.schedule(newTask("same"), 100);
+
+        assertThat(queue.pollDue()).isEmpty();
+        assertThat(queue.nanosUntilNextDue()).isEqualTo(100);
+
+        clock.set(150);
+        assertThat(queue.pollDue()).extracting(UploadTask::getFilename).containsExactly("early", "same");
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.nanosUntilNextDue()).isEqualTo(150);
+
+        clock.set(300);
+        assertThat(queue.pollDue()).extracting(UploadTask::getFilename).containsExactly("late");
+        assertThat(queue.nanosUntilNextDue()).isEqualTo(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,92 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadEventHubTest {
+
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicInteger snapshots = new AtomicInteger();
+
+    private UploadEventHub newHub(int heartbeatTicks) {
+        return new UploadEventHub(() -> {
+            snapshots.incrementAndGet();
+            return Map.of("queueSize", queueSize.get());
+        }, heartbeatTicks);
+    }
+
+    @Test
+    void testSubscribe_StartsWithQueueSnapshotAndReceivesJobChanges() {
+        UploadEventHub hub = newHub(100);
+        UploadJob job = new UploadJob();
+
+        StepVerifier.create(hub.subscribe())
+                .assertNext(event -> {
+                    assertThat(event.getType()).isEqualTo(UploadEvent.QUEUE);
+                    assertThat(event.getData()).isEqualTo("{\"queueSize\":0}");
+                })
+                .then(() -> {
+                    job.setListener(hub::jobChanged);
+                    job.markDispatching(1);
+                    job.complete("ok");
+                    hub.publish();
+                })
+                .assertNext(event -> {
+                    assertThat(event.getType()).isEqualTo(UploadEvent.JOBS);
+                    assertThat(event.getData())
+                            .contains("\"jobId\":\"" + job.getId() + "\"")
+                            .contains("\"status\":\"DISPATCHING\"")
+                            .contains("\"status\":\"DELIVERED\"");
+                })
+                .assertNext(event -> assertThat(event.getType()).isEqualTo(UploadEvent.QUEUE))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testPublish_SendsQueueSnapshotOnlyWhenChangedOrOnHeartbeat() {
+        UploadEventHub hub = newHub(3);
+
+        StepVerifier.create(hub.subscribe())
+                .expectNextCount(1)
+                .then(hub::publish)
+                .expectNextCount(1)
+                .then(() -> {
+                    hub.publish();
+                    hub.publish();
+                })
+                .expectNoEvent(Duration.ofMillis(50))
+                .then(hub::publish)
+                .assertNext(event -> assertThat(event.getData()).isEqualTo("{\"queueSize\":0}"))
+                .then(() -> {
+                    queueSize.set(4);
+                    hub.publish();
+                })
+                .assertNext(event -> assertThat(event.getData()).isEqualTo("{\"queueSize\":4}"))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testNothingIsCollectedWithoutSubscribers() {
+        UploadEventHub hub = newHub(1);
+        UploadJob job = new UploadJob();
+        job.setListener(hub::jobChanged);
+        job.markDispatching(1);
+        hub.publish();
+
+        assertThat(snapshots.get()).isZero();
+        StepVerifier.create(hub.subscribe())
+                .assertNext(event -> assertThat(event.getType()).isEqualTo(UploadEvent.QUEUE))
+                .then(hub::publish)
+                .assertNext(event -> assertThat(event.getType()).isEqualTo(UploadEvent.QUEUE))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,93 @@
+package com.magumboi.webcameraapp.service;
+
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadTimelineTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+
+    private void advanceMillis(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStages_AreTimedAndSummedOverAttempts() {
+        UploadTimeline timeline = new UploadTimeline("job-1", clock::get);
+
+        timeline.begin(UploadStage.QUEUE, 0);
+        advanceMillis(30);
+        timeline.throttled();
+        advanceMillis(20);
+        timeline.begin(UploadStage.REQUEST, 1);
+        advanceMillis(100);
+        timeline.end("error: 503");
+        timeline.begin(UploadStage.RETRY_WAIT, 1);
+        advanceMillis(1000);
+        timeline.begin(UploadStage.QUEUE, 1);
+        advanceMillis(5);
+        timeline.begin(UploadStage.REQUEST, 2);
+        advanceMillis(80);
+        timeline.end("delivered");
+
+        Map<String, Object> map = timeline.toMap();
+        List<Map<String, Object>> stages = (List<Map<String, Object>>) map.get("stages");
+        assertThat(stages).extracting(stage -> stage.get("stage"))
+                .containsExactly("queue", "throttle", "request", "retry_wait", "queue", "request");
+        assertThat(stages.get(2)).containsEntry("attempt", 1).containsEntry("durationMs", 100L).containsEntry("outcome", "error: 503");
+        assertThat(stages.get(5)).containsEntry("attempt", 2).containsEntry("outcome", "delivered");
+        assertThat(stages.get(0)).doesNotContainKey("outcome");
+
+        Map<String, Long> breakdown = (Map<String, Long>) map.get("breakdownMs");
+        assertThat(breakdown).containsEntry("queue", 35L).containsEntry("throttle", 20L)
+                .containsEntry("request", 180L).containsEntry("retry_wait", 1000L).containsEntry("receive", 0L);
+        assertThat(map.get("totalMs")).isEqualTo(1235L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRunningStage_IsShownUpToNow() {
+        UploadTimeline timeline = new UploadTimeline("job-1", clock::get);
+        timeline.begin(UploadStage.REQUEST, 1);
+        advanceMillis(40);
+        // Only a queued job waits for a permit
+        timeline.throttled();
+
+        List<Map<String, Object>> stages = (List<Map<String, Object>>) timeline.toMap().get("stages");
+        assertThat(stages).hasSize(1);
+        assertThat(stages.get(0)).containsEntry("stage", "request").containsEntry("durationMs", 40L).containsEntry("running", true);
+    }
+
+    @Test
+    void testRecordedStages_AreRebuiltFromTheRecording(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("uploads.jfr");
+        try (Recording recording = new Recording(UploadRecording.profile())) {
+            recording.start();
+            UploadJob job = new UploadJob();
+            job.beginStage(UploadStage.RECEIVE);
+            job.markQueued();
+            job.markDispatching(1);
+            job.complete("ok");
+            new UploadJob().markQueued();
+            recording.stop();
+            recording.dump(file);
+
+            Map<String, List<UploadTimelineReport.Stage>> jobs = UploadTimelineReport.read(file);
+            assertThat(jobs).containsOnlyKeys(job.getId());
+            assertThat(jobs.get(job.getId())).extracting(UploadTimelineReport.Stage::stage)
+                    .containsExactly("receive", "queue", "request");
+            assertThat(jobs.get(job.getId()).get(2).outcome()).isEqualTo("delivered");
+            assertThat(jobs.get(job.getId()).get(2).attempt()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.magumboi.webcameraapp.service;
+
+import com.magumboi.webcameraapp.support.FakeWebhookServer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Saturation benchmark: with a fixed webhook latency, throughput should grow with max-in-flight and with the number of webhooks.
+// Wall-clock timing, so it runs with the load tests: mvn -Pload-test test
+@Tag("load")
+class WebhookDispatchSaturationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookDispatchSaturationTest.class);
+
+    private static final int UPLOADS = 24;
+    private static final long WEBHOOK_LATENCY_MILLIS = 100;
+
+    private double measureThroughput(FakeWebhookServer server, int maxInFlight) {
+        return measureThroughput(List.of(server), maxInFlight);
+    }
+
+    private double measureThroughput(List<FakeWebhookServer> servers, int maxInFlight) {
+        WebhookService webhookService = new WebhookService();
+        ReflectionTestUtils.setField(webhookService, "webhookUrls",
+                String.join(",", servers.stream().map(FakeWebhookServer::getUrl).toList()));
+        ReflectionTestUtils.setField(webhookService, "requestsPerMinute", 60_000);
+        ReflectionTestUtils.setField(webhookService, "maxQueueSize", UPLOADS);
+        ReflectionTestUtils.setField(webhookService, "maxRetryAttempts", 1);
+        ReflectionTestUtils.setField(webhookService, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(webhookService, "batchMaxFiles", 1);
+        webhookService.startQueueProcessor();
+
+        try {
+            MockMultipartFile photo = new MockMultipartFile("file", "test.jpg", "image/jpeg", new byte[16 * 1024]);
+
+            long start = System.nanoTime();
+            List<Mono<String>> uploads = new ArrayList<>();
+            for (int i = 0; i < UPLOADS; i++) {
+                uploads.add(webhookService.uploadPhotoToWebhook(photo));
+            }
+            Mono.when(uploads).block(Duration.ofSeconds(30));
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            double throughput = UPLOADS / seconds;
+            logger.info("webhooks={}, max-in-flight={}: {} uploads in {} s ({} uploads/s)",
+                    servers.size(), maxInFlight, UPLOADS, String.format("%.2f", seconds), String.format("%.1f", throughput));
+            return throughput;
+        } finally {
+            webhookService.shutdown();
+        }
+    }
+
+    @Test
+    void testThroughputScalesWithMaxInFlight() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            server.setLatencyMillis(WEBHOOK_LATENCY_MILLIS);
+
+            double serial = measureThroughput(server, 1);
+            double parallel = measureThroughput(server, 4);
+
+            assertThat(server.getRequestCount()).isEqualTo(2 * UPLOADS);
+            assertThat(server.getMaxConcurrentRequests()).isGreaterThan(1);
+            assertThat(parallel).isGreaterThan(serial * 2.5);
+        }
+    }
+
+    @Test
+    void testThroughputScalesWithWebhookCount() throws Exception {
+        try (FakeWebhookServer first = new FakeWebhookServer();
+             FakeWebhookServer second = new FakeWebhookServer();
+             FakeWebhookServer third = new FakeWebhookServer()) {
+            List<FakeWebhookServer> servers = List.of(first, second, third);
+            servers.forEach(server -> server.setLatencyMillis(WEBHOOK_LATENCY_MILLIS));
+
+            double single = measureThroughput(List.of(first), 1);
+            double pooled = measureThroughput(servers, 1);
+
+            // Every webhook takes a share of the load
+            assertThat(second.getRequestCount()).isPositive();
+            assertThat(third.getRequestCount()).isPositive();
+            assertThat(pooled).isGreaterThan(single * 2.2);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.magumboi.webcameraapp.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookHttpClientTest {
+
+    @Test
+    void testOrigins_OnePerHostWithoutWebhookPath() {
+        List<URI> origins = WebhookHttpClient.origins(List.of(
+                "https://discord.com/api/webhooks/1/token-a",
+                " https://discord.com/api/webhooks/2/token-b",
+                "http://127.0.0.1:8080/webhook",
+                "not a url"));
+
+        assertThat(origins).containsExactly(
+                URI.create("https://discord.com/"),
+                URI.create("http://127.0.0.1:8080/"));
+    }
+
+    @Test
+    void testKeepAlive_FollowsUploadsAndRewarmsAfterMaxIdle() throws Exception {
+        AtomicInteger touches = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                touches.incrementAndGet();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/webhook";
+        WebhookHttpClient client = new WebhookHttpClient(List.of(url), 4, 0, 0, 1000, 5, false, 1);
+        try {
+            // Nothing is touched before the first upload
+            client.keepAlive(0, TimeUnit.HOURS.toNanos(1));
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertThat(touches.get()).isZero();
+
+            client.webClient().post().uri(url).retrieve().toBodilessEntity().block(Duration.ofSeconds(5));
+            client.keepAlive(0, TimeUnit.HOURS.toNanos(1));
+            awaitTouches(touches, 1);
+
+            TimeUnit.MILLISECONDS.sleep(20);
+            client.keepAlive(0, TimeUnit.MILLISECONDS.toNanos(10));
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertThat(touches.get()).isEqualTo(1);
+
+            client.webClient().post().uri(url).retrieve().toBodilessEntity().block(Duration.ofSeconds(5));
+            awaitTouches(touches, 2);
+        } finally {
+            client.close();
+            server.stop(0);
+        }
+    }
+
+    private static void awaitTouches(AtomicInteger touches, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (touches.get() < expected && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(touches.get()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,165 @@
+package com.magumboi.webcameraapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookRouterTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+
+    private List<WebhookEndpoint> endpoints(int count, int requestsPerMinute) {
+        List<WebhookEndpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            endpoints.add(new WebhookEndpoint(i, "http://127.0.0.1/webhook/" + i,
+                    new DiscordRateLimiter(requestsPerMinute, clock::get), clock::get));
+        }
+        return endpoints;
+    }
+
+    // Acquires a permit without starting a request, so in-flight limits don't get in the way
+    private WebhookEndpoint route(WebhookRouter router, String key) {
+        WebhookEndpoint endpoint = router.acquire(key);
+        assertThat(endpoint).isNotNull();
+        return endpoint;
+    }
+
+    @Test
+    void testRoundRobin_RotatesThroughEndpoints() {
+        WebhookRouter router = new WebhookRouter(endpoints(3, 600), WebhookRouter.Strategy.ROUND_ROBIN, 1);
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            order.add(route(router, "job-" + i).getIndex());
+        }
+
+        assertThat(order).containsExactly(0, 1, 2, 0, 1, 2);
+    }
+
+    @Test
+    void testLeastLoaded_PrefersIdleEndpointsAndHonoursInFlightLimit() {
+        WebhookRouter router = new WebhookRouter(endpoints(2, 600), WebhookRouter.Strategy.LEAST_LOADED, 1);
+
+        WebhookEndpoint first = route(router, "a");
+        first.requestStarted();
+        WebhookEndpoint second = route(router, "b");
+        second.requestStarted();
+
+        assertThat(second).isNotSameAs(first);
+        // Both endpoints are at their in-flight limit
+        assertThat(router.acquire("c")).isNull();
+
+        first.requestFinished();
+        assertThat(router.acquire("c")).isSameAs(first);
+    }
+
+    @Test
+    void testRateLimitedEndpoint_IsSkipped() {
+        List<WebhookEndpoint> endpoints = endpoints(2, 1);
+        WebhookRouter router = new WebhookRouter(endpoints, WebhookRouter.Strategy.ROUND_ROBIN, 10);
+
+        assertThat(route(router, "a").getIndex()).isEqualTo(0);
+        assertThat(route(router, "b").getIndex()).isEqualTo(1);
+
+        // Both buckets are empty; the router reports when the next permit frees up
+        assertThat(router.acquire("c")).isNull();
+        assertThat(router.getWaitNanos()).isBetween(TimeUnit.SECONDS.toNanos(59), TimeUnit.SECONDS.toNanos(60));
+    }
+
+    @Test
+    void testHash_SticksToEndpointUntilItFails() {
+        WebhookRouter router = new WebhookRouter(endpoints(4, 600), WebhookRouter.Strategy.HASH, 10);
+
+        WebhookEndpoint home = route(router, "camera-1");
+        for (int i = 0; i < 5; i++) {
+            assertThat(route(router, "camera-1")).isSameAs(home);
+        }
+
+        // Failover moves the key elsewhere while its endpoint cools down, then it comes back
+        home.recordFailure();
+        WebhookEndpoint fallback = route(router, "camera-1");
+        assertThat(fallback).isNotSameAs(home);
+        assertThat(router.hasHealthyAlternative(home)).isTrue();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(route(router, "camera-1")).isSameAs(home);
+    }
+
+    @Test
+    void testAllEndpointsUnhealthy_StillRoutes() {
+        List<WebhookEndpoint> endpoints = endpoints(2, 600);
+        WebhookRouter router = new WebhookRouter(endpoints, WebhookRouter.Strategy.LEAST_LOADED, 1);
+        endpoints.forEach(WebhookEndpoint::recordFailure);
+
+        assertThat(router.acquire("a")).isNotNull();
+        assertThat(router.hasHealthyAlternative(endpoints.get(0))).isFalse();
+    }
+
+    @Test
+    void testOpenCircuit_HoldsRequestsUntilProbeIsDue() {
+        CircuitBreaker breaker = new CircuitBreaker(1, TimeUnit.SECONDS.toNanos(5), TimeUnit.SECONDS.toNanos(5), clock::get);
+        WebhookEndpoint endpoint = new WebhookEndpoint(0, "http://127.0.0.1/webhook/0",
+                new DiscordRateLimiter(600, clock::get), clock::get, ConcurrencyLimit.fixed(4), breaker, () -> 0);
+        WebhookRouter router = new WebhookRouter(List.of(endpoint), WebhookRouter.Strategy.LEAST_LOADED, 4);
+
+        endpoint.requestStarted();
+        endpoint.recordOutcome(clock.get(), 0, new IOException("Connection refused"));
+        endpoint.requestFinished();
+
+        // Unlike a cooldown, an open breaker stops the only webhook too
+        assertThat(router.acquire("a")).isNull();
+        assertThat(router.getWaitNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertThat(route(router, "a")).isSameAs(endpoint);
+        endpoint.requestStarted();
+        assertThat(router.acquire("a")).isNull();
+    }
+
+    @Test
+    void testConcurrencyLimit_CapsInFlightBelowRouterMaximum() {
+        WebhookEndpoint endpoint = new WebhookEndpoint(0, "http://127.0.0.1/webhook/0",
+                new DiscordRateLimiter(600, clock::get), clock::get, ConcurrencyLimit.fixed(2), CircuitBreaker.disabled(), () -> 0);
+        WebhookRouter router = new WebhookRouter(List.of(endpoint), WebhookRouter.Strategy.LEAST_LOADED, 10);
+
+        route(router, "a");
+        endpoint.requestStarted();
+        route(router, "a");
+        endpoint.requestStarted();
+
+        assertThat(router.acquire("a")).isNull();
+    }
+
+    @Test
+    void testSharedBucket_LimitsInstancesTogether() {
+        String url = "http://127.0.0.1/webhook/0";
+        InMemoryClusterCoordinator.Store store = new InMemoryClusterCoordinator.Store();
+        List<WebhookRouter> instances = new ArrayList<>();
+        for (String id : List.of("a", "b")) {
+            ClusterCoordinator coordinator = new InMemoryClusterCoordinator(id, store, 30_000, clock::get);
+            WebhookEndpoint endpoint = new WebhookEndpoint(0, url, new DiscordRateLimiter(5, clock::get), clock::get,
+                    ConcurrencyLimit.fixed(10), CircuitBreaker.disabled(),
+                    () -> coordinator.tryAcquire(ClusterCoordinator.bucketKey(url), 5));
+            instances.add(new WebhookRouter(List.of(endpoint), WebhookRouter.Strategy.LEAST_LOADED, 10));
+        }
+
+        // Each instance alone could send 5; together they get 5
+        int sent = 0;
+        for (int i = 0; i < 5; i++) {
+            for (WebhookRouter router : instances) {
+                if (router.acquire("a") != null) {
+                    sent++;
+                }
+            }
+        }
+
+        assertThat(sent).isEqualTo(5);
+        assertThat(instances.get(1).getWaitNanos()).isPositive();
+    }
+}
@@ -1,20 +1,63 @@
 package com.magumboi.webcameraapp.service;
 
+import com.magumboi.webcameraapp.support.FakeWebhookServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
 @ExtendWith(MockitoExtension.class)
 class WebhookServiceTest {
 
     @InjectMocks
     private WebhookService webhookService;
 
+    @AfterEach
+    void tearDown() {
+        webhookService.shutdown();
+    }
+
+    private void configureService(String url, int batchMaxFiles, long batchMaxPayloadBytes) {
+        ReflectionTestUtils.setField(webhookService, "webhookUrl", url);
+        ReflectionTestUtils.setField(webhookService, "requestsPerMinute", 600);
+        ReflectionTestUtils.setField(webhookService, "maxQueueSize", 100);
+        ReflectionTestUtils.setField(webhookService, "maxRetryAttempts", 1);
+        ReflectionTestUtils.setField(webhookService, "maxInFlight", 1);
+        ReflectionTestUtils.setField(webhookService, "batchMaxFiles", batchMaxFiles);
+        ReflectionTestUtils.setField(webhookService, "batchMaxPayloadBytes", batchMaxPayloadBytes);
+    }
+
+    private List<Mono<String>> queuePhotos(int count, int size) {
+        List<Mono<String>> uploads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MockMultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", new byte[size]);
+            uploads.add(webhookService.uploadPhotoToWebhook(file));
+        }
+        return uploads;
+    }
+
     @Test
     void testUploadPhotoToWebhook_NoWebhookUrl() {
         // Set empty webhook URL
@@ -83,4 +126,448 @@ class WebhookServiceTest {
                         throwable.getMessage().contains("Webhook URL is not configured"))
                 .verify();
     }
+
+    @Test
+    void testQueuedPhotos_AreBatchedUpToMaxFiles() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 3, 8 * 1024 * 1024);
+
+            // Queue everything before the dispatcher starts so batches are deterministic
+            List<Mono<String>> uploads = queuePhotos(7, 1024);
+            webhookService.startQueueProcessor();
+
+            Mono.when(uploads).block(Duration.ofSeconds(10));
+
+            // 3 + 3 + 1 photos
+            assertThat(server.getRequestCount()).isEqualTo(3);
+            assertThat(server.getFileCount()).isEqualTo(7);
+        }
+    }
+
+    @Test
+    void testQueuedPhotos_AreBatchedOnlyWithTheirOwnCamera() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+            UploadOptions garage = UploadOptions.defaults().withCameraId("garage");
+            List<UploadJob> jobs = new ArrayList<>();
+            for (int i = 1; i <= 3; i++) {
+                jobs.add(webhookService.submitPhoto(new MockMultipartFile("file", i + ".jpg", "image/jpeg", filled(100, i)), garage));
+            }
+            jobs.add(webhookService.submitPhoto(new MockMultipartFile("file", "4.jpg", "image/jpeg", filled(100, 4)),
+                    UploadOptions.defaults().withCameraId("porch")));
+            webhookService.startQueueProcessor();
+
+            for (UploadJob job : jobs) {
+                job.getFuture().get(10, TimeUnit.SECONDS);
+            }
+
+            // Cameras take turns: one garage photo, the porch photo, then the other two garage photos together
+            assertThat(server.getRequestCount()).isEqualTo(3);
+            assertThat(server.getFileCount()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void testQueuedPhotos_BatchRespectsPayloadLimit() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 2500);
+
+            List<Mono<String>> uploads = queuePhotos(5, 1024);
+            webhookService.startQueueProcessor();
+
+            Mono.when(uploads).block(Duration.ofSeconds(10));
+
+            // Only two 1KB photos fit under the 2500 byte limit
+            assertThat(server.getRequestCount()).isEqualTo(3);
+            assertThat(server.getFileCount()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void testSubmitPhoto_JobTracksDelivery() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+
+            MockMultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", "test content".getBytes());
+            UploadJob job = webhookService.submitPhoto(file);
+
+            assertThat(job.getStatus()).isEqualTo(UploadJob.Status.QUEUED);
+            assertThat(webhookService.getJob(job.getId())).containsSame(job);
+
+            webhookService.startQueueProcessor();
+            job.getFuture().get(10, TimeUnit.SECONDS);
+
+            assertThat(job.getStatus()).isEqualTo(UploadJob.Status.DELIVERED);
+            assertThat(job.getAttempts()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testJobTimeline_ShowsEachStageUntilDelivery() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+
+            MockMultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", "test content".getBytes());
+            UploadJob job = webhookService.submitPhoto(file);
+            webhookService.startQueueProcessor();
+            job.getFuture().get(10, TimeUnit.SECONDS);
+
+            Map<String, Object> timeline = webhookService.getJobTimeline(job.getId()).orElseThrow();
+            List<Map<String, Object>> stages = (List<Map<String, Object>>) timeline.get("stages");
+            assertThat(stages).extracting(stage -> stage.get("stage")).containsSubsequence("receive", "queue", "request");
+            assertThat(stages.get(stages.size() - 1)).containsEntry("stage", "request")
+                    .containsEntry("attempt", 1).containsEntry("outcome", "delivered");
+            assertThat(timeline).containsEntry("status", "DELIVERED").containsKey("breakdownMs");
+            assertThat(webhookService.getJobTimeline("missing")).isEmpty();
+        }
+    }
+
+    @Test
+    void testDelivery_RecordsPipelineMetrics() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            ReflectionTestUtils.setField(webhookService, "meterRegistry", registry);
+            webhookService.startQueueProcessor();
+
+            Mono.when(queuePhotos(2, 1024)).block(Duration.ofSeconds(10));
+
+            assertThat(registry.get("webhook.upload.sent").counter().count()).isEqualTo(2048);
+            assertThat(registry.get("webhook.upload.queue.wait").timer().count()).isEqualTo(2);
+            assertThat(registry.get("webhook.upload.dispatch").tag("outcome", "success").timer().count()).isPositive();
+            assertThat(registry.get("webhook.upload.latency").tag("outcome", "success").timer().count()).isEqualTo(2);
+            assertThat(registry.get("webhook.queue.size").gauge().value()).isZero();
+            assertThat(registry.get("webhook.queue.bytes").gauge().value()).isZero();
+        }
+    }
+
+    @Test
+    void testDelivery_FollowsDiscordBucketAboveRequestsPerMinute() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 1, 8 * 1024 * 1024);
+            // One request a minute locally, but Discord's headers allow 50 in the current window
+            ReflectionTestUtils.setField(webhookService, "requestsPerMinute", 1);
+            server.setBucket(50, 60);
+            webhookService.startQueueProcessor();
+
+            Mono.when(queuePhotos(5, 1024)).block(Duration.ofSeconds(10));
+
+            assertThat(server.getFileCount()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void testRateLimitedDelivery_CountsThrottlesAndDrops() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+            server.setStatusCode(429);
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            ReflectionTestUtils.setField(webhookService, "meterRegistry", registry);
+            webhookService.startQueueProcessor();
+
+            StepVerifier.create(queuePhotos(1, 1024).get(0))
+                    .expectError()
+                    .verify(Duration.ofSeconds(10));
+
+            assertThat(registry.get("webhook.upload.rate.limited").counter().count()).isEqualTo(1);
+            assertThat(registry.get("webhook.upload.dropped").tag("reason", "failed").counter().count()).isEqualTo(1);
+            assertThat(registry.get("webhook.upload.dispatch").tag("outcome", "rate_limited").timer().count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void testSubmitPhoto_MergesNearDuplicateFrames() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+            ReflectionTestUtils.setField(webhookService, "dedupEnabled", true);
+            ReflectionTestUtils.setField(webhookService, "dedupWindowSeconds", 60);
+            ReflectionTestUtils.setField(webhookService, "dedupMaxDistance", 5);
+            ReflectionTestUtils.setField(webhookService, "dedupCacheSize", 16);
+            webhookService.startQueueProcessor();
+
+            UploadJob first = webhookService.submitPhoto(new MockMultipartFile("file", "a.jpg", "image/jpeg",
+                    PhotoDeduplicatorTest.sceneJpeg(100, 1)));
+            UploadJob duplicate = webhookService.submitPhoto(new MockMultipartFile("file", "b.jpg", "image/jpeg",
+                    PhotoDeduplicatorTest.sceneJpeg(100, 2)));
+            UploadJob different = webhookService.submitPhoto(new MockMultipartFile("file", "c.jpg", "image/jpeg",
+                    PhotoDeduplicatorTest.sceneJpeg(400, 1)));
+
+            assertThat(duplicate).isSameAs(first);
+            assertThat(different).isNotSameAs(first);
+            first.getFuture().get(10, TimeUnit.SECONDS);
+            different.getFuture().get(10, TimeUnit.SECONDS);
+
+            assertThat(server.getFileCount()).isEqualTo(2);
+            assertThat(webhookService.getDuplicatesMerged()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void testSubmitPhoto_RepeatedRequestsShareOneJob() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+            ReflectionTestUtils.setField(webhookService, "idempotencyEnabled", true);
+            ReflectionTestUtils.setField(webhookService, "idempotencyTtlMinutes", 10);
+            ReflectionTestUtils.setField(webhookService, "idempotencyMaxEntries", 100);
+            webhookService.startQueueProcessor();
+
+            UploadJob keyed = webhookService.submitPhoto(
+                    new MockMultipartFile("file", "a.jpg", "image/jpeg", "first".getBytes()), UploadOptions.defaults().withIdempotencyKey("photo-1"));
+            UploadJob keyedRetry = webhookService.submitPhoto(
+                    new MockMultipartFile("file", "a.jpg", "image/jpeg", "first".getBytes()), UploadOptions.defaults().withIdempotencyKey("photo-1"));
+            // Without a key the content hash identifies the photo
+            UploadJob hashed = webhookService.submitPhoto(
+                    new MockMultipartFile("file", "b.jpg", "image/jpeg", "second".getBytes()));
+            UploadJob hashedRetry = webhookService.submitPhoto(
+                    new MockMultipartFile("file", "b.jpg", "image/jpeg", "second".getBytes()));
+
+            assertThat(keyedRetry).isSameAs(keyed);
+            assertThat(hashedRetry).isSameAs(hashed);
+            keyed.getFuture().get(10, TimeUnit.SECONDS);
+            hashed.getFuture().get(10, TimeUnit.SECONDS);
+
+            assertThat(server.getFileCount()).isEqualTo(2);
+            // Once delivered, a retry still gets the cached result instead of a new upload
+            assertThat(webhookService.submitPhoto(
+                    new MockMultipartFile("file", "a.jpg", "image/jpeg", "first".getBytes()), UploadOptions.defaults().withIdempotencyKey("photo-1"))).isSameAs(keyed);
+        }
+    }
+
+    @Test
+    void testSubmitPhotoStream_QueuesRawBodyAndRecognisesRetries() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+            ReflectionTestUtils.setField(webhookService, "maxBodyBytes", 1024L);
+            ReflectionTestUtils.setField(webhookService, "idempotencyEnabled", true);
+            ReflectionTestUtils.setField(webhookService, "idempotencyTtlMinutes", 10);
+            ReflectionTestUtils.setField(webhookService, "idempotencyMaxEntries", 100);
+            webhookService.startQueueProcessor();
+
+            UploadOptions options = UploadOptions.defaults()
+                    .withCaptureTime(Instant.parse("2024-01-01T10:00:00Z"))
+                    .withCameraId("door");
+            UploadJob job = webhookService.submitPhotoStream(new ByteArrayInputStream("raw photo".getBytes()), options);
+            // The hash taken while streaming matches the retried body
+            UploadJob retry = webhookService.submitPhotoStream(new ByteArrayInputStream("raw photo".getBytes()), options);
+
+            assertThat(retry).isSameAs(job);
+            job.getFuture().get(10, TimeUnit.SECONDS);
+            assertThat(server.getFileCount()).isEqualTo(1);
+
+            assertThatThrownBy(() -> webhookService.submitPhotoStream(new ByteArrayInputStream(new byte[2048]), options))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> webhookService.submitPhotoStream(new ByteArrayInputStream(new byte[0]), options))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testSubmitPhotos_QueuesGroupAndReportsRejectedPhotos() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+            ReflectionTestUtils.setField(webhookService, "bulkMaxFiles", 10);
+            ReflectionTestUtils.setField(webhookService, "bulkWorkerThreads", 2);
+            webhookService.startQueueProcessor();
+
+            List<MultipartFile> photos = new ArrayList<>();
+            List<UploadOptions> options = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                photos.add(new MockMultipartFile("files", "photo.jpg", "image/jpeg", ("photo " + i).getBytes()));
+                options.add(UploadOptions.defaults().withPriority(UploadPriority.BULK));
+            }
+            photos.add(new MockMultipartFile("files", "notes.txt", "text/plain", "not a photo".getBytes()));
+            options.add(UploadOptions.defaults());
+
+            List<UploadJob> jobs = webhookService.submitPhotos(photos, options);
+
+            assertThat(jobs).hasSize(5);
+            assertThat(jobs.get(4).getStatus()).isEqualTo(UploadJob.Status.FAILED);
+            assertThat(jobs.get(4).getError()).isEqualTo("File must be an image");
+            for (UploadJob job : jobs.subList(0, 4)) {
+                job.getFuture().get(10, TimeUnit.SECONDS);
+            }
+            assertThat(server.getFileCount()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void testUploads_FailOverFromFailingWebhook() throws Exception {
+        try (FakeWebhookServer failing = new FakeWebhookServer();
+             FakeWebhookServer healthy = new FakeWebhookServer()) {
+            failing.setStatusCode(500);
+            configureService(failing.getUrl(), 1, 8 * 1024 * 1024);
+            ReflectionTestUtils.setField(webhookService, "webhookUrls", healthy.getUrl());
+            ReflectionTestUtils.setField(webhookService, "maxRetryAttempts", 3);
+
+            List<Mono<String>> uploads = queuePhotos(4, 1024);
+            webhookService.startQueueProcessor();
+
+            Mono.when(uploads).block(Duration.ofSeconds(10));
+
+            // The failing webhook is tried, then taken out of rotation; everything lands on the healthy one
+            assertThat(failing.getRequestCount()).isPositive();
+            assertThat(healthy.getFileCount()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void testInteractiveUpload_OvertakesBulkBacklog() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 1, 8 * 1024 * 1024);
+            server.setLatencyMillis(50);
+
+            List<UploadJob> bulk = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                bulk.add(webhookService.submitPhoto(new MockMultipartFile("file", "bulk.jpg", "image/jpeg", new byte[1024]),
+                        UploadOptions.defaults().withPriority(UploadPriority.BULK)));
+            }
+            UploadJob capture = webhookService.submitPhoto(new MockMultipartFile("file", "capture.jpg", "image/jpeg", new byte[1024]),
+                    UploadOptions.defaults().withPriority(UploadPriority.INTERACTIVE));
+            webhookService.startQueueProcessor();
+
+            capture.getFuture().get(10, TimeUnit.SECONDS);
+            long bulkDelivered = bulk.stream().filter(job -> job.getStatus() == UploadJob.Status.DELIVERED).count();
+
+            assertThat(bulkDelivered).isLessThanOrEqualTo(1);
+            for (UploadJob job : bulk) {
+                job.getFuture().get(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    void testAdmission_RejectsOrShedsWhenByteBudgetIsUsedUp() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+            ReflectionTestUtils.setField(webhookService, "admissionMaxBytes", 2500L);
+            ReflectionTestUtils.setField(webhookService, "admissionPolicy", "reject");
+
+            UploadJob first = webhookService.submitPhoto(new MockMultipartFile("file", "a.jpg", "image/jpeg", new byte[1000]),
+                    UploadOptions.defaults().withPriority(UploadPriority.BULK));
+            webhookService.submitPhoto(new MockMultipartFile("file", "b.jpg", "image/jpeg", filled(1000, 1)),
+                    UploadOptions.defaults().withPriority(UploadPriority.BULK));
+            assertThatThrownBy(() -> webhookService.submitPhoto(
+                    new MockMultipartFile("file", "c.jpg", "image/jpeg", filled(1000, 2))))
+                    .isInstanceOf(UploadRejectedException.class)
+                    .satisfies(e -> assertThat(((UploadRejectedException) e).getRetryAfterSeconds()).isBetween(1L, 300L));
+
+            ReflectionTestUtils.setField(webhookService, "admissionPolicy", "shed-oldest");
+            UploadJob capture = webhookService.submitPhoto(new MockMultipartFile("file", "d.jpg", "image/jpeg", filled(1000, 3)),
+                    UploadOptions.defaults().withPriority(UploadPriority.INTERACTIVE));
+
+            assertThat(first.getStatus()).isEqualTo(UploadJob.Status.FAILED);
+            assertThat(webhookService.getAdmittedBytes()).isEqualTo(2000);
+
+            webhookService.startQueueProcessor();
+            capture.getFuture().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testClientQuota_RejectsOnlyTheCameraAtItsQuota() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+            ReflectionTestUtils.setField(webhookService, "maxPhotosPerClient", 2);
+            UploadOptions garage = UploadOptions.defaults().withCameraId("garage");
+
+            webhookService.submitPhoto(new MockMultipartFile("file", "a.jpg", "image/jpeg", filled(100, 1)), garage);
+            webhookService.submitPhoto(new MockMultipartFile("file", "b.jpg", "image/jpeg", filled(100, 2)), garage);
+            assertThatThrownBy(() -> webhookService.submitPhoto(
+                    new MockMultipartFile("file", "c.jpg", "image/jpeg", filled(100, 3)), garage))
+                    .isInstanceOf(ClientQuotaExceededException.class);
+            UploadJob porch = webhookService.submitPhoto(new MockMultipartFile("file", "d.jpg", "image/jpeg", filled(100, 4)),
+                    UploadOptions.defaults().withCameraId("porch"));
+
+            assertThat(webhookService.getQueueStatus().get("queueSizeByClient")).isEqualTo(Map.of("garage", 2, "porch", 1));
+
+            webhookService.startQueueProcessor();
+            porch.getFuture().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testWarmUp_OpensConnectionsWithoutPostingToTheWebhook() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            configureService(server.getUrl(), 10, 8 * 1024 * 1024);
+            ReflectionTestUtils.setField(webhookService, "httpWarmUp", true);
+            ReflectionTestUtils.setField(webhookService, "httpWarmConnections", 2);
+            ReflectionTestUtils.setField(webhookService, "httpKeepAliveSeconds", 1);
+            webhookService.startQueueProcessor();
+            TimeUnit.MILLISECONDS.sleep(1500);
+
+            assertThat(server.getRequestCount()).isZero();
+
+            UploadJob job = webhookService.submitPhoto(new MockMultipartFile("file", "a.jpg", "image/jpeg", new byte[100]));
+            job.getFuture().get(10, TimeUnit.SECONDS);
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        }
+    }
+
+    private static byte[] filled(int size, int value) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    @Test
+    void testFailedUpload_IsDeadLetteredAndCanBeReplayed(@TempDir Path deadLetterDir) throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            server.setStatusCode(500);
+            configureService(server.getUrl(), 1, 8 * 1024 * 1024);
+            ReflectionTestUtils.setField(webhookService, "maxRetryAttempts", 2);
+            ReflectionTestUtils.setField(webhookService, "deadLetterEnabled", true);
+            ReflectionTestUtils.setField(webhookService, "deadLetterDir", deadLetterDir.toString());
+            ReflectionTestUtils.setField(webhookService, "deadLetterMaxEntries", 10);
+            webhookService.startQueueProcessor();
+
+            UploadJob job = webhookService.submitPhoto(new MockMultipartFile("file", "door.jpg", "image/jpeg", new byte[1024]),
+                    UploadOptions.defaults().withPriority(UploadPriority.BULK));
+            assertThatThrownBy(() -> job.getFuture().get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (webhookService.getDeadLetters().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            List<Map<String, Object>> deadLetters = webhookService.getDeadLetters();
+            assertThat(deadLetters).hasSize(1);
+            assertThat(deadLetters.get(0)).containsEntry("id", job.getId()).containsEntry("priority", "bulk");
+            // Each attempt is its own request; there are no hidden retries inside the HTTP client
+            assertThat(server.getRequestCount()).isEqualTo(2);
+
+            server.setStatusCode(200);
+            UploadJob replayed = webhookService.replayDeadLetter(job.getId()).orElseThrow();
+            replayed.getFuture().get(10, TimeUnit.SECONDS);
+
+            assertThat(server.getFileCount()).isEqualTo(1);
+            assertThat(webhookService.getDeadLetters()).isEmpty();
+            assertThat(webhookService.replayDeadLetter(job.getId())).isEmpty();
+        }
+    }
+
+    @Test
+    void testOpenCircuit_HoldsQueueInsteadOfBurningRetries() throws Exception {
+        try (FakeWebhookServer server = new FakeWebhookServer()) {
+            server.setStatusCode(500);
+            configureService(server.getUrl(), 1, 8 * 1024 * 1024);
+            ReflectionTestUtils.setField(webhookService, "maxRetryAttempts", 10);
+            ReflectionTestUtils.setField(webhookService, "breakerFailureThreshold", 2);
+            ReflectionTestUtils.setField(webhookService, "breakerOpenSeconds", 60);
+            ReflectionTestUtils.setField(webhookService, "breakerMaxOpenSeconds", 60);
+
+            queuePhotos(3, 1024);
+            webhookService.startQueueProcessor();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (webhookService.getOpenCircuitCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(300);
+
+            // Two failures trip the breaker; nothing more is sent and every photo is still held
+            assertThat(webhookService.getOpenCircuitCount()).isEqualTo(1);
+            assertThat(server.getRequestCount()).isEqualTo(2);
+            assertThat(webhookService.getQueueSize() + webhookService.getRetryingCount()).isEqualTo(3);
+        }
+    }
 }
@@ -0,0 +1,198 @@
+package com.magumboi.webcameraapp.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal local stand-in for a Discord webhook, used by tests that need a real HTTP round trip.
+ * Faults can be injected at random with a fixed seed, so load tests see the same mix of slow
+ * responses, 429s, server errors and dropped connections on every run.
+ */
+public class FakeWebhookServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger fileCount = new AtomicInteger();
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+    private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+    private final AtomicInteger rateLimitedCount = new AtomicInteger();
+    private final AtomicInteger serverErrorCount = new AtomicInteger();
+    private final AtomicInteger droppedCount = new AtomicInteger();
+    private final Random random = new Random(42);
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private volatile int statusCode = 200;
+    private volatile double rateLimitRatio;
+    private volatile double serverErrorRatio;
+    private volatile double dropRatio;
+    private volatile double retryAfterSeconds = 1.0;
+    private volatile int bucketLimit;
+    private volatile double bucketResetAfterSeconds;
+    private final AtomicInteger bucketUsed = new AtomicInteger();
+
+    public FakeWebhookServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newCachedThreadPool();
+        server.createContext("/webhook", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/webhook";
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    // Adds a uniformly random extra delay of up to this many milliseconds to every response
+    public void setLatencyJitterMillis(long latencyJitterMillis) {
+        this.latencyJitterMillis = latencyJitterMillis;
+    }
+
+    // Answers every request with this status, e.g. 500 to simulate an outage
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    // Share of requests answered with a Discord-style 429 carrying retry_after and rate-limit headers
+    public void setRateLimitRatio(double rateLimitRatio, double retryAfterSeconds) {
+        this.rateLimitRatio = rateLimitRatio;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    // Successful responses carry X-RateLimit-* headers of a bucket of this size, one window for the whole run
+    public void setBucket(int limit, double resetAfterSeconds) {
+        this.bucketLimit = limit;
+        this.bucketResetAfterSeconds = resetAfterSeconds;
+    }
+
+    // Share of requests answered with a 503
+    public void setServerErrorRatio(double serverErrorRatio) {
+        this.serverErrorRatio = serverErrorRatio;
+    }
+
+    // Share of requests whose connection is closed before any response is sent
+    public void setDropRatio(double dropRatio) {
+        this.dropRatio = dropRatio;
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    // Number of attachments accepted (answered with a 2xx) across all requests
+    public int getFileCount() {
+        return fileCount.get();
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests.get();
+    }
+
+    public int getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    public int getServerErrorCount() {
+        return serverErrorCount.get();
+    }
+
+    public int getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int concurrent = concurrentRequests.incrementAndGet();
+        maxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+        try (InputStream body = exchange.getRequestBody()) {
+            String multipart = new String(body.readAllBytes(), StandardCharsets.ISO_8859_1);
+
+            double draw;
+            long delay = latencyMillis;
+            synchronized (random) {
+                draw = random.nextDouble();
+                if (latencyJitterMillis > 0) {
+                    delay += (long) (random.nextDouble() * latencyJitterMillis);
+                }
+            }
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+
+            if (draw < dropRatio) {
+                droppedCount.incrementAndGet();
+                return; // Closed in finally without a response, like a connection reset mid-request
+            }
+            draw -= dropRatio;
+
+            int status = statusCode;
+            String response = "{\"id\": \"1\"}";
+            if (draw < rateLimitRatio) {
+                status = 429;
+                response = String.format(Locale.ROOT,
+                        "{\"message\": \"You are being rate limited.\", \"retry_after\": %.3f, \"global\": false}", retryAfterSeconds);
+                exchange.getResponseHeaders().add("X-RateLimit-Bucket", "fake-bucket");
+                exchange.getResponseHeaders().add("X-RateLimit-Limit", "5");
+                exchange.getResponseHeaders().add("X-RateLimit-Remaining", "0");
+                exchange.getResponseHeaders().add("X-RateLimit-Reset-After", String.format(Locale.ROOT, "%.3f", retryAfterSeconds));
+                rateLimitedCount.incrementAndGet();
+            } else if (draw < rateLimitRatio + serverErrorRatio) {
+                status = 503;
+                serverErrorCount.incrementAndGet();
+            }
+
+            if (status < 300) {
+                fileCount.addAndGet(countOccurrences(multipart, "filename=\""));
+                if (bucketLimit > 0) {
+                    int remaining = Math.max(0, bucketLimit - bucketUsed.incrementAndGet());
+                    exchange.getResponseHeaders().add("X-RateLimit-Bucket", "fake-bucket");
+                    exchange.getResponseHeaders().add("X-RateLimit-Limit", String.valueOf(bucketLimit));
+                    exchange.getResponseHeaders().add("X-RateLimit-Remaining", String.valueOf(remaining));
+                    exchange.getResponseHeaders().add("X-RateLimit-Reset-After",
+                            String.format(Locale.ROOT, "%.3f", bucketResetAfterSeconds));
+                }
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            requestCount.incrementAndGet();
+            concurrentRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static int countOccurrences(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}